@@ -29,6 +29,8 @@ import com.github.fungal.spi.deployers.Deployment;
 import java.net.URL;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.management.MBeanServer;
 
@@ -95,6 +97,40 @@ public interface Kernel
     */
    public <T> T getBean(String name, Class<T> expectedType) throws Throwable;
 
+   /**
+    * Get the beans of a type; the lazy beans of the type which haven't been created
+    * are created, except the lazy beans created by a factory, whose type is known once
+    * they have been created
+    * @param <T> The type of the beans
+    * @param type The type; the class, a superclass or an interface of the beans
+    * @return The beans by name; empty if no beans are found
+    */
+   public <T> Map<String, T> getBeansOfType(Class<T> type);
+
+   /**
+    * Get the bean of a type; the lazy beans of the type which haven't been created
+    * are created like for {@link #getBeansOfType(Class)}
+    * @param <T> The type of the bean
+    * @param type The type; the class, a superclass or an interface of the bean
+    * @return The bean instance; <code>null</code> if no bean is found
+    * @exception Throwable If more than one bean of the type is found
+    */
+   public <T> T getBean(Class<T> type) throws Throwable;
+
+   /**
+    * Get the names of the beans that a bean depends on
+    * @param name The name of the bean
+    * @return The names; empty if the bean doesn't have any dependencies
+    */
+   public Set<String> getBeanDependencies(String name);
+
+   /**
+    * Get the names of the beans that depend on a bean
+    * @param name The name of the bean
+    * @return The names; empty if no beans depend on the bean
+    */
+   public Set<String> getBeanDependants(String name);
+
    /**
     * Install beans
     * @param beans The beans
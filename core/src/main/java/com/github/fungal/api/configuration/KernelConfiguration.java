@@ -38,6 +38,21 @@ import java.util.List;
  */
 public class KernelConfiguration
 {
+   /** Executor queue: Hand off tasks directly to the threads */
+   public static final int QUEUE_SYNCHRONOUS = 0;
+
+   /** Executor queue: Linked queue */
+   public static final int QUEUE_LINKED = 1;
+
+   /** Executor queue: Array based queue */
+   public static final int QUEUE_ARRAY = 2;
+
+   /** Executor rejection policy: Throw an exception to the caller */
+   public static final int REJECTION_ABORT = 0;
+
+   /** Executor rejection policy: Run the task in the calling thread */
+   public static final int REJECTION_CALLER_RUNS = 1;
+
    /** Name */
    private String name;
 
@@ -110,6 +125,39 @@ public class KernelConfiguration
    /** RMI server port */
    private int rmiServerPort;
 
+   /** Executor core pool size */
+   private int executorCorePoolSize;
+
+   /** Executor max pool size */
+   private int executorMaxPoolSize;
+
+   /** Executor queue type */
+   private int executorQueue;
+
+   /** Executor queue size */
+   private int executorQueueSize;
+
+   /** Executor keep alive in seconds */
+   private long executorKeepAlive;
+
+   /** Executor rejection policy */
+   private int executorRejectionPolicy;
+
+   /** Executor work stealing */
+   private boolean executorWorkStealing;
+
+   /** Virtual threads */
+   private boolean virtualThreads;
+
+   /** The expected number of beans */
+   private int beanCapacity;
+
+   /** The bean stop timeout in milliseconds */
+   private long beanStopTimeout;
+
+   /** The dependency timeout in milliseconds */
+   private long dependencyTimeout;
+
    /**
     * Constructor
     */
@@ -139,6 +187,17 @@ public class KernelConfiguration
       remoteJmxAccess = false;
       rmiRegistryPort = 1203;
       rmiServerPort = 1204;
+      executorCorePoolSize = Runtime.getRuntime().availableProcessors();
+      executorMaxPoolSize = Integer.MAX_VALUE;
+      executorQueue = QUEUE_SYNCHRONOUS;
+      executorQueueSize = Integer.MAX_VALUE;
+      executorKeepAlive = 60L;
+      executorRejectionPolicy = REJECTION_ABORT;
+      executorWorkStealing = false;
+      virtualThreads = false;
+      beanCapacity = 256;
+      beanStopTimeout = 0L;
+      dependencyTimeout = 0L;
    }
 
    /**
@@ -661,4 +720,245 @@ public class KernelConfiguration
    {
       return rmiServerPort;
    }
+
+   /**
+    * Set the core pool size of the kernel executor; default <code>number of processors</code>.
+    * This is the parallelism of the executor when work stealing is enabled
+    * @param v The value
+    * @return The configuration
+    */
+   public KernelConfiguration executorCorePoolSize(int v)
+   {
+      this.executorCorePoolSize = v;
+
+      return this;
+   }
+
+   /**
+    * Get the core pool size of the kernel executor
+    * @return The value
+    */
+   public int getExecutorCorePoolSize()
+   {
+      return executorCorePoolSize;
+   }
+
+   /**
+    * Set the max pool size of the kernel executor; default <code>Integer.MAX_VALUE</code>
+    * @param v The value
+    * @return The configuration
+    */
+   public KernelConfiguration executorMaxPoolSize(int v)
+   {
+      this.executorMaxPoolSize = v;
+
+      return this;
+   }
+
+   /**
+    * Get the max pool size of the kernel executor
+    * @return The value
+    */
+   public int getExecutorMaxPoolSize()
+   {
+      return executorMaxPoolSize;
+   }
+
+   /**
+    * Set the queue type of the kernel executor; default <code>QUEUE_SYNCHRONOUS</code>
+    * @param type The type
+    * @return The configuration
+    */
+   public KernelConfiguration executorQueue(int type)
+   {
+      this.executorQueue = type;
+
+      return this;
+   }
+
+   /**
+    * Get the queue type of the kernel executor
+    * @return The type
+    */
+   public int getExecutorQueue()
+   {
+      return executorQueue;
+   }
+
+   /**
+    * Set the queue size of the kernel executor; default <code>Integer.MAX_VALUE</code>.
+    * Only used for the linked and array based queues
+    * @param v The value
+    * @return The configuration
+    */
+   public KernelConfiguration executorQueueSize(int v)
+   {
+      this.executorQueueSize = v;
+
+      return this;
+   }
+
+   /**
+    * Get the queue size of the kernel executor
+    * @return The value
+    */
+   public int getExecutorQueueSize()
+   {
+      return executorQueueSize;
+   }
+
+   /**
+    * Set the keep alive in seconds for idle threads in the kernel executor; default <code>60</code>
+    * @param v The value
+    * @return The configuration
+    */
+   public KernelConfiguration executorKeepAlive(long v)
+   {
+      this.executorKeepAlive = v;
+
+      return this;
+   }
+
+   /**
+    * Get the keep alive in seconds for idle threads in the kernel executor
+    * @return The value
+    */
+   public long getExecutorKeepAlive()
+   {
+      return executorKeepAlive;
+   }
+
+   /**
+    * Set the rejection policy of the kernel executor; default <code>REJECTION_ABORT</code>
+    * @param policy The policy
+    * @return The configuration
+    */
+   public KernelConfiguration executorRejectionPolicy(int policy)
+   {
+      this.executorRejectionPolicy = policy;
+
+      return this;
+   }
+
+   /**
+    * Get the rejection policy of the kernel executor
+    * @return The policy
+    */
+   public int getExecutorRejectionPolicy()
+   {
+      return executorRejectionPolicy;
+   }
+
+   /**
+    * Should the kernel executor be a work stealing fork/join pool; default <code>false</code>
+    * @param v The value
+    * @return The configuration
+    */
+   public KernelConfiguration executorWorkStealing(boolean v)
+   {
+      this.executorWorkStealing = v;
+
+      return this;
+   }
+
+   /**
+    * Is the kernel executor a work stealing fork/join pool ?
+    * @return The value
+    */
+   public boolean isExecutorWorkStealing()
+   {
+      return executorWorkStealing;
+   }
+
+   /**
+    * Should the kernel run its tasks in virtual threads; default <code>false</code>.
+    * The executor settings and the thread group are ignored when virtual threads
+    * are used, and platform threads are used if the platform doesn't support
+    * virtual threads
+    * @param v The value
+    * @return The configuration
+    */
+   public KernelConfiguration virtualThreads(boolean v)
+   {
+      this.virtualThreads = v;
+
+      return this;
+   }
+
+   /**
+    * Should the kernel run its tasks in virtual threads ?
+    * @return The value
+    */
+   public boolean isVirtualThreads()
+   {
+      return virtualThreads;
+   }
+
+   /**
+    * Set the expected number of beans; default <code>256</code>.
+    * The bean registry of the kernel is sized for the number of beans
+    * @param v The value
+    * @return The configuration
+    */
+   public KernelConfiguration beanCapacity(int v)
+   {
+      this.beanCapacity = v;
+
+      return this;
+   }
+
+   /**
+    * Get the expected number of beans
+    * @return The value
+    */
+   public int getBeanCapacity()
+   {
+      return beanCapacity;
+   }
+
+   /**
+    * Set the time in milliseconds that the kernel waits for a bean to stop during
+    * shutdown, before the beans it depends on are stopped; default <code>0</code>,
+    * which waits until the bean has stopped
+    * @param v The value
+    * @return The configuration
+    */
+   public KernelConfiguration beanStopTimeout(long v)
+   {
+      this.beanStopTimeout = v;
+
+      return this;
+   }
+
+   /**
+    * Get the bean stop timeout in milliseconds
+    * @return The value
+    */
+   public long getBeanStopTimeout()
+   {
+      return beanStopTimeout;
+   }
+
+   /**
+    * Set the time in milliseconds that a deployment waits for beans which are blocked
+    * on their dependencies while no bean makes progress, before the deployment fails;
+    * default <code>0</code>, which waits until the dependencies are resolved
+    * @param v The value
+    * @return The configuration
+    */
+   public KernelConfiguration dependencyTimeout(long v)
+   {
+      this.dependencyTimeout = v;
+
+      return this;
+   }
+
+   /**
+    * Get the dependency timeout in milliseconds
+    * @return The value
+    */
+   public long getDependencyTimeout()
+   {
+      return dependencyTimeout;
+   }
 }
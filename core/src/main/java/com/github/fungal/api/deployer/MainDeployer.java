@@ -23,6 +23,7 @@ package com.github.fungal.api.deployer;
 import com.github.fungal.spi.deployers.Deployment;
 
 import java.net.URL;
+import java.util.List;
 
 /**
  * The main deployer for Fungal
@@ -44,6 +45,18 @@ public interface MainDeployer
     */
    public void undeploy(URL url) throws Throwable;
 
+   /**
+    * Undeploy, and optionally the deployments which depend on it. The dependant deployments
+    * are found through the dependencies between their beans, and are undeployed together with
+    * the deployment, such that their beans are stopped in parallel in reverse dependency order
+    * @param url The URL for the deployment
+    * @param cascade Undeploy the dependant deployments
+    * @param redeploy Deploy the deployment and the dependant deployments again afterwards
+    * @return The URLs of the dependant deployments which were undeployed in deployment order
+    * @exception Throwable If an error occurs
+    */
+   public List<URL> undeploy(URL url, boolean cascade, boolean redeploy) throws Throwable;
+
    /**
     * Register a deployment -- advanced usage
     * @param deployment The deployment
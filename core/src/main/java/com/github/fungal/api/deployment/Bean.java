@@ -46,6 +46,7 @@ public class Bean
    private String name;
    private String interfaze;
    private String clazz;
+   private boolean lazy;
 
    /**
     * Constructor
@@ -71,6 +72,7 @@ public class Bean
       this.name = name;
       this.interfaze = null;
       this.clazz = null;
+      this.lazy = false;
    }
 
    /**
@@ -351,4 +353,22 @@ public class Bean
    {
       clazz = value;
    }
+
+   /**
+    * Is the bean lazy; e.g. created on first use
+    * @return The value
+    */
+   public boolean isLazy()
+   {
+      return lazy;
+   }
+
+   /**
+    * Set the lazy value
+    * @param value The value
+    */
+   public void setLazy(boolean value)
+   {
+      lazy = value;
+   }
 }
@@ -0,0 +1,455 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.api.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.WeakHashMap;
+
+/**
+ * The converter registry for Fungal.
+ *
+ * The registry holds the converters used for property values. The converter of
+ * a type is resolved once, and cached with the type; the resolution order is
+ * the registered converters, the built-in converters and finally a converter
+ * using a public constructor taking a <code>String</code> or a public static
+ * <code>valueOf(String)</code> method of the type. A type without a converter
+ * is cached as well.
+ *
+ * The converters are held by their type, such that a registered converter
+ * doesn't keep the class loader of its type alive. The registry is shared by
+ * all kernels in the JVM; a kernel unregisters the converters of a class
+ * loader when the deployment owning the class loader is undeployed
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public final class ConverterRegistry
+{
+   /** The type of a string converting method handle */
+   private static final MethodType CONVERT = MethodType.methodType(Object.class, String.class);
+
+   /** Marker for a type without a converter */
+   private static final Converter NONE = new Converter()
+   {
+      public Object convert(String value, ClassLoader cl)
+      {
+         return value;
+      }
+   };
+
+   /** The built-in converters */
+   private static final Map<Class<?>, Converter> BUILTIN = new HashMap<Class<?>, Converter>(23);
+
+   /** The registered converters */
+   private static final ClassValue<Registration> REGISTERED = new ClassValue<Registration>()
+   {
+      @Override
+      protected Registration computeValue(Class<?> type)
+      {
+         return new Registration();
+      }
+   };
+
+   /** The types with a registered converter; weakly referenced */
+   private static final Set<Class<?>> TYPES =
+      Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<Class<?>, Boolean>()));
+
+   /** The resolved converters */
+   private static final ClassValue<Converter> CONVERTERS = new ClassValue<Converter>()
+   {
+      @Override
+      protected Converter computeValue(Class<?> type)
+      {
+         return resolve(type);
+      }
+   };
+
+   static
+   {
+      Converter string = new Converter()
+      {
+         public Object convert(String value, ClassLoader cl)
+         {
+            return value;
+         }
+      };
+      BUILTIN.put(String.class, string);
+
+      Converter byteConverter = new Converter()
+      {
+         public Object convert(String value, ClassLoader cl)
+         {
+            return isBlank(value) ? value : Byte.valueOf(value);
+         }
+      };
+      BUILTIN.put(byte.class, byteConverter);
+      BUILTIN.put(Byte.class, byteConverter);
+
+      Converter shortConverter = new Converter()
+      {
+         public Object convert(String value, ClassLoader cl)
+         {
+            return isBlank(value) ? value : Short.valueOf(value);
+         }
+      };
+      BUILTIN.put(short.class, shortConverter);
+      BUILTIN.put(Short.class, shortConverter);
+
+      Converter intConverter = new Converter()
+      {
+         public Object convert(String value, ClassLoader cl)
+         {
+            return isBlank(value) ? value : Integer.valueOf(value);
+         }
+      };
+      BUILTIN.put(int.class, intConverter);
+      BUILTIN.put(Integer.class, intConverter);
+
+      Converter longConverter = new Converter()
+      {
+         public Object convert(String value, ClassLoader cl)
+         {
+            return isBlank(value) ? value : Long.valueOf(value);
+         }
+      };
+      BUILTIN.put(long.class, longConverter);
+      BUILTIN.put(Long.class, longConverter);
+
+      Converter floatConverter = new Converter()
+      {
+         public Object convert(String value, ClassLoader cl)
+         {
+            return isBlank(value) ? value : Float.valueOf(value);
+         }
+      };
+      BUILTIN.put(float.class, floatConverter);
+      BUILTIN.put(Float.class, floatConverter);
+
+      Converter doubleConverter = new Converter()
+      {
+         public Object convert(String value, ClassLoader cl)
+         {
+            return isBlank(value) ? value : Double.valueOf(value);
+         }
+      };
+      BUILTIN.put(double.class, doubleConverter);
+      BUILTIN.put(Double.class, doubleConverter);
+
+      Converter booleanConverter = new Converter()
+      {
+         public Object convert(String value, ClassLoader cl)
+         {
+            return isBlank(value) ? value : Boolean.valueOf(value);
+         }
+      };
+      BUILTIN.put(boolean.class, booleanConverter);
+      BUILTIN.put(Boolean.class, booleanConverter);
+
+      Converter charConverter = new Converter()
+      {
+         public Object convert(String value, ClassLoader cl)
+         {
+            return isBlank(value) ? value : Character.valueOf(value.charAt(0));
+         }
+      };
+      BUILTIN.put(char.class, charConverter);
+      BUILTIN.put(Character.class, charConverter);
+
+      BUILTIN.put(InetAddress.class, new Converter()
+      {
+         public Object convert(String value, ClassLoader cl) throws Exception
+         {
+            return InetAddress.getByName(value);
+         }
+      });
+
+      BUILTIN.put(Class.class, new Converter()
+      {
+         public Object convert(String value, ClassLoader cl) throws Exception
+         {
+            return Class.forName(value, true, cl);
+         }
+      });
+
+      BUILTIN.put(Properties.class, new Converter()
+      {
+         public Object convert(String value, ClassLoader cl)
+         {
+            Properties prop = new Properties();
+
+            StringTokenizer st = new StringTokenizer(value, " ,");
+            while (st.hasMoreTokens())
+            {
+               String token = st.nextToken();
+               String key = "";
+               String v = "";
+
+               int index = token.indexOf("=");
+               if (index != -1)
+               {
+                  key = token.substring(0, index);
+
+                  if (token.length() > index + 1)
+                     v = token.substring(index + 1);
+               }
+               else
+               {
+                  key = token;
+               }
+
+               if (!"".equals(key))
+                  prop.setProperty(key, v);
+            }
+
+            return prop;
+         }
+      });
+   }
+
+   /**
+    * Constructor
+    */
+   private ConverterRegistry()
+   {
+   }
+
+   /**
+    * Register a converter for a type; replaces the current converter of the type
+    * @param type The type
+    * @param converter The converter
+    */
+   public static void register(Class<?> type, Converter converter)
+   {
+      if (type == null)
+         throw new IllegalArgumentException("Type is null");
+
+      if (converter == null)
+         throw new IllegalArgumentException("Converter is null");
+
+      Registration registration = REGISTERED.get(type);
+      registration.converter = converter;
+
+      TYPES.add(type);
+      CONVERTERS.remove(type);
+   }
+
+   /**
+    * Unregister the converter of a type
+    * @param type The type
+    */
+   public static void unregister(Class<?> type)
+   {
+      if (type == null)
+         throw new IllegalArgumentException("Type is null");
+
+      Registration registration = REGISTERED.get(type);
+      registration.converter = null;
+
+      TYPES.remove(type);
+      CONVERTERS.remove(type);
+   }
+
+   /**
+    * Unregister the converters of the types, or the converters, loaded by a class loader
+    * @param cl The class loader
+    */
+   public static void unregister(ClassLoader cl)
+   {
+      if (cl == null)
+         throw new IllegalArgumentException("ClassLoader is null");
+
+      List<Class<?>> types = null;
+
+      synchronized (TYPES)
+      {
+         types = new ArrayList<Class<?>>(TYPES);
+      }
+
+      for (Class<?> type : types)
+      {
+         Converter converter = REGISTERED.get(type).converter;
+
+         if (type.getClassLoader() == cl || (converter != null && converter.getClass().getClassLoader() == cl))
+            unregister(type);
+      }
+   }
+
+   /**
+    * Get the converter of a type
+    * @param type The type
+    * @return The converter; <code>null</code> if the type can't be converted from a string
+    */
+   public static Converter getConverter(Class<?> type)
+   {
+      if (type == null)
+         throw new IllegalArgumentException("Type is null");
+
+      Converter converter = CONVERTERS.get(type);
+
+      if (converter == NONE)
+         return null;
+
+      return converter;
+   }
+
+   /**
+    * Resolve the converter of a type
+    * @param type The type
+    * @return The converter; <code>NONE</code> if the type can't be converted from a string
+    */
+   private static Converter resolve(Class<?> type)
+   {
+      Converter converter = REGISTERED.get(type).converter;
+
+      if (converter == null)
+         converter = BUILTIN.get(type);
+
+      if (converter != null)
+         return converter;
+
+      MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      MethodHandle constructor = null;
+      MethodHandle valueOf = null;
+
+      try
+      {
+         Constructor<?> c = SecurityActions.getConstructor(type, String.class);
+
+         if (!Modifier.isAbstract(type.getModifiers()))
+            constructor = lookup.unreflectConstructor(c).asType(CONVERT);
+      }
+      catch (Throwable t)
+      {
+         // No accessible constructor
+      }
+
+      try
+      {
+         Method m = SecurityActions.getMethod(type, "valueOf", String.class);
+
+         if (Modifier.isStatic(m.getModifiers()))
+            valueOf = lookup.unreflect(m).asType(CONVERT);
+      }
+      catch (Throwable t)
+      {
+         // No accessible valueOf method
+      }
+
+      if (constructor == null && valueOf == null)
+         return NONE;
+
+      return new StringConverter(type, constructor, valueOf);
+   }
+
+   /**
+    * Is the value blank
+    * @param value The value
+    * @return True if blank; otherwise false
+    */
+   private static boolean isBlank(String value)
+   {
+      return value == null || value.trim().equals("");
+   }
+
+   /**
+    * The registered converter of a type
+    */
+   static class Registration
+   {
+      /** The converter; <code>null</code> if none */
+      private volatile Converter converter;
+   }
+
+   /**
+    * A converter using a constructor taking a string, and a static valueOf method
+    */
+   static class StringConverter implements Converter
+   {
+      /** The type */
+      private Class<?> type;
+
+      /** The constructor */
+      private MethodHandle constructor;
+
+      /** The valueOf method */
+      private MethodHandle valueOf;
+
+      /**
+       * Constructor
+       * @param type The type
+       * @param constructor The constructor; can be <code>null</code>
+       * @param valueOf The valueOf method; can be <code>null</code>
+       */
+      StringConverter(Class<?> type, MethodHandle constructor, MethodHandle valueOf)
+      {
+         this.type = type;
+         this.constructor = constructor;
+         this.valueOf = valueOf;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public Object convert(String value, ClassLoader cl) throws Exception
+      {
+         Throwable cause = null;
+
+         if (constructor != null)
+         {
+            try
+            {
+               return (Object)constructor.invokeExact(value);
+            }
+            catch (Throwable t)
+            {
+               // Try the static valueOf method
+               cause = t;
+            }
+         }
+
+         if (valueOf != null)
+         {
+            try
+            {
+               return (Object)valueOf.invokeExact(value);
+            }
+            catch (Throwable t)
+            {
+               cause = t;
+            }
+         }
+
+         throw new IllegalArgumentException("Unable to convert " + value + " to " + type.getName(), cause);
+      }
+   }
+}
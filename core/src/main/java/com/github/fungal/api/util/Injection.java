@@ -20,21 +20,16 @@
 
 package com.github.fungal.api.util;
 
-import java.io.File;
 import java.io.Serializable;
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
-import java.util.Properties;
-import java.util.StringTokenizer;
 
 /**
  * Injection utility which can inject values into objects
@@ -190,7 +185,39 @@ public class Injection
     * @param propertyType The property type; can be <code>null</code>
     * @return The method; <code>null</code> if not found
     */
-   protected Method findMethod(Class<?> clz, String methodName, String propertyType)
+   protected Method findMethod(Class<?> clz, final String methodName, final String propertyType)
+   {
+      try
+      {
+         String key = "setter:" + methodName + "/" + propertyType;
+
+         return ReflectionCache.get(clz, key, new ReflectionCache.Resolver<Method>()
+         {
+            public Method resolve(Class<?> c)
+            {
+               return resolveMethod(c, methodName, propertyType);
+            }
+         });
+      }
+      catch (RuntimeException re)
+      {
+         throw re;
+      }
+      catch (Exception e)
+      {
+         // The resolver doesn't throw checked exceptions
+         throw new IllegalStateException(e.getMessage(), e);
+      }
+   }
+
+   /**
+    * Resolve a method
+    * @param clz The class
+    * @param methodName The method name
+    * @param propertyType The property type; can be <code>null</code>
+    * @return The method; <code>null</code> if not found
+    */
+   private Method resolveMethod(Class<?> clz, String methodName, String propertyType)
    {
       Class<?> c = clz;
 
@@ -250,7 +277,37 @@ public class Injection
     * @param fieldType The field type; can be <code>null</code>
     * @return The field; <code>null</code> if not found
     */
-   protected Field findField(Class<?> clz, String fieldName, String fieldType)
+   protected Field findField(Class<?> clz, final String fieldName, final String fieldType)
+   {
+      try
+      {
+         return ReflectionCache.get(clz, "field:" + fieldName + "/" + fieldType, new ReflectionCache.Resolver<Field>()
+         {
+            public Field resolve(Class<?> c)
+            {
+               return resolveField(c, fieldName, fieldType);
+            }
+         });
+      }
+      catch (RuntimeException re)
+      {
+         throw re;
+      }
+      catch (Exception e)
+      {
+         // The resolver doesn't throw checked exceptions
+         throw new IllegalStateException(e.getMessage(), e);
+      }
+   }
+
+   /**
+    * Resolve a field
+    * @param clz The class
+    * @param fieldName The field name
+    * @param fieldType The field type; can be <code>null</code>
+    * @return The field; <code>null</code> if not found
+    */
+   private Field resolveField(Class<?> clz, String fieldName, String fieldType)
    {
       Class<?> c = clz;
 
@@ -318,109 +375,12 @@ public class Injection
       {
          String substituredValue = getSubstitutionValue((String)v);
 
-         if (clz.equals(String.class))
-         {
-            v = substituredValue;
-         }
-         else if (clz.equals(byte.class) || clz.equals(Byte.class))
-         {
-            if (substituredValue != null && !substituredValue.trim().equals(""))
-               v = Byte.valueOf(substituredValue);
-         }
-         else if (clz.equals(short.class) || clz.equals(Short.class))
-         {
-            if (substituredValue != null && !substituredValue.trim().equals(""))
-               v = Short.valueOf(substituredValue);
-         }
-         else if (clz.equals(int.class) || clz.equals(Integer.class))
-         {
-            if (substituredValue != null && !substituredValue.trim().equals(""))
-               v = Integer.valueOf(substituredValue);
-         }
-         else if (clz.equals(long.class) || clz.equals(Long.class))
-         {
-            if (substituredValue != null && !substituredValue.trim().equals(""))
-               v = Long.valueOf(substituredValue);
-         }
-         else if (clz.equals(float.class) || clz.equals(Float.class))
-         {
-            if (substituredValue != null && !substituredValue.trim().equals(""))
-               v = Float.valueOf(substituredValue);
-         }
-         else if (clz.equals(double.class) || clz.equals(Double.class))
-         {
-            if (substituredValue != null && !substituredValue.trim().equals(""))
-               v = Double.valueOf(substituredValue);
-         }
-         else if (clz.equals(boolean.class) || clz.equals(Boolean.class))
-         {
-            if (substituredValue != null && !substituredValue.trim().equals(""))
-               v = Boolean.valueOf(substituredValue);
-         }
-         else if (clz.equals(char.class) || clz.equals(Character.class))
-         {
-            if (substituredValue != null && !substituredValue.trim().equals(""))
-               v = Character.valueOf(substituredValue.charAt(0));
-         }
-         else if (clz.equals(InetAddress.class))
-         {
-            v = InetAddress.getByName(substituredValue);
-         }
-         else if (clz.equals(Class.class))
-         {
-            v = Class.forName(substituredValue, true, cl);
-         }
-         else if (clz.equals(Properties.class))
-         {
-            Properties prop = new Properties();
-
-            StringTokenizer st = new StringTokenizer(substituredValue, " ,");
-            while (st.hasMoreTokens())
-            {
-               String token = st.nextToken();
-               String key = "";
-               String value = "";
-
-               int index = token.indexOf("=");
-               if (index != -1)
-               {
-                  key = token.substring(0, index);
+         Converter converter = ConverterRegistry.getConverter(clz);
 
-                  if (token.length() > index + 1)
-                     value = token.substring(index + 1);
-               }
-               else
-               {
-                  key = token;
-               }
+         if (converter == null)
+            throw new IllegalArgumentException("Unknown property resolution for property " + name);
 
-               if (!"".equals(key))
-                  prop.setProperty(key, value);
-            }
-
-            v = prop;
-         }
-         else
-         {
-            try
-            {
-               Constructor<?> constructor = SecurityActions.getConstructor(clz, String.class);
-               v = constructor.newInstance(substituredValue);
-            }
-            catch (Throwable t)
-            {
-               // Try static String valueOf method
-               try
-               {
-                  Method valueOf = SecurityActions.getMethod(clz, "valueOf", String.class);
-                  v = valueOf.invoke((Object)null, substituredValue);
-               }
-               catch (Throwable inner)
-               {
-                  throw new IllegalArgumentException("Unknown property resolution for property " + name);
-               }
-            }
-         }
+         v = converter.convert(substituredValue, cl);
       }
 
       return v;
@@ -436,68 +396,7 @@ public class Injection
       if (input == null || input.trim().equals(""))
          return input;
 
-      while (input.indexOf("${") != -1)
-      {
-         int from = input.indexOf("${");
-         int to = input.indexOf("}");
-         int dv = input.indexOf(":", from + 2);
-
-         if (dv != -1)
-         {
-            if (dv > to)
-               dv = -1;
-         }
-         
-         String systemProperty = "";
-         String defaultValue = "";
-         if (dv == -1)
-         {
-            String s = input.substring(from + 2, to);
-            if ("/".equals(s))
-            {
-               systemProperty = File.separator;
-            }
-            else if (":".equals(s))
-            {
-               systemProperty = File.pathSeparator;
-            }
-            else
-            {
-               systemProperty = SecurityActions.getSystemProperty(s);
-            }
-         }
-         else
-         {
-            systemProperty = SecurityActions.getSystemProperty(input.substring(from + 2, dv));
-            defaultValue = input.substring(dv + 1, to);
-         }
-         String prefix = "";
-         String postfix = "";
-
-         if (from != 0)
-         {
-            prefix = input.substring(0, from);
-         }
-         
-         if (to + 1 < input.length() - 1)
-         {
-            postfix = input.substring(to + 1);
-         }
-
-         if (systemProperty != null && !systemProperty.trim().equals(""))
-         {
-            input = prefix + systemProperty + postfix;
-         }
-         else if (!defaultValue.trim().equals(""))
-         {
-            input = prefix + defaultValue + postfix;
-         }
-         else
-         {
-            input = prefix + postfix;
-         }
-      }
-      return input;
+      return PlaceholderTemplate.substitute(input);
    }
 
    /**
@@ -0,0 +1,396 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.api.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A compiled placeholder template.
+ *
+ * A value like <code>${name:default}</code> is parsed once into literal and
+ * variable segments, and the compiled form is cached by the raw value.
+ * The name and the default value of a variable can contain variables themselves.
+ *
+ * A variable refers to a system property, or to an environment variable when the
+ * name starts with <code>env.</code>. <code>${/}</code> is the file separator, and
+ * <code>${:}</code> is the path separator. The default value is used when the
+ * variable is undefined or blank
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public final class PlaceholderTemplate
+{
+   /** The prefix of environment variables */
+   public static final String ENV_PREFIX = "env.";
+
+   /** The maximum number of cached templates */
+   private static final int MAX_CACHED = 16384;
+
+   /** The maximum depth of variable values containing variables */
+   private static final int MAX_DEPTH = 32;
+
+   /** The cache */
+   private static final ConcurrentMap<String, PlaceholderTemplate> CACHE =
+      new ConcurrentHashMap<String, PlaceholderTemplate>(1);
+
+   /** The segments; a String for a literal, or a Variable */
+   private Object[] segments;
+
+   /**
+    * Constructor
+    * @param segments The segments
+    */
+   private PlaceholderTemplate(Object[] segments)
+   {
+      this.segments = segments;
+   }
+
+   /**
+    * Substitute the variables in a value
+    * @param value The value
+    * @return The substituted value
+    */
+   public static String substitute(String value)
+   {
+      if (value == null || value.indexOf("${") == -1)
+         return value;
+
+      return compile(value).evaluate();
+   }
+
+   /**
+    * Compile a value into a template
+    * @param value The value
+    * @return The template
+    */
+   public static PlaceholderTemplate compile(String value)
+   {
+      if (value == null)
+         throw new IllegalArgumentException("Value is null");
+
+      PlaceholderTemplate template = CACHE.get(value);
+
+      if (template == null)
+      {
+         int[] position = new int[] {0};
+         template = parse(value, position, false);
+
+         // Unterminated variables are kept as they are
+         if (position[0] < value.length())
+            template = new PlaceholderTemplate(new Object[] {value});
+
+         if (CACHE.size() < MAX_CACHED)
+            CACHE.putIfAbsent(value, template);
+      }
+
+      return template;
+   }
+
+   /**
+    * Get the current values of system properties and environment variables
+    * @param names The names; environment variables start with <code>env.</code>
+    * @return The values; <code>null</code> for undefined names
+    */
+   public static Map<String, String> getValues(Collection<String> names)
+   {
+      if (names == null)
+         throw new IllegalArgumentException("Names is null");
+
+      Map<String, String> values = new LinkedHashMap<String, String>(names.size());
+
+      for (String name : names)
+      {
+         values.put(name, lookup(name));
+      }
+
+      return values;
+   }
+
+   /**
+    * Evaluate the template
+    * @return The value
+    */
+   public String evaluate()
+   {
+      if (segments.length == 1 && segments[0] instanceof String)
+         return (String)segments[0];
+
+      StringBuilder sb = new StringBuilder();
+      append(sb, 0);
+      return sb.toString();
+   }
+
+   /**
+    * Add the names of the system properties and environment variables that the
+    * template depends on. Names that are made of variables are evaluated with
+    * the current values
+    * @param names The names
+    */
+   public void addNames(Set<String> names)
+   {
+      if (names == null)
+         throw new IllegalArgumentException("Names is null");
+
+      addNames(names, 0);
+   }
+
+   /**
+    * Add the names of the variables
+    * @param names The names
+    * @param depth The depth
+    */
+   private void addNames(Set<String> names, int depth)
+   {
+      if (depth > MAX_DEPTH)
+         return;
+
+      for (Object segment : segments)
+      {
+         if (segment instanceof Variable)
+         {
+            Variable variable = (Variable)segment;
+            variable.name.addNames(names, depth);
+
+            String name = variable.name.evaluate();
+            if (name.length() > 0 && !"/".equals(name) && !":".equals(name) && names.add(name))
+            {
+               String value = lookup(name);
+
+               if (value != null && value.indexOf("${") != -1)
+                  compile(value).addNames(names, depth + 1);
+            }
+
+            if (variable.defaultValue != null)
+               variable.defaultValue.addNames(names, depth);
+         }
+      }
+   }
+
+   /**
+    * Append the value of the template
+    * @param sb The string builder
+    * @param depth The depth
+    */
+   private void append(StringBuilder sb, int depth)
+   {
+      for (Object segment : segments)
+      {
+         if (segment instanceof String)
+         {
+            sb.append((String)segment);
+         }
+         else
+         {
+            Variable variable = (Variable)segment;
+            String name = variable.name.evaluate();
+            String value = null;
+
+            if ("/".equals(name))
+            {
+               value = File.separator;
+            }
+            else if (":".equals(name))
+            {
+               value = File.pathSeparator;
+            }
+            else
+            {
+               value = lookup(name);
+            }
+
+            if (value != null && !value.trim().equals(""))
+            {
+               if (depth < MAX_DEPTH && value.indexOf("${") != -1)
+               {
+                  compile(value).append(sb, depth + 1);
+               }
+               else
+               {
+                  sb.append(value);
+               }
+            }
+            else if (variable.defaultValue != null)
+            {
+               String defaultValue = variable.defaultValue.evaluate();
+
+               if (!defaultValue.trim().equals(""))
+                  sb.append(defaultValue);
+            }
+         }
+      }
+   }
+
+   /**
+    * Look up a system property or an environment variable
+    * @param name The name
+    * @return The value; <code>null</code> if undefined
+    */
+   private static String lookup(String name)
+   {
+      if (name.length() == 0)
+         return null;
+
+      if (name.startsWith(ENV_PREFIX))
+         return SecurityActions.getEnvironmentVariable(name.substring(ENV_PREFIX.length()));
+
+      return SecurityActions.getSystemProperty(name);
+   }
+
+   /**
+    * Parse a value
+    * @param value The value
+    * @param position The position; updated to the position after the parsed part
+    * @param variable Is a variable being parsed; stops at <code>:</code> or <code>}</code>
+    * @return The template
+    */
+   private static PlaceholderTemplate parse(String value, int[] position, boolean variable)
+   {
+      List<Object> segments = new ArrayList<Object>(1);
+      StringBuilder literal = new StringBuilder();
+      int i = position[0];
+
+      while (i < value.length())
+      {
+         char c = value.charAt(i);
+
+         if (c == '$' && i + 1 < value.length() && value.charAt(i + 1) == '{')
+         {
+            int start = i;
+            int[] p = new int[] {i + 2};
+            PlaceholderTemplate name = null;
+            PlaceholderTemplate defaultValue = null;
+
+            // ${:} is the path separator
+            if (value.startsWith(":}", p[0]))
+            {
+               name = new PlaceholderTemplate(new Object[] {":"});
+               p[0]++;
+            }
+            else
+            {
+               name = parse(value, p, true);
+            }
+
+            if (p[0] < value.length() && value.charAt(p[0]) == ':')
+            {
+               p[0]++;
+               defaultValue = parse(value, p, true);
+
+               // The default value ends at the closing brace
+               while (p[0] < value.length() && value.charAt(p[0]) == ':')
+               {
+                  p[0]++;
+                  PlaceholderTemplate rest = parse(value, p, true);
+                  defaultValue = concat(defaultValue, ":", rest);
+               }
+            }
+
+            if (p[0] >= value.length() || value.charAt(p[0]) != '}')
+            {
+               // Unterminated
+               position[0] = start;
+               return new PlaceholderTemplate(new Object[] {value});
+            }
+
+            if (literal.length() > 0)
+            {
+               segments.add(literal.toString());
+               literal.setLength(0);
+            }
+
+            segments.add(new Variable(name, defaultValue));
+            i = p[0] + 1;
+         }
+         else if (variable && (c == ':' || c == '}'))
+         {
+            break;
+         }
+         else
+         {
+            literal.append(c);
+            i++;
+         }
+      }
+
+      if (literal.length() > 0 || segments.size() == 0)
+         segments.add(literal.toString());
+
+      position[0] = i;
+
+      return new PlaceholderTemplate(segments.toArray());
+   }
+
+   /**
+    * Concatenate two templates with a literal in between
+    * @param first The first template
+    * @param literal The literal
+    * @param second The second template
+    * @return The template
+    */
+   private static PlaceholderTemplate concat(PlaceholderTemplate first, String literal, PlaceholderTemplate second)
+   {
+      List<Object> segments = new ArrayList<Object>(first.segments.length + second.segments.length + 1);
+
+      for (Object segment : first.segments)
+      {
+         segments.add(segment);
+      }
+
+      segments.add(literal);
+
+      for (Object segment : second.segments)
+      {
+         segments.add(segment);
+      }
+
+      return new PlaceholderTemplate(segments.toArray());
+   }
+
+   /**
+    * A variable
+    */
+   static class Variable
+   {
+      /** The name */
+      private PlaceholderTemplate name;
+
+      /** The default value; can be <code>null</code> */
+      private PlaceholderTemplate defaultValue;
+
+      /**
+       * Constructor
+       * @param name The name
+       * @param defaultValue The default value
+       */
+      Variable(PlaceholderTemplate name, PlaceholderTemplate defaultValue)
+      {
+         this.name = name;
+         this.defaultValue = defaultValue;
+      }
+   }
+}
@@ -0,0 +1,256 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.api.util;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The reflection cache for Fungal.
+ *
+ * The cache memoises the result of reflective lookups, like setter resolution,
+ * lifecycle methods and constructor matching, per class. A lookup that didn't
+ * find anything is cached as well.
+ *
+ * The entries are kept with the class, so they don't keep the class loader
+ * of an undeployed class from being collected
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public final class ReflectionCache
+{
+   /** Marker for a lookup that didn't find anything */
+   private static final Object NONE = new Object();
+
+   /** The entries of each class */
+   private static final ClassValue<ConcurrentMap<String, Object>> ENTRIES =
+      new ClassValue<ConcurrentMap<String, Object>>()
+      {
+         @Override
+         protected ConcurrentMap<String, Object> computeValue(Class<?> type)
+         {
+            return new ConcurrentHashMap<String, Object>(1);
+         }
+      };
+
+   /** The number of hits */
+   private static final AtomicLong HITS = new AtomicLong(0);
+
+   /** The number of misses */
+   private static final AtomicLong MISSES = new AtomicLong(0);
+
+   /**
+    * Constructor
+    */
+   private ReflectionCache()
+   {
+   }
+
+   /**
+    * Get an entry, and resolve it if it isn't cached
+    * @param <T> The type of the value
+    * @param clz The class
+    * @param key The key of the entry
+    * @param resolver The resolver of the entry
+    * @return The value; can be <code>null</code>
+    * @exception Exception Thrown if the entry can't be resolved
+    */
+   @SuppressWarnings("unchecked")
+   public static <T> T get(Class<?> clz, String key, Resolver<T> resolver) throws Exception
+   {
+      if (clz == null)
+         throw new IllegalArgumentException("Class is null");
+
+      if (key == null)
+         throw new IllegalArgumentException("Key is null");
+
+      if (resolver == null)
+         throw new IllegalArgumentException("Resolver is null");
+
+      Object value = lookup(clz, key);
+
+      if (value == null)
+         value = store(clz, key, resolver.resolve(clz));
+
+      return value != NONE ? (T)value : null;
+   }
+
+   /**
+    * Get a public method without parameters, like a lifecycle method
+    * @param clz The class
+    * @param name The name of the method
+    * @return The method; <code>null</code> if the class doesn't have the method
+    */
+   public static Method getMethod(Class<?> clz, String name)
+   {
+      if (clz == null)
+         throw new IllegalArgumentException("Class is null");
+
+      if (name == null)
+         throw new IllegalArgumentException("Name is null");
+
+      String key = "method:" + name;
+      Object value = lookup(clz, key);
+
+      if (value == null)
+      {
+         Method method = null;
+         try
+         {
+            method = SecurityActions.getMethod(clz, name, (Class[])null);
+            SecurityActions.setAccessible(method);
+         }
+         catch (NoSuchMethodException nsme)
+         {
+            // The class doesn't have the method
+         }
+
+         value = store(clz, key, method);
+      }
+
+      return value != NONE ? (Method)value : null;
+   }
+
+   /**
+    * Get the types of a class; the class, its superclasses and all the interfaces
+    * that it implements
+    * @param clz The class
+    * @return The types
+    */
+   @SuppressWarnings("unchecked")
+   public static Set<Class<?>> getTypes(Class<?> clz)
+   {
+      if (clz == null)
+         throw new IllegalArgumentException("Class is null");
+
+      Object value = lookup(clz, "types");
+
+      if (value == null)
+      {
+         Set<Class<?>> types = new LinkedHashSet<Class<?>>();
+
+         for (Class<?> t = clz; t != null; t = t.getSuperclass())
+         {
+            types.add(t);
+         }
+
+         for (Class<?> t = clz; t != null; t = t.getSuperclass())
+         {
+            addInterfaces(t, types);
+         }
+
+         value = store(clz, "types", Collections.unmodifiableSet(types));
+      }
+
+      return (Set<Class<?>>)value;
+   }
+
+   /**
+    * Get the number of lookups served from the cache
+    * @return The value
+    */
+   public static long getHits()
+   {
+      return HITS.get();
+   }
+
+   /**
+    * Get the number of lookups which had to be resolved
+    * @return The value
+    */
+   public static long getMisses()
+   {
+      return MISSES.get();
+   }
+
+   /**
+    * Look up an entry
+    * @param clz The class
+    * @param key The key of the entry
+    * @return The value; <code>NONE</code> if the entry was resolved to nothing, or
+    *         <code>null</code> if the entry isn't cached
+    */
+   private static Object lookup(Class<?> clz, String key)
+   {
+      Object value = ENTRIES.get(clz).get(key);
+
+      if (value != null)
+      {
+         HITS.incrementAndGet();
+      }
+      else
+      {
+         MISSES.incrementAndGet();
+      }
+
+      return value;
+   }
+
+   /**
+    * Store a resolved entry; the entry stored first by concurrent resolvers wins
+    * @param clz The class
+    * @param key The key of the entry
+    * @param value The resolved value; can be <code>null</code>
+    * @return The cached value; <code>NONE</code> if the entry was resolved to nothing
+    */
+   private static Object store(Class<?> clz, String key, Object value)
+   {
+      if (value == null)
+         value = NONE;
+
+      Object existing = ENTRIES.get(clz).putIfAbsent(key, value);
+
+      return existing != null ? existing : value;
+   }
+
+   /**
+    * Add the interfaces of a type
+    * @param clz The type
+    * @param types The types
+    */
+   private static void addInterfaces(Class<?> clz, Set<Class<?>> types)
+   {
+      for (Class<?> i : clz.getInterfaces())
+      {
+         if (types.add(i))
+            addInterfaces(i, types);
+      }
+   }
+
+   /**
+    * The resolver of an entry
+    * @param <T> The type of the entry
+    */
+   public static interface Resolver<T>
+   {
+      /**
+       * Resolve the entry
+       * @param clz The class
+       * @return The value; <code>null</code> if not found
+       * @exception Exception Thrown if the entry can't be resolved
+       */
+      public T resolve(Class<?> clz) throws Exception;
+   }
+}
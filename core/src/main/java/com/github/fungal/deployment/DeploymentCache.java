@@ -0,0 +1,1029 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.deployment;
+
+import com.github.fungal.api.deployment.Bean;
+import com.github.fungal.api.deployment.Constructor;
+import com.github.fungal.api.deployment.Create;
+import com.github.fungal.api.deployment.Depends;
+import com.github.fungal.api.deployment.Destroy;
+import com.github.fungal.api.deployment.Entry;
+import com.github.fungal.api.deployment.Factory;
+import com.github.fungal.api.deployment.Incallback;
+import com.github.fungal.api.deployment.Inject;
+import com.github.fungal.api.deployment.Install;
+import com.github.fungal.api.deployment.Key;
+import com.github.fungal.api.deployment.List;
+import com.github.fungal.api.deployment.Map;
+import com.github.fungal.api.deployment.Null;
+import com.github.fungal.api.deployment.Parameter;
+import com.github.fungal.api.deployment.Property;
+import com.github.fungal.api.deployment.Set;
+import com.github.fungal.api.deployment.Start;
+import com.github.fungal.api.deployment.Stop;
+import com.github.fungal.api.deployment.This;
+import com.github.fungal.api.deployment.Uncallback;
+import com.github.fungal.api.deployment.Uninstall;
+import com.github.fungal.api.deployment.Value;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A cache of parsed bean deployment XML files.
+ *
+ * The cache is keyed by a hash of the content of the XML file, and holds the
+ * parsed deployment in a compact binary form, such that an unchanged XML file
+ * isn't parsed again. A changed XML file has a new key, and the entries which
+ * haven't been used since the cache was opened can be pruned.
+ *
+ * A deployment which is read with a listener isn't looked up, such that its beans
+ * reach the listener while the XML file is being read instead of once the whole
+ * file has been read and hashed. The XML file is hashed while it is read, and the
+ * deployment is cached for the deployments which are read without a listener
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class DeploymentCache
+{
+   /** The name of the cache directory */
+   public static final String DIRECTORY_NAME = "deployment-cache";
+
+   /** The magic number of a cache entry */
+   private static final int MAGIC = 0x46554E47;
+
+   /** The version of the binary form */
+   private static final int VERSION = 1;
+
+   /** The suffix of a cache entry */
+   private static final String SUFFIX = ".bin";
+
+   /** Content tag: text */
+   private static final int TEXT = 0;
+
+   /** Content tag: inject */
+   private static final int INJECT = 1;
+
+   /** Content tag: set */
+   private static final int SET = 2;
+
+   /** Content tag: map */
+   private static final int MAP = 3;
+
+   /** Content tag: list */
+   private static final int LIST = 4;
+
+   /** Content tag: null */
+   private static final int NULL = 5;
+
+   /** Content tag: this */
+   private static final int THIS = 6;
+
+   /** The logger */
+   private static Logger log = Logger.getLogger(DeploymentCache.class.getName());
+
+   /** The directory */
+   private File directory;
+
+   /** The keys which have been used */
+   private java.util.Set<String> used;
+
+   /**
+    * Constructor
+    * @param directory The directory of the cache; created if it doesn't exist
+    */
+   public DeploymentCache(File directory)
+   {
+      if (directory == null)
+         throw new IllegalArgumentException("Directory is null");
+
+      this.directory = directory;
+      this.used = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+   }
+
+   /**
+    * Unmarshal; the cached deployment is used if the XML file hasn't changed
+    * @param url The URL
+    * @return The result
+    * @exception IOException If an I/O error occurs
+    */
+   public Deployment unmarshal(URL url) throws IOException
+   {
+      return unmarshal(url, null);
+   }
+
+   /**
+    * Unmarshal, and hand each bean to a listener as soon as it has been read; the
+    * XML file is always parsed when there is a listener, and the result is cached
+    * @param url The URL
+    * @param listener The listener; <code>null</code> if none
+    * @return The result
+    * @exception IOException If an I/O error occurs
+    */
+   public Deployment unmarshal(URL url, Unmarshaller.Listener listener) throws IOException
+   {
+      if (url == null)
+         throw new IllegalArgumentException("File is null");
+
+      if (listener != null)
+         return stream(url, listener);
+
+      byte[] content = readContent(url);
+      String key = getKey(getDigest().digest(content));
+      File file = new File(directory, key + SUFFIX);
+
+      used.add(key);
+
+      if (file.exists())
+      {
+         Deployment deployment = null;
+         try
+         {
+            deployment = read(file);
+         }
+         catch (IOException ioe)
+         {
+            log.log(Level.FINE, "Unable to read the cached deployment of " + url, ioe);
+         }
+
+         if (deployment != null)
+            return deployment;
+      }
+
+      Deployment deployment = new Unmarshaller().unmarshal(new ByteArrayInputStream(content));
+
+      try
+      {
+         write(file, deployment);
+      }
+      catch (IOException ioe)
+      {
+         log.log(Level.FINE, "Unable to cache the deployment of " + url, ioe);
+      }
+
+      return deployment;
+   }
+
+   /**
+    * Parse a XML file while it is hashed, and cache the result
+    * @param url The URL
+    * @param listener The listener
+    * @return The result
+    * @exception IOException If an I/O error occurs
+    */
+   private Deployment stream(URL url, Unmarshaller.Listener listener) throws IOException
+   {
+      MessageDigest digest = getDigest();
+      Deployment deployment = new Unmarshaller().unmarshal(new HashingInputStream(Unmarshaller.openStream(url), digest),
+                                                           listener);
+      String key = getKey(digest.digest());
+      File file = new File(directory, key + SUFFIX);
+
+      used.add(key);
+
+      if (!file.exists())
+      {
+         try
+         {
+            write(file, deployment);
+         }
+         catch (IOException ioe)
+         {
+            log.log(Level.FINE, "Unable to cache the deployment of " + url, ioe);
+         }
+      }
+
+      return deployment;
+   }
+
+   /**
+    * Remove the entries which haven't been used since the cache was opened
+    */
+   public void prune()
+   {
+      File[] files = directory.listFiles();
+
+      if (files == null)
+         return;
+
+      for (File file : files)
+      {
+         String name = file.getName();
+
+         if (name.endsWith(SUFFIX) && !used.contains(name.substring(0, name.length() - SUFFIX.length())))
+         {
+            if (!file.delete())
+               log.fine("Unable to remove " + file);
+         }
+      }
+   }
+
+   /**
+    * Read the content of a XML file
+    * @param url The URL
+    * @return The content
+    * @exception IOException If an I/O error occurs
+    */
+   private byte[] readContent(URL url) throws IOException
+   {
+      InputStream is = Unmarshaller.openStream(url);
+      try
+      {
+         ByteArrayOutputStream os = new ByteArrayOutputStream(4096);
+         byte[] buffer = new byte[4096];
+         int n;
+
+         while ((n = is.read(buffer)) != -1)
+         {
+            os.write(buffer, 0, n);
+         }
+
+         return os.toByteArray();
+      }
+      finally
+      {
+         try
+         {
+            is.close();
+         }
+         catch (IOException ioe)
+         {
+            // Ignore
+         }
+      }
+   }
+
+   /**
+    * Get the digest which hashes the XML files
+    * @return The digest
+    * @exception IOException If the digest isn't available
+    */
+   private static MessageDigest getDigest() throws IOException
+   {
+      try
+      {
+         return MessageDigest.getInstance("SHA-256");
+      }
+      catch (NoSuchAlgorithmException nsae)
+      {
+         throw new IOException(nsae.getMessage(), nsae);
+      }
+   }
+
+   /**
+    * Get the key of a XML file
+    * @param digest The hash of the content
+    * @return The key
+    */
+   private static String getKey(byte[] digest)
+   {
+      StringBuilder sb = new StringBuilder(digest.length * 2);
+
+      for (byte b : digest)
+      {
+         sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+         sb.append(Character.forDigit(b & 0xF, 16));
+      }
+
+      return sb.toString();
+   }
+
+   /**
+    * Read a cache entry
+    * @param file The file
+    * @return The deployment
+    * @exception IOException If the entry can't be read
+    */
+   private Deployment read(File file) throws IOException
+   {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 4096));
+      try
+      {
+         if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            throw new IOException("Unsupported cache entry: " + file);
+
+         return new Reader(in).readDeployment();
+      }
+      finally
+      {
+         try
+         {
+            in.close();
+         }
+         catch (IOException ioe)
+         {
+            // Ignore
+         }
+      }
+   }
+
+   /**
+    * Write a cache entry; the entry is written to a temporary file first, such
+    * that a partial entry is never read
+    * @param file The file
+    * @param deployment The deployment
+    * @exception IOException If the entry can't be written
+    */
+   private void write(File file, Deployment deployment) throws IOException
+   {
+      if (!directory.exists() && !directory.mkdirs() && !directory.exists())
+         throw new IOException("Unable to create " + directory);
+
+      File tmp = File.createTempFile(file.getName(), ".tmp", directory);
+      try
+      {
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 4096));
+         try
+         {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            new Writer(out).writeDeployment(deployment);
+         }
+         finally
+         {
+            out.close();
+         }
+
+         if (!tmp.renameTo(file) && !file.exists())
+            throw new IOException("Unable to create " + file);
+      }
+      finally
+      {
+         if (tmp.exists() && !tmp.delete())
+            log.fine("Unable to remove " + tmp);
+      }
+   }
+
+   /**
+    * An input stream which hashes the content as it is read; the content which
+    * hasn't been read is hashed when the stream is closed, such that the hash
+    * covers the whole XML file
+    */
+   static class HashingInputStream extends DigestInputStream
+   {
+      /**
+       * Constructor
+       * @param is The input stream
+       * @param digest The digest
+       */
+      HashingInputStream(InputStream is, MessageDigest digest)
+      {
+         super(is, digest);
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void close() throws IOException
+      {
+         try
+         {
+            byte[] buffer = new byte[4096];
+
+            while (read(buffer, 0, buffer.length) != -1)
+            {
+               // Hashed by read
+            }
+         }
+         finally
+         {
+            super.close();
+         }
+      }
+   }
+
+   /**
+    * Writes the binary form; a string which has been written before is written as a reference
+    */
+   static class Writer
+   {
+      /** The output */
+      private DataOutputStream out;
+
+      /** The strings which have been written */
+      private HashMap<String, Integer> strings;
+
+      /**
+       * Constructor
+       * @param out The output
+       */
+      Writer(DataOutputStream out)
+      {
+         this.out = out;
+         this.strings = new HashMap<String, Integer>();
+      }
+
+      /**
+       * Write a deployment
+       * @param deployment The deployment
+       * @exception IOException If an I/O error occurs
+       */
+      void writeDeployment(Deployment deployment) throws IOException
+      {
+         writeSize(deployment.getBean().size());
+
+         for (Bean bt : deployment.getBean())
+         {
+            writeBean(bt);
+         }
+      }
+
+      /**
+       * Write a bean
+       * @param bt The bean
+       * @exception IOException If an I/O error occurs
+       */
+      private void writeBean(Bean bt) throws IOException
+      {
+         writeString(bt.getName());
+         writeString(bt.getClazz());
+         writeString(bt.getInterface());
+
+         int flags = 0;
+         if (bt.isIgnoreCreate())
+            flags |= 1;
+         if (bt.isIgnoreStart())
+            flags |= 2;
+         if (bt.isIgnoreStop())
+            flags |= 4;
+         if (bt.isIgnoreDestroy())
+            flags |= 8;
+         if (bt.isLazy())
+            flags |= 16;
+         out.writeByte(flags);
+
+         Constructor ct = bt.getConstructor();
+         out.writeBoolean(ct != null);
+         if (ct != null)
+         {
+            writeString(ct.getFactoryClass());
+            writeString(ct.getFactoryMethod());
+            writeString(ct.getFactory() != null ? ct.getFactory().getBean() : null);
+            out.writeBoolean(ct.getFactory() != null);
+
+            writeSize(ct.getParameter().size());
+            for (Parameter pt : ct.getParameter())
+            {
+               writeString(pt.getClazz());
+               writeContent(pt.getContent());
+            }
+         }
+
+         writeSize(bt.getProperty().size());
+         for (Property pt : bt.getProperty())
+         {
+            writeString(pt.getName());
+            writeString(pt.getClazz());
+            writeContent(pt.getContent());
+         }
+
+         writeSize(bt.getDepends().size());
+         for (Depends dt : bt.getDepends())
+         {
+            writeString(dt.getValue());
+         }
+
+         writeSize(bt.getInstall().size());
+         for (Install it : bt.getInstall())
+         {
+            writeString(it.getMethod());
+         }
+
+         writeSize(bt.getUninstall().size());
+         for (Uninstall ut : bt.getUninstall())
+         {
+            writeString(ut.getMethod());
+         }
+
+         writeSize(bt.getIncallback().size());
+         for (Incallback it : bt.getIncallback())
+         {
+            writeString(it.getMethod());
+         }
+
+         writeSize(bt.getUncallback().size());
+         for (Uncallback ut : bt.getUncallback())
+         {
+            writeString(ut.getMethod());
+         }
+
+         out.writeBoolean(bt.getCreate() != null);
+         if (bt.getCreate() != null)
+            writeString(bt.getCreate().getMethod());
+
+         out.writeBoolean(bt.getStart() != null);
+         if (bt.getStart() != null)
+            writeString(bt.getStart().getMethod());
+
+         out.writeBoolean(bt.getStop() != null);
+         if (bt.getStop() != null)
+            writeString(bt.getStop().getMethod());
+
+         out.writeBoolean(bt.getDestroy() != null);
+         if (bt.getDestroy() != null)
+            writeString(bt.getDestroy().getMethod());
+      }
+
+      /**
+       * Write the content of a property or a parameter
+       * @param content The content
+       * @exception IOException If an I/O error occurs
+       */
+      private void writeContent(java.util.List<Object> content) throws IOException
+      {
+         writeSize(content.size());
+
+         for (Object o : content)
+         {
+            if (o instanceof Inject)
+            {
+               Inject it = (Inject)o;
+               out.writeByte(INJECT);
+               writeString(it.getBean());
+               writeString(it.getProperty());
+               writeString(it.getValue());
+            }
+            else if (o instanceof Set)
+            {
+               Set st = (Set)o;
+               out.writeByte(SET);
+               writeString(st.getElementClass());
+               writeString(st.getClazz());
+               writeValues(st.getValue());
+            }
+            else if (o instanceof Map)
+            {
+               Map mt = (Map)o;
+               out.writeByte(MAP);
+               writeString(mt.getKeyClass());
+               writeString(mt.getValueClass());
+               writeString(mt.getClazz());
+
+               writeSize(mt.getEntry().size());
+               for (Entry et : mt.getEntry())
+               {
+                  out.writeBoolean(et.getKey() != null);
+                  if (et.getKey() != null)
+                     writeString(et.getKey().getValue());
+
+                  out.writeBoolean(et.getValue() != null);
+                  if (et.getValue() != null)
+                     writeString(et.getValue().getValue());
+               }
+            }
+            else if (o instanceof List)
+            {
+               List lt = (List)o;
+               out.writeByte(LIST);
+               writeString(lt.getElementClass());
+               writeString(lt.getClazz());
+               writeValues(lt.getValue());
+            }
+            else if (o instanceof Null)
+            {
+               out.writeByte(NULL);
+            }
+            else if (o instanceof This)
+            {
+               out.writeByte(THIS);
+            }
+            else if (o instanceof String)
+            {
+               out.writeByte(TEXT);
+               writeString((String)o);
+            }
+            else
+            {
+               throw new IOException("Unsupported content: " + o);
+            }
+         }
+      }
+
+      /**
+       * Write values
+       * @param values The values
+       * @exception IOException If an I/O error occurs
+       */
+      private void writeValues(java.util.List<Value> values) throws IOException
+      {
+         writeSize(values.size());
+
+         for (Value vt : values)
+         {
+            writeString(vt.getValue());
+         }
+      }
+
+      /**
+       * Write a string; 0 for null, 1 followed by the string, or the index of the string plus 2
+       * @param s The string
+       * @exception IOException If an I/O error occurs
+       */
+      private void writeString(String s) throws IOException
+      {
+         if (s == null)
+         {
+            writeSize(0);
+            return;
+         }
+
+         Integer index = strings.get(s);
+
+         if (index != null)
+         {
+            writeSize(index.intValue() + 2);
+         }
+         else
+         {
+            strings.put(s, Integer.valueOf(strings.size()));
+            writeSize(1);
+            out.writeUTF(s);
+         }
+      }
+
+      /**
+       * Write a size using 7 bits per byte
+       * @param v The value
+       * @exception IOException If an I/O error occurs
+       */
+      private void writeSize(int v) throws IOException
+      {
+         while ((v & ~0x7F) != 0)
+         {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+         }
+
+         out.writeByte(v);
+      }
+   }
+
+   /**
+    * Reads the binary form
+    */
+   static class Reader
+   {
+      /** The input */
+      private DataInputStream in;
+
+      /** The strings which have been read */
+      private ArrayList<String> strings;
+
+      /**
+       * Constructor
+       * @param in The input
+       */
+      Reader(DataInputStream in)
+      {
+         this.in = in;
+         this.strings = new ArrayList<String>();
+      }
+
+      /**
+       * Read a deployment
+       * @return The deployment
+       * @exception IOException If an I/O error occurs
+       */
+      Deployment readDeployment() throws IOException
+      {
+         Deployment deployment = new Deployment();
+         int beans = readSize();
+
+         for (int i = 0; i < beans; i++)
+         {
+            deployment.getBean().add(readBean());
+         }
+
+         return deployment;
+      }
+
+      /**
+       * Read a bean
+       * @return The bean
+       * @exception IOException If an I/O error occurs
+       */
+      private Bean readBean() throws IOException
+      {
+         Bean bt = new Bean(readString());
+         bt.setClazz(readString());
+         bt.setInterface(readString());
+
+         int flags = in.readByte();
+         bt.setIgnoreCreate((flags & 1) != 0);
+         bt.setIgnoreStart((flags & 2) != 0);
+         bt.setIgnoreStop((flags & 4) != 0);
+         bt.setIgnoreDestroy((flags & 8) != 0);
+         bt.setLazy((flags & 16) != 0);
+
+         if (in.readBoolean())
+         {
+            Constructor ct = new Constructor();
+            ct.setFactoryClass(readName());
+            ct.setFactoryMethod(readString());
+
+            String factoryBean = readName();
+            if (in.readBoolean())
+            {
+               Factory ft = new Factory();
+               ft.setBean(factoryBean);
+               ct.setFactory(ft);
+            }
+
+            int parameters = readSize();
+            for (int i = 0; i < parameters; i++)
+            {
+               Parameter pt = new Parameter();
+               pt.setClazz(readName());
+               readContent(pt.getContent());
+               ct.getParameter().add(pt);
+            }
+
+            bt.setConstructor(ct);
+         }
+
+         int properties = readSize();
+         for (int i = 0; i < properties; i++)
+         {
+            Property pt = new Property(readName());
+            pt.setClazz(readName());
+            readContent(pt.getContent());
+            bt.getProperty().add(pt);
+         }
+
+         int depends = readSize();
+         for (int i = 0; i < depends; i++)
+         {
+            Depends dt = new Depends();
+            dt.setValue(readName());
+            bt.getDepends().add(dt);
+         }
+
+         int installs = readSize();
+         for (int i = 0; i < installs; i++)
+         {
+            Install it = new Install();
+            it.setMethod(readString());
+            bt.getInstall().add(it);
+         }
+
+         int uninstalls = readSize();
+         for (int i = 0; i < uninstalls; i++)
+         {
+            Uninstall ut = new Uninstall();
+            ut.setMethod(readString());
+            bt.getUninstall().add(ut);
+         }
+
+         int incallbacks = readSize();
+         for (int i = 0; i < incallbacks; i++)
+         {
+            Incallback it = new Incallback();
+            it.setMethod(readString());
+            bt.getIncallback().add(it);
+         }
+
+         int uncallbacks = readSize();
+         for (int i = 0; i < uncallbacks; i++)
+         {
+            Uncallback ut = new Uncallback();
+            ut.setMethod(readString());
+            bt.getUncallback().add(ut);
+         }
+
+         if (in.readBoolean())
+         {
+            Create ct = new Create();
+            ct.setMethod(readString());
+            bt.setCreate(ct);
+         }
+
+         if (in.readBoolean())
+         {
+            Start st = new Start();
+            st.setMethod(readString());
+            bt.setStart(st);
+         }
+
+         if (in.readBoolean())
+         {
+            Stop st = new Stop();
+            st.setMethod(readString());
+            bt.setStop(st);
+         }
+
+         if (in.readBoolean())
+         {
+            Destroy dt = new Destroy();
+            dt.setMethod(readString());
+            bt.setDestroy(dt);
+         }
+
+         return ParsedBean.of(bt);
+      }
+
+      /**
+       * Read the content of a property or a parameter
+       * @param content The content
+       * @exception IOException If an I/O error occurs
+       */
+      private void readContent(java.util.List<Object> content) throws IOException
+      {
+         int size = readSize();
+
+         for (int i = 0; i < size; i++)
+         {
+            int tag = in.readByte();
+
+            switch (tag)
+            {
+               case INJECT :
+               {
+                  Inject it = new Inject(readName());
+                  it.setProperty(readName());
+                  it.setValue(readString());
+                  content.add(it);
+                  break;
+               }
+               case SET :
+               {
+                  Set st = new Set(readName());
+                  st.setClazz(readName());
+                  readValues(st.getValue());
+                  content.add(st);
+                  break;
+               }
+               case MAP :
+               {
+                  Map mt = new Map(readName(), readName());
+                  mt.setClazz(readName());
+
+                  int entries = readSize();
+                  for (int j = 0; j < entries; j++)
+                  {
+                     Entry et = new Entry();
+
+                     if (in.readBoolean())
+                     {
+                        Key kt = new Key();
+                        kt.setValue(readString());
+                        et.setKey(kt);
+                     }
+
+                     if (in.readBoolean())
+                     {
+                        Value vt = new Value();
+                        vt.setValue(readString());
+                        et.setValue(vt);
+                     }
+
+                     mt.getEntry().add(et);
+                  }
+
+                  content.add(mt);
+                  break;
+               }
+               case LIST :
+               {
+                  List lt = new List(readName());
+                  lt.setClazz(readName());
+                  readValues(lt.getValue());
+                  content.add(lt);
+                  break;
+               }
+               case NULL :
+               {
+                  content.add(new Null());
+                  break;
+               }
+               case THIS :
+               {
+                  content.add(new This());
+                  break;
+               }
+               case TEXT :
+               {
+                  content.add(readString());
+                  break;
+               }
+               default :
+                  throw new IOException("Unsupported content: " + tag);
+            }
+         }
+      }
+
+      /**
+       * Read values
+       * @param values The values
+       * @exception IOException If an I/O error occurs
+       */
+      private void readValues(java.util.List<Value> values) throws IOException
+      {
+         int size = readSize();
+
+         for (int i = 0; i < size; i++)
+         {
+            Value vt = new Value();
+            vt.setValue(readString());
+            values.add(vt);
+         }
+      }
+
+      /**
+       * Read a string
+       * @return The string
+       * @exception IOException If an I/O error occurs
+       */
+      private String readString() throws IOException
+      {
+         int v = readSize();
+
+         if (v == 0)
+            return null;
+
+         if (v == 1)
+         {
+            String s = in.readUTF();
+            strings.add(s);
+            return s;
+         }
+
+         if (v - 2 >= strings.size())
+            throw new IOException("Invalid string reference: " + v);
+
+         return strings.get(v - 2);
+      }
+
+      /**
+       * Read a name; e.g. a bean, class or property name
+       * @return The interned name
+       * @exception IOException If an I/O error occurs
+       */
+      private String readName() throws IOException
+      {
+         return ParsedBean.intern(readString());
+      }
+
+      /**
+       * Read a size
+       * @return The value
+       * @exception IOException If an I/O error occurs
+       */
+      private int readSize() throws IOException
+      {
+         int v = 0;
+         int shift = 0;
+         int b;
+
+         do
+         {
+            if (shift > 28)
+               throw new IOException("Invalid size");
+
+            b = in.readByte() & 0xFF;
+            v |= (b & 0x7F) << shift;
+            shift += 7;
+         }
+         while ((b & 0x80) != 0);
+
+         return v;
+      }
+   }
+}
@@ -0,0 +1,186 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.deployment;
+
+import com.github.fungal.api.deployment.Bean;
+import com.github.fungal.api.deployment.Depends;
+import com.github.fungal.api.deployment.Incallback;
+import com.github.fungal.api.deployment.Install;
+import com.github.fungal.api.deployment.Property;
+import com.github.fungal.api.deployment.Uncallback;
+import com.github.fungal.api.deployment.Uninstall;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A bean read from a bean deployment XML file.
+ *
+ * The bean is read-only by convention; it, and the elements it holds, are shared
+ * between threads and the deployment cache, so they must not be changed once read.
+ * This isn't enforced, such that the bean can be used wherever a bean can. The lists
+ * are sized exactly, and the names are interned
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+final class ParsedBean extends Bean
+{
+   /** The property values */
+   private final List<Property> property;
+
+   /** The depends values */
+   private final List<Depends> depends;
+
+   /** The install values */
+   private final List<Install> install;
+
+   /** The uninstall values */
+   private final List<Uninstall> uninstall;
+
+   /** The incallback values */
+   private final List<Incallback> incallback;
+
+   /** The uncallback values */
+   private final List<Uncallback> uncallback;
+
+   /**
+    * Constructor
+    * @param bean The bean which is copied
+    */
+   private ParsedBean(Bean bean)
+   {
+      super(intern(bean.getName()));
+
+      setConstructor(bean.getConstructor());
+      setCreate(bean.getCreate());
+      setStart(bean.getStart());
+      setStop(bean.getStop());
+      setDestroy(bean.getDestroy());
+      setIgnoreCreate(bean.isIgnoreCreate());
+      setIgnoreStart(bean.isIgnoreStart());
+      setIgnoreStop(bean.isIgnoreStop());
+      setIgnoreDestroy(bean.isIgnoreDestroy());
+      setInterface(intern(bean.getInterface()));
+      setClazz(intern(bean.getClazz()));
+      setLazy(bean.isLazy());
+
+      this.property = copy(bean.getProperty());
+      this.depends = copy(bean.getDepends());
+      this.install = copy(bean.getInstall());
+      this.uninstall = copy(bean.getUninstall());
+      this.incallback = copy(bean.getIncallback());
+      this.uncallback = copy(bean.getUncallback());
+   }
+
+   /**
+    * Create a compact copy of a bean
+    * @param bean The bean
+    * @return The compact bean
+    */
+   static Bean of(Bean bean)
+   {
+      if (bean == null)
+         throw new IllegalArgumentException("Bean is null");
+
+      if (bean instanceof ParsedBean)
+         return bean;
+
+      return new ParsedBean(bean);
+   }
+
+   /**
+    * Intern a name; e.g. a bean, class or property name, such that the names
+    * which occur in many places share one instance
+    * @param value The value
+    * @return The interned value; <code>null</code> if the value is <code>null</code>
+    */
+   static String intern(String value)
+   {
+      if (value == null)
+         return null;
+
+      return value.intern();
+   }
+
+   /**
+    * Copy a list
+    * @param list The list
+    * @return The copy, sized exactly
+    */
+   private static <T> List<T> copy(List<T> list)
+   {
+      return new ArrayList<T>(list);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Property> getProperty()
+   {
+      return property;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Depends> getDepends()
+   {
+      return depends;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Install> getInstall()
+   {
+      return install;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Uninstall> getUninstall()
+   {
+      return uninstall;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Incallback> getIncallback()
+   {
+      return incallback;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public List<Uncallback> getUncallback()
+   {
+      return uncallback;
+   }
+
+}
@@ -88,26 +88,36 @@ public class Unmarshaller
       if (url == null)
          throw new IllegalArgumentException("File is null");
 
-      InputStream is = null;
+      return unmarshal(openStream(url));
+   }
+
+   /**
+    * Unmarshal
+    * @param is The input stream; closed when done
+    * @return The result
+    * @exception IOException If an I/O error occurs
+    */
+   public Deployment unmarshal(InputStream is) throws IOException
+   {
+      return unmarshal(is, null);
+   }
+
+   /**
+    * Unmarshal, and hand each bean to a listener as soon as it has been read
+    * @param is The input stream; closed when done
+    * @param listener The listener; <code>null</code> if none
+    * @return The result
+    * @exception IOException If an I/O error occurs
+    */
+   public Deployment unmarshal(InputStream is, Listener listener) throws IOException
+   {
+      if (is == null)
+         throw new IllegalArgumentException("InputStream is null");
+
       try
       {
          Deployment deployment = new Deployment();
 
-         if ("file".equals(url.getProtocol()))
-         {
-            File file = new File(url.toURI());
-            is = new FileInputStream(file);
-         }
-         else if ("jar".equals(url.getProtocol()))
-         {
-            JarURLConnection jarConnection = (JarURLConnection)url.openConnection();
-            is = jarConnection.getInputStream();
-         }
-         else
-         {
-            throw new IOException("Unsupport protocol: " + url);
-         }
-
          is = new BufferedInputStream(is, 4096);
 
          XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
@@ -130,7 +140,11 @@ public class Unmarshaller
                   }
                   else if (found && "bean".equals(xmlStreamReader.getLocalName()))
                   {
-                     deployment.getBean().add(readBean(xmlStreamReader));
+                     Bean bean = readBean(xmlStreamReader);
+                     deployment.getBean().add(bean);
+
+                     if (listener != null)
+                        listener.beanRead(bean);
                   }
 
                   break;
@@ -148,8 +162,7 @@ public class Unmarshaller
       {
          try
          {
-            if (is != null)
-               is.close();
+            is.close();
          }
          catch (IOException ioe)
          {
@@ -158,6 +171,53 @@ public class Unmarshaller
       }
    }
 
+   /**
+    * Unmarshal, and hand each bean to a listener as soon as it has been read
+    * @param url The URL
+    * @param listener The listener; <code>null</code> if none
+    * @return The result
+    * @exception IOException If an I/O error occurs
+    */
+   public Deployment unmarshal(URL url, Listener listener) throws IOException
+   {
+      if (url == null)
+         throw new IllegalArgumentException("File is null");
+
+      return unmarshal(openStream(url), listener);
+   }
+
+   /**
+    * Open a deployment
+    * @param url The URL
+    * @return The input stream
+    * @exception IOException If an I/O error occurs
+    */
+   static InputStream openStream(URL url) throws IOException
+   {
+      try
+      {
+         if ("file".equals(url.getProtocol()))
+         {
+            return new FileInputStream(new File(url.toURI()));
+         }
+         else if ("jar".equals(url.getProtocol()))
+         {
+            JarURLConnection jarConnection = (JarURLConnection)url.openConnection();
+            return jarConnection.getInputStream();
+         }
+      }
+      catch (IOException ioe)
+      {
+         throw ioe;
+      }
+      catch (Throwable t)
+      {
+         throw new IOException(t.getMessage(), t);
+      }
+
+      throw new IOException("Unsupport protocol: " + url);
+   }
+
    /**
     * Read: <bean>
     * @param xmlStreamReader The XML stream
@@ -169,6 +229,7 @@ public class Unmarshaller
       String beanName = null;
       String beanClazz = null;
       String beanInterface = null;
+      boolean beanLazy = false;
 
       for (int i = 0; i < xmlStreamReader.getAttributeCount(); i++)
       {
@@ -185,6 +246,10 @@ public class Unmarshaller
          {
             beanInterface = xmlStreamReader.getAttributeValue(i);
          }
+         else if ("lazy".equals(name))
+         {
+            beanLazy = Boolean.valueOf(xmlStreamReader.getAttributeValue(i).trim()).booleanValue();
+         }
       }
 
       if (beanName == null || beanName.trim().equals(""))
@@ -193,6 +258,7 @@ public class Unmarshaller
       Bean result = new Bean(beanName);
       result.setClazz(beanClazz);
       result.setInterface(beanInterface);
+      result.setLazy(beanLazy);
 
       int eventCode = xmlStreamReader.next();
 
@@ -273,7 +339,7 @@ public class Unmarshaller
       if (!"bean".equals(xmlStreamReader.getLocalName()))
          throw new XMLStreamException("bean tag not completed", xmlStreamReader.getLocation());
 
-      return result;
+      return ParsedBean.of(result);
    }
 
    /**
@@ -295,7 +361,7 @@ public class Unmarshaller
          }
          else if ("factoryClass".equals(name))
          {
-            result.setFactoryClass(xmlStreamReader.getAttributeValue(i));
+            result.setFactoryClass(ParsedBean.intern(xmlStreamReader.getAttributeValue(i)));
          }
       }
 
@@ -345,7 +411,7 @@ public class Unmarshaller
          String name = xmlStreamReader.getAttributeLocalName(i);
          if ("class".equals(name))
          {
-            result.setClazz(xmlStreamReader.getAttributeValue(i));
+            result.setClazz(ParsedBean.intern(xmlStreamReader.getAttributeValue(i)));
          }
       }
 
@@ -403,11 +469,11 @@ public class Unmarshaller
          String name = xmlStreamReader.getAttributeLocalName(i);
          if ("name".equals(name))
          {
-            propertyName = xmlStreamReader.getAttributeValue(i);
+            propertyName = ParsedBean.intern(xmlStreamReader.getAttributeValue(i));
          }
          else if ("class".equals(name))
          {
-            clazz = xmlStreamReader.getAttributeValue(i);
+            clazz = ParsedBean.intern(xmlStreamReader.getAttributeValue(i));
          }
       }
 
@@ -487,11 +553,11 @@ public class Unmarshaller
          String name = xmlStreamReader.getAttributeLocalName(i);
          if ("bean".equals(name))
          {
-            bean = xmlStreamReader.getAttributeValue(i);
+            bean = ParsedBean.intern(xmlStreamReader.getAttributeValue(i));
          }
          else if ("property".equals(name))
          {
-            property = xmlStreamReader.getAttributeValue(i);
+            property = ParsedBean.intern(xmlStreamReader.getAttributeValue(i));
          }
       }
 
@@ -540,7 +606,7 @@ public class Unmarshaller
          switch (eventCode)
          {
             case XMLStreamReader.CHARACTERS :
-               result.setValue(xmlStreamReader.getText());
+               result.setValue(ParsedBean.intern(xmlStreamReader.getText()));
                break;
 
             default :
@@ -700,15 +766,15 @@ public class Unmarshaller
          String name = xmlStreamReader.getAttributeLocalName(i);
          if ("keyClass".equals(name))
          {
-            keyClass = xmlStreamReader.getAttributeValue(i);
+            keyClass = ParsedBean.intern(xmlStreamReader.getAttributeValue(i));
          }
          else if ("valueClass".equals(name))
          {
-            valueClass = xmlStreamReader.getAttributeValue(i);
+            valueClass = ParsedBean.intern(xmlStreamReader.getAttributeValue(i));
          }
          else if ("class".equals(name))
          {
-            clazz = xmlStreamReader.getAttributeValue(i);
+            clazz = ParsedBean.intern(xmlStreamReader.getAttributeValue(i));
          }
       }
 
@@ -763,11 +829,11 @@ public class Unmarshaller
          String name = xmlStreamReader.getAttributeLocalName(i);
          if ("elementClass".equals(name))
          {
-            elementClass = xmlStreamReader.getAttributeValue(i);
+            elementClass = ParsedBean.intern(xmlStreamReader.getAttributeValue(i));
          }
          else if ("class".equals(name))
          {
-            clazz = xmlStreamReader.getAttributeValue(i);
+            clazz = ParsedBean.intern(xmlStreamReader.getAttributeValue(i));
          }
       }
 
@@ -819,11 +885,11 @@ public class Unmarshaller
          String name = xmlStreamReader.getAttributeLocalName(i);
          if ("elementClass".equals(name))
          {
-            elementClass = xmlStreamReader.getAttributeValue(i);
+            elementClass = ParsedBean.intern(xmlStreamReader.getAttributeValue(i));
          }
          else if ("class".equals(name))
          {
-            clazz = xmlStreamReader.getAttributeValue(i);
+            clazz = ParsedBean.intern(xmlStreamReader.getAttributeValue(i));
          }
       }
 
@@ -1026,7 +1092,7 @@ public class Unmarshaller
          String name = xmlStreamReader.getAttributeLocalName(i);
          if ("bean".equals(name))
          {
-            result.setBean(xmlStreamReader.getAttributeValue(i));
+            result.setBean(ParsedBean.intern(xmlStreamReader.getAttributeValue(i)));
          }
       }
 
@@ -1254,4 +1320,16 @@ public class Unmarshaller
 
       return true;
    }
+
+   /**
+    * A listener for the beans of a deployment while it is being read
+    */
+   public interface Listener
+   {
+      /**
+       * A bean has been read
+       * @param bean The bean
+       */
+      void beanRead(Bean bean);
+   }
 }
@@ -0,0 +1,476 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.spi.deployers.DeployException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The beans of a deployment which are installed together.
+ *
+ * The first bean which fails cancels the beans of the batch which haven't
+ * started yet, such that the waiting thread and the beans which depend on
+ * them are released right away. The beans which were installed are destroyed
+ * in reverse dependency order once the beans that were running have finished.
+ *
+ * A dependency cycle fails the batch before any bean is started. The check and the
+ * registration of the dependencies of the batch are atomic across the batches of
+ * the kernel, such that a cycle which spans deployments deployed in parallel is seen
+ * by the last of them to be checked. During startup the dependencies declared by
+ * the descriptors which haven't been deployed yet are part of the check too, such
+ * that a cycle spanning deployments which are deployed one at a time fails the
+ * first of them instead of blocking it. The beans which are blocked on their
+ * dependencies while no bean in the kernel makes progress for the dependency
+ * timeout of the kernel configuration fail the batch with a report of what they
+ * are waiting for.
+ *
+ * The beans can also be streamed into the batch while the deployment is being
+ * read, in which case each bean is scheduled right away, and the unknown
+ * dependencies and dependency cycles are checked once the last bean is in.
+ *
+ * A bean whose dependency failed fails too. A dependency in ERROR releases the
+ * beans which wait for it, like a started dependency, so each bean checks that its
+ * dependencies have started, or are lazy, before it is created instead of being
+ * started without its dependency.
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+final class BeanBatch
+{
+   /** The log */
+   private Logger log;
+
+   /** The kernel */
+   private KernelImpl kernel;
+
+   /** The bean deployers */
+   private List<BeanDeployer> deployers;
+
+   /** The bean deployers which are scheduled by deploy */
+   private List<BeanDeployer> unscheduled;
+
+   /** Has a bean deployer been streamed into the batch */
+   private volatile boolean streamed;
+
+   /** The number of unfinished bean deployers, plus one while the batch is being deployed */
+   private AtomicInteger pending;
+
+   /** The names of the installed beans in install order */
+   private List<String> beans;
+
+   /** The latch */
+   private CountDownLatch latch;
+
+   /** The first error */
+   private AtomicReference<DeployException> deployException;
+
+   /**
+    * Constructor
+    * @param kernel The kernel
+    * @param size The number of beans
+    * @param log The logger
+    */
+   BeanBatch(KernelImpl kernel, int size, Logger log)
+   {
+      if (kernel == null)
+         throw new IllegalArgumentException("Kernel is null");
+
+      if (log == null)
+         throw new IllegalArgumentException("Log is null");
+
+      this.kernel = kernel;
+      this.log = log;
+      this.deployers = Collections.synchronizedList(new ArrayList<BeanDeployer>(size));
+      this.unscheduled = new ArrayList<BeanDeployer>(size);
+      this.streamed = false;
+      this.pending = new AtomicInteger(1);
+      this.beans = Collections.synchronizedList(new ArrayList<String>(size));
+      this.latch = new CountDownLatch(1);
+      this.deployException = new AtomicReference<DeployException>(null);
+   }
+
+   /**
+    * Add a bean deployer; all deployers must be added before any of them are scheduled
+    * @param deployer The bean deployer
+    */
+   void add(BeanDeployer deployer)
+   {
+      register(deployer);
+      unscheduled.add(deployer);
+   }
+
+   /**
+    * Stream a bean deployer into the batch, and schedule it right away; the bean
+    * deployers of the batch must either all be added or all be streamed
+    * @param deployer The bean deployer
+    */
+   void stream(BeanDeployer deployer)
+   {
+      streamed = true;
+      register(deployer);
+
+      // A failure before the bean deployer was registered didn't see it
+      if (deployException.get() != null)
+      {
+         if (deployer.claimCancel())
+            deployer.cancel();
+      }
+      else
+      {
+         kernel.getDependencyScheduler().schedule(deployer);
+      }
+   }
+
+   /**
+    * Schedule the bean deployers, and wait for them to finish
+    * @exception DeployException Thrown if a bean failed; the first error is reported
+    * @exception InterruptedException Thrown if the thread is interrupted
+    */
+   void deploy() throws DeployException, InterruptedException
+   {
+      if (streamed)
+         checkDependencies();
+
+      List<String> cycle = null;
+      Lock lock = kernel.getDependencyGraphLock();
+
+      lock.lock();
+      try
+      {
+         if (deployException.get() == null)
+            cycle = findCycle();
+
+         // The dependencies of streamed beans were registered when they were scheduled
+         if (cycle == null && !streamed)
+         {
+            for (BeanDeployer deployer : unscheduled)
+            {
+               kernel.addBeanDependencies(deployer.getName(), deployer.getDeclaredDependencies());
+            }
+         }
+      }
+      finally
+      {
+         lock.unlock();
+      }
+
+      if (cycle != null)
+      {
+         StringBuilder sb = new StringBuilder();
+
+         for (String name : cycle)
+         {
+            if (sb.length() > 0)
+               sb.append(" -> ");
+
+            sb.append(name);
+         }
+
+         DeployException de = new DeployException("Dependency cycle: " + sb.toString());
+         log.severe(de.getMessage());
+         failed(de);
+      }
+      else
+      {
+         for (BeanDeployer deployer : unscheduled)
+         {
+            kernel.getDependencyScheduler().schedule(deployer);
+         }
+      }
+
+      finished();
+
+      long timeout = kernel.getKernelConfiguration().getDependencyTimeout();
+      long changes = kernel.getBeanStatusChanges();
+
+      while (!kernel.getDependencyScheduler().await(latch, timeout))
+      {
+         // The beans are only blocked when no bean in the kernel has made progress
+         if (kernel.getBeanStatusChanges() != changes)
+         {
+            changes = kernel.getBeanStatusChanges();
+            continue;
+         }
+
+         String blocked = getBlocked();
+
+         if (blocked != null)
+         {
+            DeployException de =
+               new DeployException("Dependencies not resolved within " + timeout + " ms without progress: " + blocked);
+            log.severe(de.getMessage());
+            failed(de);
+         }
+      }
+
+      if (deployException.get() != null)
+      {
+         rollback();
+         throw deployException.get();
+      }
+   }
+
+   /**
+    * Are the bean deployers streamed into the batch
+    * @return True if streamed; otherwise false
+    */
+   boolean isStreamed()
+   {
+      return streamed;
+   }
+
+   /**
+    * Get the names of the installed beans
+    * @return The names in install order
+    */
+   List<String> getBeans()
+   {
+      return beans;
+   }
+
+   /**
+    * A bean has been installed
+    * @param name The name of the bean
+    */
+   void installed(String name)
+   {
+      beans.add(name);
+   }
+
+   /**
+    * A bean deployer has finished
+    */
+   void finished()
+   {
+      if (pending.decrementAndGet() == 0)
+         latch.countDown();
+   }
+
+   /**
+    * A bean has failed; the first failure cancels the bean deployers which haven't started
+    * @param de The error
+    */
+   void failed(DeployException de)
+   {
+      if (!deployException.compareAndSet(null, de))
+         return;
+
+      // All deployers are claimed before any status changes, since the error status
+      // releases the beans which depend on the cancelled beans
+      List<BeanDeployer> cancelled = new ArrayList<BeanDeployer>(deployers.size());
+
+      synchronized (deployers)
+      {
+         for (BeanDeployer deployer : deployers)
+         {
+            if (deployer.claimCancel())
+               cancelled.add(deployer);
+         }
+      }
+
+      for (BeanDeployer deployer : cancelled)
+      {
+         deployer.cancel();
+      }
+   }
+
+   /**
+    * Register a bean deployer
+    * @param deployer The bean deployer
+    */
+   private void register(BeanDeployer deployer)
+   {
+      pending.incrementAndGet();
+      deployers.add(deployer);
+   }
+
+   /**
+    * Fail the streamed bean deployers which haven't started, and depend on a bean
+    * that isn't known once all beans have been registered
+    */
+   private void checkDependencies()
+   {
+      if (!kernel.isAllBeansRegistered())
+         return;
+
+      List<BeanDeployer> waiting = null;
+
+      synchronized (deployers)
+      {
+         waiting = new ArrayList<BeanDeployer>(deployers);
+      }
+
+      for (BeanDeployer deployer : waiting)
+      {
+         if (deployer.isClaimed())
+            continue;
+
+         for (String dependency : deployer.getDeclaredDependencies())
+         {
+            if (kernel.getBeanStatus(dependency) == null)
+            {
+               deployer.abort(new DeployException("Unknown dependency: " + dependency));
+               break;
+            }
+         }
+      }
+   }
+
+   /**
+    * Find a dependency cycle which involves the beans of the batch; the dependencies
+    * of the beans outside the batch are the ones registered with the kernel
+    * @return The beans of the cycle where the first bean is repeated at the end;
+    *         <code>null</code> if there is no cycle
+    */
+   private List<String> findCycle()
+   {
+      Map<String, Set<String>> graph = new HashMap<String, Set<String>>(deployers.size());
+
+      for (BeanDeployer deployer : deployers)
+      {
+         graph.put(deployer.getName(), deployer.getDeclaredDependencies());
+      }
+
+      // True while the bean is on the path; false when all its dependencies are visited
+      Map<String, Boolean> visited = new HashMap<String, Boolean>(deployers.size());
+
+      for (BeanDeployer deployer : deployers)
+      {
+         if (visited.containsKey(deployer.getName()))
+            continue;
+
+         List<String> path = new ArrayList<String>();
+         List<Iterator<String>> iterators = new ArrayList<Iterator<String>>();
+
+         path.add(deployer.getName());
+         iterators.add(graph.get(deployer.getName()).iterator());
+         visited.put(deployer.getName(), Boolean.TRUE);
+
+         while (path.size() > 0)
+         {
+            Iterator<String> it = iterators.get(iterators.size() - 1);
+
+            if (it.hasNext())
+            {
+               String dependency = it.next();
+               Boolean state = visited.get(dependency);
+
+               if (state == null)
+               {
+                  Set<String> dependencies = graph.get(dependency);
+
+                  if (dependencies == null)
+                     dependencies = kernel.getPlannedDependencies(dependency);
+
+                  path.add(dependency);
+                  iterators.add(dependencies.iterator());
+                  visited.put(dependency, Boolean.TRUE);
+               }
+               else if (state.booleanValue())
+               {
+                  List<String> cycle = new ArrayList<String>(path.subList(path.indexOf(dependency), path.size()));
+                  cycle.add(dependency);
+                  return cycle;
+               }
+            }
+            else
+            {
+               visited.put(path.remove(path.size() - 1), Boolean.FALSE);
+               iterators.remove(iterators.size() - 1);
+            }
+         }
+      }
+
+      return null;
+   }
+
+   /**
+    * Get the beans which haven't started because of unresolved dependencies
+    * @return The beans and the dependencies they are waiting for; <code>null</code> if none
+    */
+   private String getBlocked()
+   {
+      StringBuilder sb = new StringBuilder();
+
+      for (BeanDeployer deployer : deployers)
+      {
+         if (deployer.isClaimed())
+            continue;
+
+         List<String> waiting = new ArrayList<String>(1);
+
+         for (String dependency : deployer.getDeclaredDependencies())
+         {
+            BeanEntry entry = kernel.findBeanEntry(dependency);
+
+            if (entry == null || !entry.isResolved())
+            {
+               ServiceLifecycle status = entry != null ? entry.getStatus() : null;
+               waiting.add(dependency + " (" + (status != null ? status : "unknown") + ")");
+            }
+         }
+
+         if (waiting.size() > 0)
+         {
+            if (sb.length() > 0)
+               sb.append(", ");
+
+            sb.append(deployer.getName()).append(" waiting for ").append(waiting);
+         }
+      }
+
+      return sb.length() > 0 ? sb.toString() : null;
+   }
+
+   /**
+    * Destroy the installed beans
+    */
+   private void rollback()
+   {
+      List<String> installed = new ArrayList<String>(beans);
+
+      if (installed.size() == 0)
+         return;
+
+      log.info("Rolling back: " + installed);
+
+      try
+      {
+         kernel.getShutdownScheduler().shutdown(installed);
+      }
+      catch (Throwable t)
+      {
+         log.log(Level.WARNING, "Rolling back: " + installed, t);
+      }
+   }
+}
@@ -23,29 +23,22 @@ package com.github.fungal.impl;
 import com.github.fungal.api.deployment.Bean;
 import com.github.fungal.api.deployment.Depends;
 import com.github.fungal.api.deployment.Entry;
-import com.github.fungal.api.deployment.Incallback;
 import com.github.fungal.api.deployment.Inject;
-import com.github.fungal.api.deployment.Install;
 import com.github.fungal.api.deployment.Null;
 import com.github.fungal.api.deployment.Parameter;
 import com.github.fungal.api.deployment.Property;
 import com.github.fungal.api.deployment.This;
-import com.github.fungal.api.deployment.Uncallback;
-import com.github.fungal.api.deployment.Uninstall;
 import com.github.fungal.api.deployment.Value;
 import com.github.fungal.spi.deployers.DeployException;
 import com.github.fungal.spi.deployers.Deployer;
 import com.github.fungal.spi.deployers.DeployerPhases;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
-import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Locale;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -55,36 +48,15 @@ import java.util.logging.Logger;
  */
 class BeanDeployer implements Runnable
 {
-   /** Supported types by parameters/properties */
-   private static final java.util.Set<Class<?>> SUPPORTED_TYPES = new HashSet<Class<?>>(19);
-   
    /** The bean */
    private Bean bt;
    
-   /** The bean names */
-   private java.util.List<String> beans;
-   
-   /** Uninstall methods */
-   private java.util.Map<String, java.util.List<Method>> uninstall;
-   
-   /** Stop */
-   private java.util.Map<String, String> stops;
-   
-   /** Destroy */
-   private java.util.Map<String, String> destroys;
-   
-   /** Ignore stop */
-   private java.util.Set<String> ignoreStops;
-   
-   /** Ignore destroy */
-   private java.util.Set<String> ignoreDestroys;
+   /** The batch */
+   private BeanBatch batch;
    
    /** The kernel */
    private KernelImpl kernel;
    
-   /** The bean latch */
-   private CountDownLatch beansLatch;
-   
    /** The classloader */
    private ClassLoader classLoader;
    
@@ -94,67 +66,53 @@ class BeanDeployer implements Runnable
    /** DeployException */
    private DeployException deployException;
 
-   static
-   {
-      SUPPORTED_TYPES.add(String.class);
-      SUPPORTED_TYPES.add(byte.class);
-      SUPPORTED_TYPES.add(Byte.class);
-      SUPPORTED_TYPES.add(short.class);
-      SUPPORTED_TYPES.add(Short.class);
-      SUPPORTED_TYPES.add(int.class);
-      SUPPORTED_TYPES.add(Integer.class);
-      SUPPORTED_TYPES.add(long.class);
-      SUPPORTED_TYPES.add(Long.class);
-      SUPPORTED_TYPES.add(float.class);
-      SUPPORTED_TYPES.add(Float.class);
-      SUPPORTED_TYPES.add(double.class);
-      SUPPORTED_TYPES.add(Double.class);
-      SUPPORTED_TYPES.add(boolean.class);
-      SUPPORTED_TYPES.add(Boolean.class);
-      SUPPORTED_TYPES.add(char.class);
-      SUPPORTED_TYPES.add(Character.class);
-      SUPPORTED_TYPES.add(InetAddress.class);
-      SUPPORTED_TYPES.add(Class.class);
-   }
+   /** The time the deployer was created */
+   private long created;
+
+   /** The timings of the install phases */
+   private long[] timings;
+
+   /** Has the deployer been started or cancelled */
+   private AtomicBoolean claimed;
+
+   /** The declared dependencies */
+   private volatile java.util.Set<String> dependencies;
+
+   /** Has the lazy bean been created, failed or been discarded */
+   private boolean lazyDone;
 
    /**
     * Constructor
     * @param bt The bean
-    * @param beans The list of bean names
-    * @param uninstall Uninstall methods for beans
-    * @param stops Stop methods for beans
-    * @param destroys Destroy methods for beans
-    * @param ignoreStops Ignore stop methods for beans
-    * @param ignoreDestroys Ignore destroy methods for beans
+    * @param batch The batch
     * @param kernel The kernel
-    * @param beansLatch The beans latch
     * @param classLoader The class loader
     * @param log The logger
     */
    public BeanDeployer(Bean bt, 
-                       java.util.List<String> beans,
-                       java.util.Map<String, java.util.List<Method>> uninstall,
-                       java.util.Map<String, String> stops,
-                       java.util.Map<String, String> destroys,
-                       java.util.Set<String> ignoreStops,
-                       java.util.Set<String> ignoreDestroys,
+                       BeanBatch batch,
                        KernelImpl kernel,
-                       CountDownLatch beansLatch,
                        ClassLoader classLoader,
                        Logger log)
    {
       this.bt = bt;
-      this.beans = beans;
-      this.uninstall = uninstall;
-      this.stops = stops;
-      this.destroys = destroys;
-      this.ignoreStops = ignoreStops;
-      this.ignoreDestroys = ignoreDestroys;
+      this.batch = batch;
       this.kernel = kernel;
-      this.beansLatch = beansLatch;
       this.classLoader = classLoader;
       this.log = log;
       this.deployException = null;
+      this.created = System.nanoTime();
+      this.timings = new long[Profiler.PHASES];
+      this.claimed = new AtomicBoolean(false);
+   }
+
+   /**
+    * Get the name of the bean
+    * @return The value
+    */
+   String getName()
+   {
+      return bt.getName();
    }
 
    /**
@@ -162,31 +120,43 @@ class BeanDeployer implements Runnable
     */
    public void run()
    {
+      if (!claimed.compareAndSet(false, true))
+         return;
+
+      timings[Profiler.WAIT] = System.nanoTime() - created;
+
       SecurityActions.setThreadContextClassLoader(classLoader);
       
       String beanName = bt.getName();
       try
       {
-         if (kernel.getBean(beanName) == null)
+         if (!kernel.isBeanInstalled(beanName) && bt.isLazy())
          {
-            CountDownLatch dependencies = getDependencies(bt);
+            // Created on first use
+            Class<?> clz = prepare(classLoader);
 
-            try
-            {
-               if (dependencies != null)
-                  dependencies.await();
-            }
-            catch (InterruptedException ie)
-            {
-               Thread.interrupted();
-            }
+            if (clz != null)
+               kernel.addBeanTypes(beanName, clz);
+
+            batch.installed(beanName);
+            kernel.findBeanEntry(beanName).setLazy(this);
+         }
+         else if (!kernel.isBeanInstalled(beanName))
+         {
+            initializeDependencies();
+            checkDependencies();
 
             kernel.setBeanStatus(beanName, ServiceLifecycle.STARTING);
+
+            long start = System.nanoTime();
             
             Object bean = createBean(bt, classLoader);
+
+            kernel.getInstallHistory().record(beanName, System.nanoTime() - start);
+            kernel.getProfiler().recordBean(beanName, timings);
             
             kernel.addBean(beanName, bean); 
-            beans.add(beanName);
+            batch.installed(beanName);
             
             kernel.setBeanStatus(beanName, ServiceLifecycle.STARTED);
          }
@@ -198,11 +168,171 @@ class BeanDeployer implements Runnable
       catch (Throwable t)
       {
          deployException = new DeployException("Installing bean " + beanName, t);
-         kernel.setBeanStatus(beanName, ServiceLifecycle.ERROR);
          log.log(Level.SEVERE, "Installing bean " + beanName, t);
+         batch.failed(deployException);
+         kernel.setBeanStatus(beanName, ServiceLifecycle.ERROR);
       }
       
-      beansLatch.countDown();
+      batch.finished();
+   }
+
+   /**
+    * Create a lazy bean on first use; the lazy beans it depends on are created first,
+    * and the incallbacks of its types are invoked once it has been created
+    * @return The bean; <code>null</code> if the bean couldn't be created, or has been destroyed
+    */
+   Object initialize()
+   {
+      DeployException de = null;
+      try
+      {
+         initializeDependencies();
+      }
+      catch (DeployException e)
+      {
+         de = e;
+      }
+
+      Object bean = create(de);
+
+      // Outside of the lock of the bean, since the incallbacks may use other lazy beans
+      kernel.incallback();
+
+      return bean;
+   }
+
+   /**
+    * Create a lazy bean, unless it has been created, has failed or has been discarded
+    * @param de The error of the lazy beans it depends on; <code>null</code> if none
+    * @return The bean; <code>null</code> if the bean couldn't be created, or has been destroyed
+    */
+   private synchronized Object create(DeployException de)
+   {
+      BeanEntry entry = kernel.findBeanEntry(bt.getName());
+
+      if (entry == null || lazyDone)
+         return entry != null ? entry.getBean() : null;
+
+      lazyDone = true;
+
+      String beanName = bt.getName();
+      ClassLoader cl = SecurityActions.getThreadContextClassLoader();
+      try
+      {
+         if (de != null)
+            throw de;
+
+         SecurityActions.setThreadContextClassLoader(classLoader);
+
+         kernel.setBeanStatus(beanName, ServiceLifecycle.STARTING);
+
+         long start = System.nanoTime();
+
+         Object bean = createBean(bt, classLoader);
+
+         kernel.getInstallHistory().record(beanName, System.nanoTime() - start);
+         kernel.getProfiler().recordBean(beanName, timings);
+
+         kernel.addBean(beanName, bean);
+         entry.setLazy(null);
+
+         kernel.setBeanStatus(beanName, ServiceLifecycle.STARTED);
+
+         return bean;
+      }
+      catch (Throwable t)
+      {
+         log.log(Level.SEVERE, "Installing bean " + beanName, t);
+         entry.setLazy(null);
+         kernel.setBeanStatus(beanName, ServiceLifecycle.ERROR);
+
+         return null;
+      }
+      finally
+      {
+         SecurityActions.setThreadContextClassLoader(cl);
+      }
+   }
+
+   /**
+    * Create the lazy beans which the bean depends on through its depends elements,
+    * since nothing else uses them before the bean is created; the lazy beans which
+    * are injected are created when they are injected
+    * @exception DeployException Thrown if a lazy bean couldn't be created
+    */
+   private void initializeDependencies() throws DeployException
+   {
+      for (Depends dt : bt.getDepends())
+      {
+         BeanEntry entry = kernel.findBeanEntry(dt.getValue());
+         BeanDeployer lazy = entry != null ? entry.getLazy() : null;
+
+         if (lazy != null && lazy.initialize() == null)
+            throw new DeployException("Unable to create lazy bean " + dt.getValue());
+      }
+   }
+
+   /**
+    * Check that the beans which the bean depends on have started; a dependency which
+    * failed resolves the bean too, e.g. a bean of another deployment rejected for
+    * a dependency cycle
+    * @exception DeployException Thrown if a dependency hasn't started
+    */
+   private void checkDependencies() throws DeployException
+   {
+      for (String dependency : getDeclaredDependencies())
+      {
+         BeanEntry entry = kernel.findBeanEntry(dependency);
+
+         if (entry == null || (entry.getStatus() != ServiceLifecycle.STARTED && entry.getLazy() == null))
+            throw new DeployException("Dependency " + dependency + " hasn't started");
+      }
+   }
+
+   /**
+    * Discard a lazy bean which is being destroyed, such that it isn't created
+    */
+   synchronized void discard()
+   {
+      lazyDone = true;
+   }
+
+   /**
+    * Abort the deployment of the bean before it has been run
+    * @param de The cause
+    */
+   void abort(DeployException de)
+   {
+      if (!claimed.compareAndSet(false, true))
+         return;
+
+      deployException = de;
+      log.log(Level.SEVERE, "Installing bean " + bt.getName(), de);
+      batch.failed(de);
+      kernel.setBeanStatus(bt.getName(), ServiceLifecycle.ERROR);
+
+      batch.finished();
+   }
+
+   /**
+    * Claim the bean for cancellation, if it hasn't been started
+    * @return True if the bean must be cancelled; otherwise false
+    */
+   boolean claimCancel()
+   {
+      return claimed.compareAndSet(false, true);
+   }
+
+   /**
+    * Cancel the deployment of the bean, which has been claimed for cancellation
+    */
+   void cancel()
+   {
+      deployException = new DeployException("Installing bean " + bt.getName() + " cancelled");
+      kernel.setBeanStatus(bt.getName(), ServiceLifecycle.ERROR);
+      log.fine("Installing bean " + bt.getName() + " cancelled");
+
+      batch.finished();
    }
 
    /**
@@ -215,19 +345,59 @@ class BeanDeployer implements Runnable
    }
    
    /**
-    * Get the dependencies for a bean
-    * @paran bt The bean type
-    * @return The count down latch for the dependencies; <code>null</code> if no dependencies
-    * @exception DeployException Thrown if an error occurs
+    * Has the deployer been started or cancelled
+    * @return True if claimed; otherwise false
     */
-   private CountDownLatch getDependencies(Bean bt) throws DeployException
+   boolean isClaimed()
    {
-      java.util.Set<String> deps = null;
+      return claimed.get();
+   }
+
+   /**
+    * Get the dependencies for the bean
+    * @return The names of the beans that the bean depends on
+    * @exception DeployException Thrown if an unknown dependency is found
+    */
+   java.util.Set<String> getDependencies() throws DeployException
+   {
+      java.util.Set<String> deps = getDeclaredDependencies();
+
+      for (String dependency : deps)
+      {
+         ServiceLifecycle dependencyStatus = kernel.getBeanStatus(dependency);
+            
+         // A streamed bean may depend on a bean which hasn't been read yet
+         if (dependencyStatus == null && kernel.isAllBeansRegistered() && !batch.isStreamed())
+            throw new DeployException("Unknown dependency: " + dependency);
+      }
+      
+      return deps;
+   }
+
+   /**
+    * Get the dependencies declared by the bean
+    * @return The names of the beans that the bean depends on
+    */
+   java.util.Set<String> getDeclaredDependencies()
+   {
+      if (dependencies == null)
+         dependencies = getDeclaredDependencies(bt);
+
+      return dependencies;
+   }
+
+   /**
+    * Get the dependencies declared by a bean definition
+    * @param bt The bean definition
+    * @return The names of the beans that the bean depends on
+    */
+   static java.util.Set<String> getDeclaredDependencies(Bean bt)
+   {
+      java.util.Set<String> deps = new HashSet<String>(1);
       
       java.util.List<Depends> dts = bt.getDepends();
       if (dts.size() > 0)
       {
-         deps = new HashSet<String>(dts.size());
          for (Depends dt : dts)
          {
             deps.add(dt.getValue());
@@ -243,9 +413,6 @@ class BeanDeployer implements Runnable
             
             if (element != null && element instanceof Inject)
             {
-               if (deps == null)
-                  deps = new HashSet<String>(1);
-
                Inject it = (Inject)element;
                deps.add(it.getBean());
             }
@@ -257,9 +424,6 @@ class BeanDeployer implements Runnable
       {
          if (ct.getFactory() != null)
          {
-            if (deps == null)
-               deps = new HashSet<String>(1);
-            
             deps.add(ct.getFactory().getBean());
          }
             
@@ -270,9 +434,6 @@ class BeanDeployer implements Runnable
                Object v = pt.getContent().get(0);
                if (v instanceof Inject)
                {
-                  if (deps == null)
-                     deps = new HashSet<String>(1);
-                  
                   Inject it = (Inject)v;
                   deps.add(it.getBean());
                }
@@ -280,23 +441,27 @@ class BeanDeployer implements Runnable
          }
       }
 
-      if (deps != null && deps.size() > 0)
+      return deps;
+   }
+
+   /**
+    * Resolve the class and the plan of a lazy bean, such that configuration errors are
+    * reported at deployment; beans created by a factory are resolved when created
+    * @param cl The classloader
+    * @return The class of the bean; <code>null</code> if it is known once created
+    * @exception Throwable Thrown if an error occurs
+    */
+   private Class<?> prepare(ClassLoader cl) throws Throwable
+   {
+      if (bt.getClazz() != null && bt.getConstructor() == null)
       {
-         CountDownLatch cdl = new CountDownLatch(deps.size());
-         
-         for (String dependency : deps)
-         {
-            ServiceLifecycle dependencyStatus = kernel.getBeanStatus(dependency);
-            
-            if (dependencyStatus == null && kernel.isAllBeansRegistered())
-               throw new DeployException("Unknown dependency: " + dependency);
+         Class<?> clz = Class.forName(bt.getClazz(), true, cl);
 
-            kernel.addBeanDependants(bt.getName(), dependency, cdl);
-         }
-         
-         return cdl;
+         BeanPlan.getPlan(clz, bt);
+
+         return clz;
       }
-      
+
       return null;
    }
 
@@ -312,15 +477,14 @@ class BeanDeployer implements Runnable
    {
       Class<?> clz = null;
       Object instance = null;
+      long mark = System.nanoTime();
       
       if (bt.getClazz() != null && bt.getConstructor() == null)
       {
          clz = Class.forName(bt.getClazz(), true, cl);
+         mark = lap(Profiler.CLASS_LOADING, mark);
          
-         java.lang.reflect.Constructor<?> con = findConstructor(clz, null, cl);
-         SecurityActions.setAccessible(con);
-         
-         instance = con.newInstance();
+         instance = BeanPlan.getConstructor(clz, null, cl).invoke(null, null);
       }
       else
       {
@@ -342,205 +506,81 @@ class BeanDeployer implements Runnable
                fcs = bt.getClazz();
 
             factoryClass = Class.forName(fcs, true, cl);
+            mark = lap(Profiler.CLASS_LOADING, mark);
          }
 
          if (ct.getFactoryMethod() == null)
          {
-            if (ct.getParameter() == null || ct.getParameter().size() == 0)
-            {
-               java.lang.reflect.Constructor<?> con = findConstructor(factoryClass, null, cl);
-               SecurityActions.setAccessible(con);
-
-               instance = con.newInstance();
-               clz = instance.getClass();
-            }
-            else
-            {
-               java.lang.reflect.Constructor<?> factoryConstructor =
-                  findConstructor(factoryClass, ct.getParameter(), cl);
-               Object[] args = getArguments(ct.getParameter(), factoryConstructor.getParameterTypes(), cl);
+            BeanPlan.Invoker factoryConstructor = BeanPlan.getConstructor(factoryClass, ct.getParameter(), cl);
+            Object[] args = getArguments(ct.getParameter(), factoryConstructor.getParameterTypes(), cl);
 
-               SecurityActions.setAccessible(factoryConstructor);
-               instance = factoryConstructor.newInstance(args);
-               clz = instance.getClass();
-            }
+            instance = factoryConstructor.invoke(null, args);
+            clz = instance.getClass();
          }
          else
          {
-            Method factoryMethod = findMethod(factoryClass, ct.getFactoryMethod(), ct.getParameter(), cl);
-            SecurityActions.setAccessible(factoryMethod);
+            BeanPlan.Invoker factoryMethod =
+               BeanPlan.getFactoryMethod(factoryClass, ct.getFactoryMethod(), ct.getParameter(), cl);
+            Object[] args = getArguments(ct.getParameter(), factoryMethod.getParameterTypes(), cl);
 
-            if (ct.getParameter() == null || ct.getParameter().size() == 0)
-            {
-               instance = factoryMethod.invoke(factoryObject);
-               clz = instance.getClass();
-            }
-            else
-            {
-               Object[] args = getArguments(ct.getParameter(), factoryMethod.getParameterTypes(), cl);
-               instance = factoryMethod.invoke(factoryObject, args);
-               clz = instance.getClass();
-            }
+            instance = factoryMethod.invoke(factoryObject, args);
+            clz = instance.getClass();
          }
       }
 
-      // Bean properties
-      if (bt.getProperty() != null)
-      {
-         for (Property pt : bt.getProperty())
-         {
-            setBeanProperty(instance, pt, cl);
-         }
-      }
+      mark = lap(Profiler.CONSTRUCTION, mark);
 
-      if (!bt.isIgnoreCreate())
+      // The bean is indexed by its types, so the declared interface must be one of them
+      if (bt.getInterface() != null)
       {
-         try
-         {
-            String methodName = "create";
-            if (bt.getCreate() != null && bt.getCreate().getMethod() != null)
-               methodName = bt.getCreate().getMethod();
+         Class<?> interfaceClass = Class.forName(bt.getInterface(), true, cl);
 
-            Method createMethod = SecurityActions.getMethod(clz, methodName, (Class[])null);
-            SecurityActions.setAccessible(createMethod);
-            createMethod.invoke(instance);
-         }
-         catch (NoSuchMethodException nsme)
-         {
-            // No create method
-         }
-         catch (InvocationTargetException ite)
-         {
-            throw ite.getTargetException();
-         }
+         if (!interfaceClass.isInstance(instance))
+            throw new DeployException(bt.getName() + " doesn't implement " + bt.getInterface());
       }
 
-      if (!bt.isIgnoreStart())
-      {
-         try
-         {
-            String methodName = "start";
-            if (bt.getStart() != null && bt.getStart().getMethod() != null)
-               methodName = bt.getStart().getMethod();
+      BeanPlan plan = BeanPlan.getPlan(clz, bt);
 
-            Method startMethod = SecurityActions.getMethod(clz, methodName, (Class[])null);
-            SecurityActions.setAccessible(startMethod);
-            startMethod.invoke(instance);
-         }
-         catch (NoSuchMethodException nsme)
-         {
-            // No start method
-         }
-         catch (InvocationTargetException ite)
-         {
-            throw ite.getTargetException();
-         }
+      // Bean properties
+      java.util.List<Property> properties = bt.getProperty();
+      for (int i = 0; i < properties.size(); i++)
+      {
+         setBeanProperty(instance, properties.get(i), plan, i, cl);
       }
 
-      if (bt.getStop() != null && bt.getStop().getMethod() != null)
-         stops.put(bt.getName(), bt.getStop().getMethod());
+      mark = lap(Profiler.INJECTION, mark);
 
-      if (bt.getDestroy() != null && bt.getDestroy().getMethod() != null)
-         destroys.put(bt.getName(), bt.getDestroy().getMethod());
+      plan.create(instance);
 
-      if (bt.isIgnoreStop())
-         ignoreStops.add(bt.getName());
+      mark = lap(Profiler.CREATE, mark);
 
-      if (bt.isIgnoreDestroy())
-         ignoreDestroys.add(bt.getName());
+      plan.start(instance);
+
+      mark = lap(Profiler.START, mark);
+
+      BeanEntry entry = kernel.findBeanEntry(bt.getName());
+
+      entry.setStop(bt.getStop() != null ? bt.getStop().getMethod() : null, bt.isIgnoreStop());
+      entry.setDestroy(bt.getDestroy() != null ? bt.getDestroy().getMethod() : null, bt.isIgnoreDestroy());
 
       // Invoke install methods
-      if (bt.getInstall() != null && bt.getInstall().size() > 0)
-      {
-         for (Install it : bt.getInstall())
-         {
-            try
-            {
-               Method method = SecurityActions.getMethod(clz, it.getMethod(), (Class[])null);
-               SecurityActions.setAccessible(method);
-               method.invoke(instance);
-            }
-            catch (InvocationTargetException ite)
-            {
-               throw ite.getTargetException();
-            }
-         }
-      }
+      plan.install(instance);
+
+      lap(Profiler.INSTALL, mark);
 
       // Register uninstall methods
-      if (bt.getUninstall() != null && bt.getUninstall().size() > 0)
-      {
-         java.util.List<Method> methods = new ArrayList<Method>(bt.getUninstall().size());
-         for (Uninstall ut : bt.getUninstall())
-         {
-            try
-            {
-               Method method = SecurityActions.getMethod(clz, ut.getMethod(), (Class[])null);
-               SecurityActions.setAccessible(method);
-               methods.add(method);
-            }
-            catch (NoSuchMethodException nsme)
-            {
-               throw new Exception("Unknown uninstall method:" + ut.getMethod());
-            }
-         }
-         uninstall.put(bt.getName(), methods);
-      }
+      entry.setUninstalls(plan.getUninstalls());
 
       // Register incallback methods
-      if (bt.getIncallback() != null && bt.getIncallback().size() > 0)
+      for (Method method : plan.getIncallbacks())
       {
-         for (Incallback it : bt.getIncallback())
-         {
-            java.util.List<Method> candidates = new ArrayList<Method>(1);
-            Method[] methods = SecurityActions.getMethods(clz);
-
-            for (Method m : methods)
-            {
-               if (m.getName().equals(it.getMethod()) && m.getParameterTypes().length == 1)
-                  candidates.add(m);
-            }
-
-            if (candidates.size() > 0)
-            {
-               Method method = candidates.get(0);
-               SecurityActions.setAccessible(method);
-
-               Class<?> parameter = method.getParameterTypes()[0];
-               
-               Callback cb = new Callback(parameter, method, instance);
-                  
-               kernel.registerIncallback(cb);
-            }
-         }
+         kernel.registerIncallback(new Callback(method.getParameterTypes()[0], method, instance));
       }
 
       // Register uncallback methods
-      if (bt.getUncallback() != null && bt.getUncallback().size() > 0)
+      for (Method method : plan.getUncallbacks())
       {
-         for (Uncallback ut : bt.getUncallback())
-         {
-            java.util.List<Method> candidates = new ArrayList<Method>(1);
-            Method[] methods = SecurityActions.getMethods(clz);
-
-            for (Method m : methods)
-            {
-               if (m.getName().equals(ut.getMethod()) && m.getParameterTypes().length == 1)
-                  candidates.add(m);
-            }
-
-            if (candidates.size() > 0)
-            {
-               Method method = candidates.get(0);
-               SecurityActions.setAccessible(method);
-
-               Class<?> parameter = method.getParameterTypes()[0];
-               
-               Callback cb = new Callback(parameter, method, instance);
-                  
-               kernel.registerUncallback(cb);
-            }
-         }
+         kernel.registerUncallback(new Callback(method.getParameterTypes()[0], method, instance));
       }
 
       // Register deployer
@@ -559,167 +599,16 @@ class BeanDeployer implements Runnable
    }
 
    /**
-    * Find constructor
-    * @param clz The class
-    * @param parameters The list of parameters
-    * @param cl The class loader
-    * @return The constructor
-    * @exception Throwable Thrown if a constructor cannot be found
+    * Add the time since the mark to the timing of a phase
+    * @param phase The phase
+    * @param mark The mark
+    * @return The new mark
     */
-   @SuppressWarnings("unchecked") 
-   private java.lang.reflect.Constructor<?> findConstructor(Class<?> clz, java.util.List<Parameter> parameters,
-                                                            ClassLoader cl) throws Throwable
+   private long lap(int phase, long mark)
    {
-      if (parameters == null || parameters.size() == 0)
-      {
-         Class<?> constructorClass = clz;
-         
-         while (constructorClass != null)
-         {
-            java.lang.reflect.Constructor[] constructors = SecurityActions.getDeclaredConstructors(constructorClass);
-
-            if (constructors != null)
-            {
-               for (int i = 0; i < constructors.length; i++)
-               {
-                  java.lang.reflect.Constructor<?> con = constructors[i];
-                  if (con.getParameterTypes().length == 0)
-                     return con;
-               }
-            }
-
-            constructorClass = constructorClass.getSuperclass();
-         }
-      }
-      else
-      {
-         Class<?> constructorClass = clz;
-
-         while (constructorClass != null)
-         {
-            java.lang.reflect.Constructor[] constructors = SecurityActions.getDeclaredConstructors(constructorClass);
-
-            for (java.lang.reflect.Constructor<?> c : constructors)
-            {
-               if (parameters.size() == c.getParameterTypes().length)
-               {
-                  boolean include = true;
-
-                  for (int i = 0; include && i < parameters.size(); i++)
-                  {
-                     Parameter pt = parameters.get(i);
-                     Class<?> parameterClass = c.getParameterTypes()[i];
-
-                     if (pt.getClazz() == null)
-                     {
-                        if ((!(pt.getContent().get(0) instanceof Inject)) &&
-                            (!(pt.getContent().get(0) instanceof Null)))
-                           if (!SUPPORTED_TYPES.contains(parameterClass))
-                              include = false;
-                     }
-                     else
-                     {
-                        Class<?> pClz = Class.forName(pt.getClazz(), true, cl);
-
-                        if (!parameterClass.equals(pClz))
-                           include = false;
-                     }
-                  }
-                  
-                  if (include)
-                     return c;
-               }
-            }
-
-            constructorClass = constructorClass.getSuperclass();
-         }
-      }
-
-      throw new Exception("Unable to find constructor for " + clz.getName());
-   }
-
-   /**
-    * Find method
-    * @param clz The class
-    * @param name The method name
-    * @param parameters The list of parameters
-    * @param cl The class loader
-    * @return The constructor
-    * @exception Throwable Thrown if a constructor cannot be found
-    */
-   @SuppressWarnings("unchecked") 
-   private Method findMethod(Class<?> clz, String name, java.util.List<Parameter> parameters, ClassLoader cl)
-      throws Throwable
-   {
-      if (parameters == null || parameters.size() == 0)
-      {
-         Class<?> methodClass = clz;
-
-         while (methodClass != null)
-         {
-            Method[] methods = SecurityActions.getDeclaredMethods(methodClass);
-
-            if (methods != null)
-            {
-               for (int i = 0; i < methods.length; i++)
-               {
-                  Method method = methods[i];
-                  if (name.equals(method.getName()) && method.getParameterTypes().length == 0)
-                     return method;
-               }
-            }
-
-            methodClass = methodClass.getSuperclass();
-         }
-      }
-      else
-      {
-         Class<?> methodClass = clz;
-
-         while (methodClass != null)
-         {
-            Method[] methods = SecurityActions.getDeclaredMethods(methodClass);
-
-            for (Method m : methods)
-            {
-               if (m.getName().equals(name))
-               {
-                  if (parameters.size() == m.getParameterTypes().length)
-                  {
-                     boolean include = true;
-
-                     for (int i = 0; include && i < parameters.size(); i++)
-                     {
-                        Parameter pt = parameters.get(i);
-                        Class<?> parameterClass = m.getParameterTypes()[i];
-
-                        if (pt.getClazz() == null)
-                        {
-                           if ((!(pt.getContent().get(0) instanceof Inject)) &&
-                               (!(pt.getContent().get(0) instanceof Null)))
-                              if (!SUPPORTED_TYPES.contains(parameterClass))
-                                 include = false;
-                        }
-                        else
-                        {
-                           Class<?> pClz = Class.forName(pt.getClazz(), true, cl);
-                           
-                           if (!parameterClass.equals(pClz))
-                              include = false;
-                        }
-                     }
-
-                     if (include)
-                        return m;
-                  }
-               }
-            }
-
-            methodClass = methodClass.getSuperclass();
-         }
-      }
-
-      throw new Exception("Unable to find method (" + name + "[" + parameters + "]) in " + clz.getName());
+      long now = System.nanoTime();
+      timings[phase] += now - mark;
+      return now;
    }
 
    /**
@@ -766,9 +655,9 @@ class BeanDeployer implements Runnable
     * Get inject value
     * @param it The inject type
     * @return The value
-    * @exception Exception If the injection bean cannot be resolved or if an error occurs
+    * @exception Throwable If the injection bean cannot be resolved or if an error occurs
     */
-   private Object getInjectValue(Inject it) throws Exception
+   private Object getInjectValue(Inject it) throws Throwable
    {
       Object injectionObject = kernel.getBean(it.getBean());
 
@@ -777,42 +666,8 @@ class BeanDeployer implements Runnable
 
       if (it.getProperty() != null)
       {
-         Method method = null;
-         Field field = null;
-
-         String baseName = it.getProperty().substring(0, 1).toUpperCase(Locale.US);
-
-         if (it.getProperty().length() > 1)
-            baseName += it.getProperty().substring(1);
-
-         try
-         {
-            String getMethodName = "get" + baseName;
-            method = SecurityActions.getMethod(injectionObject.getClass(), getMethodName, (Class[])null);
-         }
-         catch (NoSuchMethodException nsme)
-         {
-            try
-            {
-               String isMethodName = "is" + baseName;
-               method = SecurityActions.getMethod(injectionObject.getClass(), isMethodName, (Class[])null);
-            }
-            catch (NoSuchMethodException insme)
-            {
-               field = SecurityActions.getField(injectionObject.getClass(), it.getProperty());
-            }
-         }
-
-         if (method != null)
-         {
-            SecurityActions.setAccessible(method);
-            return method.invoke(injectionObject);
-         }
-         else
-         {
-            SecurityActions.setAccessible(field);
-            return field.get(injectionObject);
-         }
+         MethodHandle getter = BeanPlan.getGetter(injectionObject.getClass(), it.getProperty());
+         return (Object)getter.invokeExact(injectionObject);
       }
       else
       {
@@ -824,26 +679,18 @@ class BeanDeployer implements Runnable
     * Set a property on an object instance
     * @param instance The object instance
     * @param pt The property type definition
+    * @param plan The plan of the bean
+    * @param index The index of the property
     * @param cl The classloader
-    * @exception Exception Thrown if an error occurs
+    * @exception Throwable Thrown if an error occurs
     */
    @SuppressWarnings("unchecked") 
-   private void setBeanProperty(Object instance, Property pt, ClassLoader cl) throws Exception
+   private void setBeanProperty(Object instance, Property pt, BeanPlan plan, int index, ClassLoader cl)
+      throws Throwable
    {
       Injection injection = new Injection();
 
-      String name = "set" + pt.getName().substring(0, 1).toUpperCase(Locale.US);
-      if (pt.getName().length() > 1)
-         name += pt.getName().substring(1);
-
-      Method m = injection.findMethod(instance.getClass(), name, pt.getClazz());
-      
-      if (m == null)
-         throw new Exception("Property " + pt.getName() + " not found on " + instance.getClass().getName());
-
-      SecurityActions.setAccessible(m);
-
-      Class<?> parameterClass = m.getParameterTypes()[0];
+      Class<?> parameterClass = plan.getPropertyType(index);
       
       Object parameterValue = null;
       Object element = pt.getContent().get(0);
@@ -987,6 +834,6 @@ class BeanDeployer implements Runnable
          parameterValue = injection.getValue(pt.getName(), parameterClass, (String)element, cl);
       }
 
-      m.invoke(instance, parameterValue);
+      plan.setProperty(index, instance, parameterValue);
    }
 }
@@ -20,17 +20,21 @@
 
 package com.github.fungal.impl;
 
+import com.github.fungal.api.deployment.Bean;
 import com.github.fungal.api.deployment.BeanDeployment;
+import com.github.fungal.api.deployment.Entry;
+import com.github.fungal.api.deployment.Parameter;
+import com.github.fungal.api.deployment.Property;
+import com.github.fungal.api.deployment.Value;
+import com.github.fungal.api.util.PlaceholderTemplate;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.net.URL;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * A bean deployment for Fungal
@@ -44,20 +48,8 @@ public class BeanDeploymentImpl implements BeanDeployment
    /** The bean names */
    private List<String> beans;
 
-   /** Uninstall methods */
-   private Map<String, List<Method>> uninstall;
-
-   /** Stop */
-   private Map<String, String> stops;
-
-   /** Destroy */
-   private Map<String, String> destroys;
-
-   /** Ignore stop */
-   private Set<String> ignoreStops;
-
-   /** Ignore destroy */
-   private Set<String> ignoreDestroys;
+   /** The system properties */
+   private Map<String, String> systemProperties;
 
    /** The kernel */
    private KernelImpl kernel;
@@ -66,38 +58,24 @@ public class BeanDeploymentImpl implements BeanDeployment
     * Constructor
     * @param deployment The deployment
     * @param beans The list of bean names for the deployment
-    * @param uninstall Uninstall methods for beans
-    * @param stops Stop methods for beans
-    * @param destroys Destroy methods for beans
-    * @param ignoreStops Ignore stop methods for beans
-    * @param ignoreDestroys Ignore destroy methods for beans
+    * @param systemProperties The system properties that the deployment depends on
     * @param kernel The kernel
     */
    public BeanDeploymentImpl(URL deployment, 
                              List<String> beans, 
-                             Map<String, List<Method>> uninstall,
-                             Map<String, String> stops,
-                             Map<String, String> destroys,
-                             Set<String> ignoreStops,
-                             Set<String> ignoreDestroys,
+                             Map<String, String> systemProperties,
                              KernelImpl kernel)
    {
       if (beans == null)
          throw new IllegalArgumentException("Beans is null");
 
-      if (uninstall == null)
-         throw new IllegalArgumentException("Uninstall is null");
-
       if (kernel == null)
          throw new IllegalArgumentException("Kernel is null");
 
       this.deployment = deployment;
       this.beans = beans;
-      this.uninstall = uninstall;
-      this.stops = stops;
-      this.destroys = destroys;
-      this.ignoreStops = ignoreStops;
-      this.ignoreDestroys = ignoreDestroys;
+      this.systemProperties = systemProperties != null ?
+         Collections.unmodifiableMap(systemProperties) : Collections.<String, String>emptyMap();
       this.kernel = kernel;
    }
 
@@ -110,6 +88,17 @@ public class BeanDeploymentImpl implements BeanDeployment
       return beans;
    }
 
+   /**
+    * Get the system properties and environment variables that the deployment
+    * depends on through <code>${...}</code> values, with their values at the time
+    * of the deployment. Environment variables are prefixed with <code>env.</code>
+    * @return The values; a value is <code>null</code> if it was undefined
+    */
+   public Map<String, String> getSystemProperties()
+   {
+      return systemProperties;
+   }
+
    /**
     * Get the unique URL for the deployment
     * @return The URL
@@ -129,7 +118,7 @@ public class BeanDeploymentImpl implements BeanDeployment
 
       if (beans != null && beans.size() > 0)
       {
-         Object bean = kernel.getBean(beans.get(0));
+         Object bean = kernel.findBean(beans.get(0));
 
          if (bean != null)
             cl = SecurityActions.getClassLoader(bean.getClass());
@@ -147,25 +136,25 @@ public class BeanDeploymentImpl implements BeanDeployment
     */
    public void stop() throws Throwable
    {
-      Set<String> remaining = new HashSet<String>();
-      remaining.addAll(beans);
+      Set<String> names = new HashSet<String>(beans);
+      Set<String> remaining = null;
 
+      // Only the beans outside of the deployment which depend on its beans are checked
       for (String bean : beans)
       {
-         Set<String> dependants = kernel.getBeanDependants(bean);
-
-         if (dependants != null)
+         for (String dependant : kernel.getBeanDependants(bean))
          {
-            for (String dependant : dependants)
+            if (!names.contains(dependant) && kernel.isBeanInstalled(dependant))
             {
-               remaining.remove(dependant);
+               if (remaining == null)
+                  remaining = new TreeSet<String>();
+
+               remaining.add(dependant);
             }
          }
-
-         remaining.remove(bean);
       }
 
-      if (remaining.size() > 0)
+      if (remaining != null)
          throw new Exception("Cannot stop deployment " + deployment + " due to remaining dependants " + remaining);
    }
 
@@ -175,98 +164,81 @@ public class BeanDeploymentImpl implements BeanDeployment
     */
    public void destroy() throws Throwable
    {
-      Throwable throwable = null;
+      kernel.getShutdownScheduler().shutdown(beans);
+   }
 
-      List<String> shutdownBeans = new LinkedList<String>(beans);
-      Collections.reverse(shutdownBeans);
+   /**
+    * Get the system properties that a list of beans depends on
+    * @param beans The beans
+    * @return The system properties with their current values
+    */
+   static Map<String, String> getSystemProperties(List<Bean> beans)
+   {
+      Set<String> names = new TreeSet<String>();
 
-      for (String name : shutdownBeans)
+      for (Bean bt : beans)
       {
-         try
+         for (Property pt : bt.getProperty())
          {
-            kernel.setBeanStatus(name, ServiceLifecycle.STOPPING);
-
-            Object bean = kernel.getBean(name);
-
-            if (bean != null)
+            for (Object element : pt.getContent())
             {
-               List<Method> l = uninstall.get(name);
-               if (l != null)
+               if (element instanceof String)
                {
-                  for (Method m : l)
-                  {
-                     try
-                     {
-                        SecurityActions.setAccessible(m);
-                        m.invoke(bean, (Object[])null);
-                     }
-                     catch (InvocationTargetException ite)
-                     {
-                        if (throwable == null)
-                           throwable = ite.getTargetException();
-                     }
-                  }
+                  addSystemProperties((String)element, names);
                }
-
-               if (ignoreStops == null || !ignoreStops.contains(name))
+               else if (element instanceof Value)
                {
-                  try
-                  {
-                     String methodName = "stop";
-                     if (stops != null && stops.containsKey(name))
-                        methodName = stops.get(name);
-
-                     Method stopMethod = SecurityActions.getMethod(bean.getClass(), methodName, (Class[])null);
-                     SecurityActions.setAccessible(stopMethod);
-                     stopMethod.invoke(bean, (Object[])null);
-                  }
-                  catch (NoSuchMethodException nsme)
-                  {
-                     // No stop method
-                  }
-                  catch (InvocationTargetException ite)
-                  {
-                     if (throwable == null)
-                        throwable = ite.getTargetException();
-                  }
+                  addSystemProperties(((Value)element).getValue(), names);
                }
-
-               if (ignoreDestroys == null || !ignoreDestroys.contains(name))
+               else if (element instanceof com.github.fungal.api.deployment.List)
                {
-                  try
+                  for (Value vt : ((com.github.fungal.api.deployment.List)element).getValue())
                   {
-                     String methodName = "destroy";
-                     if (destroys != null && destroys.containsKey(name))
-                        methodName = destroys.get(name);
-
-                     Method destroyMethod = SecurityActions.getMethod(bean.getClass(), methodName, (Class[])null);
-                     SecurityActions.setAccessible(destroyMethod);
-                     destroyMethod.invoke(bean, (Object[])null);
+                     addSystemProperties(vt.getValue(), names);
                   }
-                  catch (NoSuchMethodException nsme)
+               }
+               else if (element instanceof com.github.fungal.api.deployment.Set)
+               {
+                  for (Value vt : ((com.github.fungal.api.deployment.Set)element).getValue())
                   {
-                     // No destroy method
+                     addSystemProperties(vt.getValue(), names);
                   }
-                  catch (InvocationTargetException ite)
+               }
+               else if (element instanceof com.github.fungal.api.deployment.Map)
+               {
+                  for (Entry et : ((com.github.fungal.api.deployment.Map)element).getEntry())
                   {
-                     if (throwable == null)
-                        throwable = ite.getTargetException();
+                     addSystemProperties(et.getKey().getValue(), names);
+                     addSystemProperties(et.getValue().getValue(), names);
                   }
                }
             }
          }
-         catch (Throwable t)
-         {
-            if (throwable == null)
-               throwable = t;
-         }
-         finally
+
+         if (bt.getConstructor() != null && bt.getConstructor().getParameter() != null)
          {
-            kernel.removeBean(name);
+            for (Parameter pt : bt.getConstructor().getParameter())
+            {
+               for (Object element : pt.getContent())
+               {
+                  if (element instanceof String)
+                     addSystemProperties((String)element, names);
+               }
+            }
          }
       }
 
-      if (throwable != null)
-         throw throwable;
+      return PlaceholderTemplate.getValues(names);
+   }
+
+   /**
+    * Add the system properties that a value depends on
+    * @param value The value
+    * @param names The names of the system properties
+    */
+   private static void addSystemProperties(String value, Set<String> names)
+   {
+      if (value != null && value.indexOf("${") != -1)
+         PlaceholderTemplate.compile(value).addNames(names);
    }
 }
@@ -0,0 +1,484 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.spi.deployers.Deployment;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The kernel record of a bean.
+ *
+ * The record holds the lifecycle status of the bean together with the
+ * listeners that are waiting for the bean to be resolved, e.g. to reach
+ * the STARTED or ERROR status. Status changes are lock-free, and a
+ * listener added while the bean is resolved is notified right away. A bean
+ * which leaves the resolved status, e.g. when it is being stopped, is no
+ * longer resolved.
+ *
+ * The record also holds the instance, the dependencies, the lifecycle methods
+ * and the incallbacks that have been invoked with the bean, such that the
+ * kernel keeps a single entry per bean.
+ *
+ * A lazy bean is resolved without being started; the record holds the deployer
+ * which creates the bean on first use
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+final class BeanEntry
+{
+   /** Marker for a resolved bean */
+   private static final Node RESOLVED = new Node(null, null);
+
+   /** The status */
+   private volatile ServiceLifecycle status;
+
+   /** The listeners waiting for the bean to be resolved */
+   private AtomicReference<Node> listeners;
+
+   /** The instance */
+   private volatile Object bean;
+
+   /** The deployer of a lazy bean which hasn't been created */
+   private volatile BeanDeployer lazy;
+
+   /** The deployment of the bean */
+   private volatile Deployment deployment;
+
+   /** The names of the beans that the bean depends on */
+   private volatile Set<String> dependencies;
+
+   /** The names of the beans that depend on the bean */
+   private volatile Set<String> dependants;
+
+   /** The uninstall methods */
+   private volatile List<Method> uninstalls;
+
+   /** The stop method; <code>null</code> for the default */
+   private volatile String stop;
+
+   /** The destroy method; <code>null</code> for the default */
+   private volatile String destroy;
+
+   /** Ignore the stop method */
+   private volatile boolean ignoreStop;
+
+   /** Ignore the destroy method */
+   private volatile boolean ignoreDestroy;
+
+   /** The incallbacks that have been invoked with the bean */
+   private volatile List<Callback> callbacks;
+
+   /**
+    * Constructor
+    * @param status The initial status; <code>null</code> if the bean isn't registered yet
+    */
+   BeanEntry(ServiceLifecycle status)
+   {
+      this.status = status;
+      this.listeners = new AtomicReference<Node>(null);
+
+      if (isResolved(status))
+         listeners.set(RESOLVED);
+   }
+
+   /**
+    * Get the status
+    * @return The value
+    */
+   ServiceLifecycle getStatus()
+   {
+      return status;
+   }
+
+   /**
+    * Set the status
+    * @param value The value
+    */
+   void setStatus(ServiceLifecycle value)
+   {
+      status = value;
+
+      if (isResolved(value))
+      {
+         resolve();
+      }
+      else if (lazy == null)
+      {
+         // The bean is no longer resolved, e.g. being stopped, so new listeners wait again
+         listeners.compareAndSet(RESOLVED, null);
+      }
+   }
+
+   /**
+    * Get the deployer of a lazy bean
+    * @return The value; <code>null</code> if the bean isn't lazy, or has been created
+    */
+   BeanDeployer getLazy()
+   {
+      return lazy;
+   }
+
+   /**
+    * Set the deployer of a lazy bean; the bean is resolved without being started
+    * @param value The value; <code>null</code> once the bean has been created
+    */
+   void setLazy(BeanDeployer value)
+   {
+      lazy = value;
+
+      if (value != null)
+         resolve();
+   }
+
+   /**
+    * Notify the listeners that the bean is resolved
+    */
+   private void resolve()
+   {
+      Node node = listeners.getAndSet(RESOLVED);
+
+      while (node != null && node != RESOLVED)
+      {
+         node.listener.resolved();
+         node = node.next;
+      }
+   }
+
+   /**
+    * Get the instance
+    * @return The value; <code>null</code> if the bean hasn't been added
+    */
+   Object getBean()
+   {
+      return bean;
+   }
+
+   /**
+    * Set the instance, unless it has been set already
+    * @param value The value
+    * @return True if the instance was set; otherwise false
+    */
+   synchronized boolean setBean(Object value)
+   {
+      if (bean != null)
+         return false;
+
+      bean = value;
+      return true;
+   }
+
+   /**
+    * Get the deployment of the bean
+    * @return The value; <code>null</code> if the bean isn't part of a registered deployment
+    */
+   Deployment getDeployment()
+   {
+      return deployment;
+   }
+
+   /**
+    * Set the deployment of the bean
+    * @param value The value
+    */
+   void setDeployment(Deployment value)
+   {
+      deployment = value;
+   }
+
+   /**
+    * Get the names of the beans that the bean depends on
+    * @return The values; <code>null</code> if there are no dependencies
+    */
+   Set<String> getDependencies()
+   {
+      return dependencies;
+   }
+
+   /**
+    * Add the name of a bean that the bean depends on
+    * @param name The name
+    */
+   void addDependency(String name)
+   {
+      Set<String> s = dependencies;
+
+      if (s == null)
+      {
+         synchronized (this)
+         {
+            s = dependencies;
+            if (s == null)
+            {
+               s = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(1));
+               dependencies = s;
+            }
+         }
+      }
+
+      s.add(name);
+   }
+
+   /**
+    * Get the names of the beans that depend on the bean
+    * @return The values; <code>null</code> if there are no dependants
+    */
+   Set<String> getDependants()
+   {
+      return dependants;
+   }
+
+   /**
+    * Add the name of a bean that depends on the bean
+    * @param name The name
+    */
+   void addDependant(String name)
+   {
+      Set<String> s = dependants;
+
+      if (s == null)
+      {
+         synchronized (this)
+         {
+            s = dependants;
+            if (s == null)
+            {
+               s = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(1));
+               dependants = s;
+            }
+         }
+      }
+
+      s.add(name);
+   }
+
+   /**
+    * Remove the name of a bean that depends on the bean
+    * @param name The name
+    */
+   void removeDependant(String name)
+   {
+      Set<String> s = dependants;
+
+      if (s != null)
+         s.remove(name);
+   }
+
+   /**
+    * Has the bean any dependants
+    * @return True if other beans depend on the bean; otherwise false
+    */
+   boolean hasDependants()
+   {
+      Set<String> s = dependants;
+
+      return s != null && s.size() > 0;
+   }
+
+   /**
+    * Get the uninstall methods
+    * @return The values; <code>null</code> if there are no uninstall methods
+    */
+   List<Method> getUninstalls()
+   {
+      return uninstalls;
+   }
+
+   /**
+    * Set the uninstall methods
+    * @param values The values
+    */
+   void setUninstalls(List<Method> values)
+   {
+      uninstalls = values;
+   }
+
+   /**
+    * Get the name of the stop method
+    * @return The value; <code>null</code> if the stop method is ignored
+    */
+   String getStop()
+   {
+      if (ignoreStop)
+         return null;
+
+      return stop != null ? stop : "stop";
+   }
+
+   /**
+    * Set the name of the stop method
+    * @param value The value; <code>null</code> for the default
+    * @param ignore Ignore the stop method
+    */
+   void setStop(String value, boolean ignore)
+   {
+      stop = value;
+      ignoreStop = ignore;
+   }
+
+   /**
+    * Get the name of the destroy method
+    * @return The value; <code>null</code> if the destroy method is ignored
+    */
+   String getDestroy()
+   {
+      if (ignoreDestroy)
+         return null;
+
+      return destroy != null ? destroy : "destroy";
+   }
+
+   /**
+    * Set the name of the destroy method
+    * @param value The value; <code>null</code> for the default
+    * @param ignore Ignore the destroy method
+    */
+   void setDestroy(String value, boolean ignore)
+   {
+      destroy = value;
+      ignoreDestroy = ignore;
+   }
+
+   /**
+    * Has the bean been passed to an incallback
+    * @return True if an incallback has been invoked with the bean; otherwise false
+    */
+   boolean hasCallbacks()
+   {
+      return callbacks != null;
+   }
+
+   /**
+    * Has an incallback been invoked with the bean
+    * @param cb The callback
+    * @return True if the callback has been invoked; otherwise false
+    */
+   boolean hasCallback(Callback cb)
+   {
+      List<Callback> l = callbacks;
+
+      return l != null && l.contains(cb);
+   }
+
+   /**
+    * Register an incallback that has been invoked with the bean
+    * @param cb The callback
+    */
+   synchronized void addCallback(Callback cb)
+   {
+      List<Callback> l = callbacks;
+      List<Callback> newCallbacks = new ArrayList<Callback>(l != null ? l.size() + 1 : 1);
+      if (l != null)
+         newCallbacks.addAll(l);
+      newCallbacks.add(cb);
+
+      callbacks = newCallbacks;
+   }
+
+   /**
+    * Is the bean resolved
+    * @return True if the bean has been started, has failed, or is lazy; otherwise false
+    */
+   boolean isResolved()
+   {
+      return listeners.get() == RESOLVED;
+   }
+
+   /**
+    * Add a listener which is notified once the bean is resolved
+    * @param listener The listener
+    */
+   void addListener(Listener listener)
+   {
+      while (true)
+      {
+         Node head = listeners.get();
+
+         if (head == RESOLVED)
+         {
+            listener.resolved();
+            return;
+         }
+
+         if (listeners.compareAndSet(head, new Node(listener, head)))
+            return;
+      }
+   }
+
+   /**
+    * Does a status resolve the bean
+    * @param value The status
+    * @return True if resolved; otherwise false
+    */
+   private static boolean isResolved(ServiceLifecycle value)
+   {
+      return value == ServiceLifecycle.STARTED || value == ServiceLifecycle.ERROR;
+   }
+
+   /**
+    * String representation
+    * @return The value
+    */
+   public String toString()
+   {
+      return "BeanEntry[Status=" + status + ",Resolved=" + isResolved() + ",Lazy=" + (lazy != null) + ",Bean=" + bean +
+         ",Dependencies=" + dependencies + ",Dependants=" + dependants + "]";
+   }
+
+   /**
+    * A listener for the resolution of a bean
+    */
+   interface Listener
+   {
+      /**
+       * The bean has been resolved
+       */
+      public void resolved();
+   }
+
+   /**
+    * A node in the listener stack
+    */
+   private static class Node
+   {
+      /** The listener */
+      private Listener listener;
+
+      /** The next node */
+      private Node next;
+
+      /**
+       * Constructor
+       * @param listener The listener
+       * @param next The next node
+       */
+      Node(Listener listener, Node next)
+      {
+         this.listener = listener;
+         this.next = next;
+      }
+   }
+}
@@ -0,0 +1,795 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.deployment.Bean;
+import com.github.fungal.api.deployment.Incallback;
+import com.github.fungal.api.deployment.Inject;
+import com.github.fungal.api.deployment.Install;
+import com.github.fungal.api.deployment.Null;
+import com.github.fungal.api.deployment.Parameter;
+import com.github.fungal.api.deployment.Property;
+import com.github.fungal.api.deployment.Uncallback;
+import com.github.fungal.api.deployment.Uninstall;
+import com.github.fungal.api.util.ReflectionCache;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The instantiation plan of a bean.
+ *
+ * A plan holds the resolved method handles for the properties, the lifecycle
+ * methods and the install methods of a bean definition for a class, so beans of
+ * the same class and definition are installed without any further reflective
+ * lookups. The constructors, factory methods and inject getters are resolved
+ * in the same way.
+ *
+ * The plans are kept in the reflection cache, so they go away with the class loader of the class
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+final class BeanPlan
+{
+   /** Supported types by parameters/properties */
+   private static final Set<Class<?>> SUPPORTED_TYPES = new HashSet<Class<?>>(19);
+
+   /** The lookup */
+   private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+   /** The type of a lifecycle method handle */
+   private static final MethodType LIFECYCLE = MethodType.methodType(void.class, Object.class);
+
+   /** The type of a setter method handle */
+   private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+   /** The type of a getter method handle */
+   private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+   /** No arguments */
+   private static final Object[] NO_ARGUMENTS = new Object[0];
+
+   /** The setters */
+   private MethodHandle[] setters;
+
+   /** The parameter types of the setters */
+   private Class<?>[] setterTypes;
+
+   /** The create method */
+   private MethodHandle create;
+
+   /** The start method */
+   private MethodHandle start;
+
+   /** The install methods */
+   private MethodHandle[] installs;
+
+   /** The uninstall methods */
+   private List<Method> uninstalls;
+
+   /** The incallback methods */
+   private List<Method> incallbacks;
+
+   /** The uncallback methods */
+   private List<Method> uncallbacks;
+
+   static
+   {
+      SUPPORTED_TYPES.add(String.class);
+      SUPPORTED_TYPES.add(byte.class);
+      SUPPORTED_TYPES.add(Byte.class);
+      SUPPORTED_TYPES.add(short.class);
+      SUPPORTED_TYPES.add(Short.class);
+      SUPPORTED_TYPES.add(int.class);
+      SUPPORTED_TYPES.add(Integer.class);
+      SUPPORTED_TYPES.add(long.class);
+      SUPPORTED_TYPES.add(Long.class);
+      SUPPORTED_TYPES.add(float.class);
+      SUPPORTED_TYPES.add(Float.class);
+      SUPPORTED_TYPES.add(double.class);
+      SUPPORTED_TYPES.add(Double.class);
+      SUPPORTED_TYPES.add(boolean.class);
+      SUPPORTED_TYPES.add(Boolean.class);
+      SUPPORTED_TYPES.add(char.class);
+      SUPPORTED_TYPES.add(Character.class);
+      SUPPORTED_TYPES.add(InetAddress.class);
+      SUPPORTED_TYPES.add(Class.class);
+   }
+
+   /**
+    * Constructor
+    */
+   private BeanPlan()
+   {
+   }
+
+   /**
+    * Get the plan of a bean definition
+    * @param clz The class of the bean instance
+    * @param bt The bean definition
+    * @return The plan
+    * @exception Exception Thrown if the plan can't be compiled
+    */
+   static BeanPlan getPlan(Class<?> clz, final Bean bt) throws Exception
+   {
+      return ReflectionCache.get(clz, getKey(bt), new ReflectionCache.Resolver<BeanPlan>()
+      {
+         public BeanPlan resolve(Class<?> c) throws Exception
+         {
+            return compile(c, bt);
+         }
+      });
+   }
+
+   /**
+    * Get a constructor
+    * @param clz The class
+    * @param parameters The list of parameters
+    * @param cl The class loader
+    * @return The constructor
+    * @exception Exception Thrown if a constructor cannot be found
+    */
+   static Invoker getConstructor(Class<?> clz, final List<Parameter> parameters, final ClassLoader cl)
+      throws Exception
+   {
+      return ReflectionCache.get(clz, getKey("<init>", parameters), new ReflectionCache.Resolver<Invoker>()
+      {
+         public Invoker resolve(Class<?> c) throws Exception
+         {
+            java.lang.reflect.Constructor<?> con = findConstructor(c, parameters, cl);
+            SecurityActions.setAccessible(con);
+
+            int count = con.getParameterTypes().length;
+            MethodHandle mh = LOOKUP.unreflectConstructor(con);
+            mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            mh = mh.asType(MethodType.genericMethodType(count + 1)).asSpreader(Object[].class, count);
+
+            return new Invoker(mh, con.getParameterTypes());
+         }
+      });
+   }
+
+   /**
+    * Get a factory method
+    * @param clz The class
+    * @param name The method name
+    * @param parameters The list of parameters
+    * @param cl The class loader
+    * @return The factory method
+    * @exception Exception Thrown if a method cannot be found
+    */
+   static Invoker getFactoryMethod(Class<?> clz, final String name, final List<Parameter> parameters,
+                                   final ClassLoader cl)
+      throws Exception
+   {
+      return ReflectionCache.get(clz, getKey(name, parameters), new ReflectionCache.Resolver<Invoker>()
+      {
+         public Invoker resolve(Class<?> c) throws Exception
+         {
+            Method method = findMethod(c, name, parameters, cl);
+
+            int count = method.getParameterTypes().length;
+            MethodHandle mh = unreflect(method, MethodType.genericMethodType(count + 1));
+            mh = mh.asSpreader(Object[].class, count);
+
+            return new Invoker(mh, method.getParameterTypes());
+         }
+      });
+   }
+
+   /**
+    * Get the getter of a property; either a get/is method or a public field
+    * @param clz The class
+    * @param property The name of the property
+    * @return The getter
+    * @exception Exception Thrown if the property cannot be found
+    */
+   static MethodHandle getGetter(Class<?> clz, final String property) throws Exception
+   {
+      return ReflectionCache.get(clz, "getter:" + property, new ReflectionCache.Resolver<MethodHandle>()
+      {
+         public MethodHandle resolve(Class<?> c) throws Exception
+         {
+            String baseName = property.substring(0, 1).toUpperCase(Locale.US);
+
+            if (property.length() > 1)
+               baseName += property.substring(1);
+
+            Method method = ReflectionCache.getMethod(c, "get" + baseName);
+
+            if (method == null)
+               method = ReflectionCache.getMethod(c, "is" + baseName);
+
+            if (method != null)
+               return unreflect(method, GETTER);
+
+            Field field = SecurityActions.getField(c, property);
+            SecurityActions.setAccessible(field);
+
+            MethodHandle getter = LOOKUP.unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers()))
+               getter = MethodHandles.dropArguments(getter, 0, Object.class);
+
+            return getter.asType(GETTER);
+         }
+      });
+   }
+
+   /**
+    * Get the parameter type of a property
+    * @param index The index of the property
+    * @return The type
+    */
+   Class<?> getPropertyType(int index)
+   {
+      return setterTypes[index];
+   }
+
+   /**
+    * Set a property
+    * @param index The index of the property
+    * @param instance The instance
+    * @param value The value
+    * @exception Throwable Thrown if an error occurs
+    */
+   void setProperty(int index, Object instance, Object value) throws Throwable
+   {
+      setters[index].invokeExact(instance, value);
+   }
+
+   /**
+    * Invoke the create method
+    * @param instance The instance
+    * @exception Throwable Thrown if an error occurs
+    */
+   void create(Object instance) throws Throwable
+   {
+      if (create != null)
+         create.invokeExact(instance);
+   }
+
+   /**
+    * Invoke the start method
+    * @param instance The instance
+    * @exception Throwable Thrown if an error occurs
+    */
+   void start(Object instance) throws Throwable
+   {
+      if (start != null)
+         start.invokeExact(instance);
+   }
+
+   /**
+    * Invoke the install methods
+    * @param instance The instance
+    * @exception Throwable Thrown if an error occurs
+    */
+   void install(Object instance) throws Throwable
+   {
+      for (MethodHandle mh : installs)
+      {
+         mh.invokeExact(instance);
+      }
+   }
+
+   /**
+    * Get the uninstall methods
+    * @return The methods; <code>null</code> if none
+    */
+   List<Method> getUninstalls()
+   {
+      return uninstalls;
+   }
+
+   /**
+    * Get the incallback methods
+    * @return The methods
+    */
+   List<Method> getIncallbacks()
+   {
+      return incallbacks;
+   }
+
+   /**
+    * Get the uncallback methods
+    * @return The methods
+    */
+   List<Method> getUncallbacks()
+   {
+      return uncallbacks;
+   }
+
+   /**
+    * Compile the plan of a bean definition
+    * @param clz The class of the bean instance
+    * @param bt The bean definition
+    * @return The plan
+    * @exception Exception Thrown if an error occurs
+    */
+   private static BeanPlan compile(Class<?> clz, Bean bt) throws Exception
+   {
+      BeanPlan plan = new BeanPlan();
+      Injection injection = new Injection();
+
+      List<Property> properties = bt.getProperty();
+      plan.setters = new MethodHandle[properties.size()];
+      plan.setterTypes = new Class<?>[properties.size()];
+
+      for (int i = 0; i < properties.size(); i++)
+      {
+         Property pt = properties.get(i);
+
+         String name = "set" + pt.getName().substring(0, 1).toUpperCase(Locale.US);
+         if (pt.getName().length() > 1)
+            name += pt.getName().substring(1);
+
+         Method m = injection.findMethod(clz, name, pt.getClazz());
+
+         if (m == null)
+            throw new Exception("Property " + pt.getName() + " not found on " + clz.getName());
+
+         plan.setters[i] = unreflect(m, SETTER);
+         plan.setterTypes[i] = m.getParameterTypes()[0];
+      }
+
+      String createName = getCreateName(bt);
+      if (createName != null)
+         plan.create = getLifecycleMethod(clz, createName);
+
+      String startName = getStartName(bt);
+      if (startName != null)
+         plan.start = getLifecycleMethod(clz, startName);
+
+      List<Install> its = bt.getInstall();
+      plan.installs = new MethodHandle[its.size()];
+      for (int i = 0; i < its.size(); i++)
+      {
+         Method method = ReflectionCache.getMethod(clz, its.get(i).getMethod());
+
+         if (method == null)
+            throw new NoSuchMethodException(its.get(i).getMethod());
+
+         plan.installs[i] = unreflect(method, LIFECYCLE);
+      }
+
+      List<Uninstall> uts = bt.getUninstall();
+      if (uts.size() > 0)
+      {
+         List<Method> methods = new ArrayList<Method>(uts.size());
+         for (Uninstall ut : uts)
+         {
+            Method method = ReflectionCache.getMethod(clz, ut.getMethod());
+
+            if (method == null)
+               throw new Exception("Unknown uninstall method:" + ut.getMethod());
+
+            methods.add(method);
+         }
+         plan.uninstalls = Collections.unmodifiableList(methods);
+      }
+
+      List<Method> ins = new ArrayList<Method>(bt.getIncallback().size());
+      for (Incallback it : bt.getIncallback())
+      {
+         Method method = getCallbackMethod(clz, it.getMethod());
+         if (method != null)
+            ins.add(method);
+      }
+      plan.incallbacks = Collections.unmodifiableList(ins);
+
+      List<Method> uns = new ArrayList<Method>(bt.getUncallback().size());
+      for (Uncallback ut : bt.getUncallback())
+      {
+         Method method = getCallbackMethod(clz, ut.getMethod());
+         if (method != null)
+            uns.add(method);
+      }
+      plan.uncallbacks = Collections.unmodifiableList(uns);
+
+      return plan;
+   }
+
+   /**
+    * Get the key of a bean definition; the parts of the definition that the plan is made of
+    * @param bt The bean definition
+    * @return The key
+    */
+   private static String getKey(Bean bt)
+   {
+      StringBuilder sb = new StringBuilder("bean:");
+
+      for (Property pt : bt.getProperty())
+      {
+         sb.append(pt.getName()).append('/').append(pt.getClazz()).append(',');
+      }
+
+      sb.append(';').append(getCreateName(bt));
+      sb.append(';').append(getStartName(bt));
+
+      sb.append(';');
+      for (Install it : bt.getInstall())
+      {
+         sb.append(it.getMethod()).append(',');
+      }
+
+      sb.append(';');
+      for (Uninstall ut : bt.getUninstall())
+      {
+         sb.append(ut.getMethod()).append(',');
+      }
+
+      sb.append(';');
+      for (Incallback it : bt.getIncallback())
+      {
+         sb.append(it.getMethod()).append(',');
+      }
+
+      sb.append(';');
+      for (Uncallback ut : bt.getUncallback())
+      {
+         sb.append(ut.getMethod()).append(',');
+      }
+
+      return sb.toString();
+   }
+
+   /**
+    * Get the name of the create method of a bean definition
+    * @param bt The bean definition
+    * @return The name; <code>null</code> if the create method is ignored
+    */
+   private static String getCreateName(Bean bt)
+   {
+      if (bt.isIgnoreCreate())
+         return null;
+
+      if (bt.getCreate() != null && bt.getCreate().getMethod() != null)
+         return bt.getCreate().getMethod();
+
+      return "create";
+   }
+
+   /**
+    * Get the name of the start method of a bean definition
+    * @param bt The bean definition
+    * @return The name; <code>null</code> if the start method is ignored
+    */
+   private static String getStartName(Bean bt)
+   {
+      if (bt.isIgnoreStart())
+         return null;
+
+      if (bt.getStart() != null && bt.getStart().getMethod() != null)
+         return bt.getStart().getMethod();
+
+      return "start";
+   }
+
+   /**
+    * Get the key of a constructor or a factory method
+    * @param name The name of the method
+    * @param parameters The list of parameters
+    * @return The key
+    */
+   private static String getKey(String name, List<Parameter> parameters)
+   {
+      StringBuilder sb = new StringBuilder(name);
+      sb.append('(');
+
+      if (parameters != null)
+      {
+         for (Parameter pt : parameters)
+         {
+            if (pt.getClazz() != null)
+            {
+               sb.append(pt.getClazz());
+            }
+            else
+            {
+               Object v = pt.getContent().get(0);
+
+               if (v instanceof Inject || v instanceof Null)
+                  sb.append('*');
+            }
+            sb.append(',');
+         }
+      }
+
+      sb.append(')');
+
+      return sb.toString();
+   }
+
+   /**
+    * Get a lifecycle method
+    * @param clz The class
+    * @param name The name of the method
+    * @return The method handle; <code>null</code> if the class doesn't have the method
+    * @exception IllegalAccessException Thrown if the method can't be accessed
+    */
+   private static MethodHandle getLifecycleMethod(Class<?> clz, String name) throws IllegalAccessException
+   {
+      Method method = ReflectionCache.getMethod(clz, name);
+
+      if (method == null)
+         return null;
+
+      return unreflect(method, LIFECYCLE);
+   }
+
+   /**
+    * Get a callback method
+    * @param clz The class
+    * @param name The name of the method
+    * @return The method; <code>null</code> if the class doesn't have the method
+    */
+   private static Method getCallbackMethod(Class<?> clz, String name)
+   {
+      for (Method m : SecurityActions.getMethods(clz))
+      {
+         if (m.getName().equals(name) && m.getParameterTypes().length == 1)
+         {
+            SecurityActions.setAccessible(m);
+            return m;
+         }
+      }
+
+      return null;
+   }
+
+   /**
+    * Create a method handle for a method
+    * @param method The method
+    * @param type The type of the method handle; the first parameter is the instance
+    * @return The method handle
+    * @exception IllegalAccessException Thrown if the method can't be accessed
+    */
+   private static MethodHandle unreflect(Method method, MethodType type) throws IllegalAccessException
+   {
+      SecurityActions.setAccessible(method);
+
+      MethodHandle mh = LOOKUP.unreflect(method);
+
+      if (Modifier.isStatic(method.getModifiers()))
+         mh = MethodHandles.dropArguments(mh, 0, Object.class);
+
+      return mh.asType(type);
+   }
+
+   /**
+    * Find constructor
+    * @param clz The class
+    * @param parameters The list of parameters
+    * @param cl The class loader
+    * @return The constructor
+    * @exception Exception Thrown if a constructor cannot be found
+    */
+   @SuppressWarnings("unchecked")
+   private static java.lang.reflect.Constructor<?> findConstructor(Class<?> clz, List<Parameter> parameters,
+                                                                   ClassLoader cl) throws Exception
+   {
+      if (parameters == null || parameters.size() == 0)
+      {
+         Class<?> constructorClass = clz;
+
+         while (constructorClass != null)
+         {
+            java.lang.reflect.Constructor<?>[] constructors = SecurityActions.getDeclaredConstructors(constructorClass);
+
+            if (constructors != null)
+            {
+               for (int i = 0; i < constructors.length; i++)
+               {
+                  java.lang.reflect.Constructor<?> con = constructors[i];
+                  if (con.getParameterTypes().length == 0)
+                     return con;
+               }
+            }
+
+            constructorClass = constructorClass.getSuperclass();
+         }
+      }
+      else
+      {
+         Class<?> constructorClass = clz;
+
+         while (constructorClass != null)
+         {
+            java.lang.reflect.Constructor<?>[] constructors = SecurityActions.getDeclaredConstructors(constructorClass);
+
+            for (java.lang.reflect.Constructor<?> c : constructors)
+            {
+               if (parameters.size() == c.getParameterTypes().length)
+               {
+                  boolean include = true;
+
+                  for (int i = 0; include && i < parameters.size(); i++)
+                  {
+                     Parameter pt = parameters.get(i);
+                     Class<?> parameterClass = c.getParameterTypes()[i];
+
+                     if (pt.getClazz() == null)
+                     {
+                        if ((!(pt.getContent().get(0) instanceof Inject)) &&
+                            (!(pt.getContent().get(0) instanceof Null)))
+                           if (!SUPPORTED_TYPES.contains(parameterClass))
+                              include = false;
+                     }
+                     else
+                     {
+                        Class<?> pClz = Class.forName(pt.getClazz(), true, cl);
+
+                        if (!parameterClass.equals(pClz))
+                           include = false;
+                     }
+                  }
+
+                  if (include)
+                     return c;
+               }
+            }
+
+            constructorClass = constructorClass.getSuperclass();
+         }
+      }
+
+      throw new Exception("Unable to find constructor for " + clz.getName());
+   }
+
+   /**
+    * Find method
+    * @param clz The class
+    * @param name The method name
+    * @param parameters The list of parameters
+    * @param cl The class loader
+    * @return The constructor
+    * @exception Exception Thrown if a constructor cannot be found
+    */
+   @SuppressWarnings("unchecked")
+   private static Method findMethod(Class<?> clz, String name, List<Parameter> parameters, ClassLoader cl)
+      throws Exception
+   {
+      if (parameters == null || parameters.size() == 0)
+      {
+         Class<?> methodClass = clz;
+
+         while (methodClass != null)
+         {
+            Method[] methods = SecurityActions.getDeclaredMethods(methodClass);
+
+            if (methods != null)
+            {
+               for (int i = 0; i < methods.length; i++)
+               {
+                  Method method = methods[i];
+                  if (name.equals(method.getName()) && method.getParameterTypes().length == 0)
+                     return method;
+               }
+            }
+
+            methodClass = methodClass.getSuperclass();
+         }
+      }
+      else
+      {
+         Class<?> methodClass = clz;
+
+         while (methodClass != null)
+         {
+            Method[] methods = SecurityActions.getDeclaredMethods(methodClass);
+
+            for (Method m : methods)
+            {
+               if (m.getName().equals(name))
+               {
+                  if (parameters.size() == m.getParameterTypes().length)
+                  {
+                     boolean include = true;
+
+                     for (int i = 0; include && i < parameters.size(); i++)
+                     {
+                        Parameter pt = parameters.get(i);
+                        Class<?> parameterClass = m.getParameterTypes()[i];
+
+                        if (pt.getClazz() == null)
+                        {
+                           if ((!(pt.getContent().get(0) instanceof Inject)) &&
+                               (!(pt.getContent().get(0) instanceof Null)))
+                              if (!SUPPORTED_TYPES.contains(parameterClass))
+                                 include = false;
+                        }
+                        else
+                        {
+                           Class<?> pClz = Class.forName(pt.getClazz(), true, cl);
+
+                           if (!parameterClass.equals(pClz))
+                              include = false;
+                        }
+                     }
+
+                     if (include)
+                        return m;
+                  }
+               }
+            }
+
+            methodClass = methodClass.getSuperclass();
+         }
+      }
+
+      throw new Exception("Unable to find method (" + name + "[" + parameters + "]) in " + clz.getName());
+   }
+
+   /**
+    * A resolved constructor or factory method
+    */
+   static final class Invoker
+   {
+      /** The method handle; (target, arguments) */
+      private MethodHandle handle;
+
+      /** The parameter types */
+      private Class<?>[] parameterTypes;
+
+      /**
+       * Constructor
+       * @param handle The method handle
+       * @param parameterTypes The parameter types
+       */
+      Invoker(MethodHandle handle, Class<?>[] parameterTypes)
+      {
+         this.handle = handle;
+         this.parameterTypes = parameterTypes;
+      }
+
+      /**
+       * Get the parameter types
+       * @return The value
+       */
+      Class<?>[] getParameterTypes()
+      {
+         return parameterTypes;
+      }
+
+      /**
+       * Invoke
+       * @param target The target object; <code>null</code> for constructors and static methods
+       * @param args The arguments; <code>null</code> if none
+       * @return The new instance
+       * @exception Throwable Thrown if an error occurs
+       */
+      Object invoke(Object target, Object[] args) throws Throwable
+      {
+         Object[] a = args != null ? args : NO_ARGUMENTS;
+         return (Object)handle.invokeExact(target, a);
+      }
+   }
+}
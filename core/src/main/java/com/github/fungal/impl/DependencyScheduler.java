@@ -0,0 +1,305 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.spi.deployers.DeployException;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The dependency scheduler for Fungal.
+ *
+ * A bean deployer is only handed to the kernel thread pool once all the beans
+ * it depends on have been resolved, so no pool thread is parked waiting
+ * for a dependency.
+ *
+ * Tasks are placed on a ready queue, and the kernel thread pool is asked to
+ * run the next ready task. A thread waiting for a set of tasks helps out by
+ * running ready tasks itself, so a bounded thread pool can't deadlock when
+ * all of its threads are waiting for deployments to complete.
+ *
+ * The ready queue is ordered by priority; deployments first, and then the
+ * bean deployers on the longest dependency path according to the install
+ * history of the kernel
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+final class DependencyScheduler
+{
+   /** The interval in milliseconds between checks for ready tasks while waiting */
+   private static final long HELP_INTERVAL = 10L;
+
+   /** The interval in nanoseconds */
+   private static final long HELP_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(HELP_INTERVAL);
+
+   /** The kernel */
+   private KernelImpl kernel;
+
+   /** The tasks which are ready to run */
+   private Queue<Task> ready;
+
+   /** The sequence of the tasks */
+   private AtomicLong sequence;
+
+   /** The number of tasks submitted to the thread pool which haven't started */
+   private AtomicInteger backlog;
+
+   /**
+    * Constructor
+    * @param kernel The kernel
+    */
+   DependencyScheduler(KernelImpl kernel)
+   {
+      if (kernel == null)
+         throw new IllegalArgumentException("Kernel is null");
+
+      this.kernel = kernel;
+      this.ready = new PriorityBlockingQueue<Task>();
+      this.sequence = new AtomicLong(0);
+      this.backlog = new AtomicInteger(0);
+   }
+
+   /**
+    * Schedule a bean deployer
+    * @param deployer The bean deployer
+    */
+   void schedule(BeanDeployer deployer)
+   {
+      Set<String> dependencies = null;
+      try
+      {
+         dependencies = deployer.getDependencies();
+      }
+      catch (DeployException de)
+      {
+         deployer.abort(de);
+         return;
+      }
+
+      // The extra count keeps the deployer from being submitted before all
+      // dependencies have been registered
+      Dependencies pending = new Dependencies(deployer, dependencies.size() + 1);
+
+      for (String dependency : dependencies)
+      {
+         kernel.addBeanDependants(deployer.getName(), dependency, pending);
+      }
+
+      pending.resolved();
+   }
+
+   /**
+    * Execute a task using the kernel thread pool
+    * @param task The task
+    */
+   void execute(Runnable task)
+   {
+      long priority = Long.MAX_VALUE;
+
+      if (task instanceof BeanDeployer)
+         priority = kernel.getInstallHistory().getPriority(((BeanDeployer)task).getName());
+
+      ready.offer(new Task(task, priority, sequence.getAndIncrement()));
+
+      backlog.incrementAndGet();
+      try
+      {
+         kernel.getExecutorService().execute(new Runnable()
+         {
+            public void run()
+            {
+               backlog.decrementAndGet();
+               runReadyTask(false);
+            }
+         });
+      }
+      catch (RejectedExecutionException ree)
+      {
+         // The task stays on the ready queue, and is run by a waiting thread
+         backlog.decrementAndGet();
+      }
+   }
+
+   /**
+    * Wait for a latch to reach zero, while running ready tasks
+    * @param latch The latch
+    * @exception InterruptedException Thrown if the thread is interrupted
+    */
+   void await(CountDownLatch latch) throws InterruptedException
+   {
+      await(latch, 0L);
+   }
+
+   /**
+    * Wait for a latch to reach zero, while running ready tasks
+    * @param latch The latch
+    * @param timeout The timeout in milliseconds; <code>0</code> waits until the latch reaches zero
+    * @return True if the latch reached zero; false if the time passed
+    * @exception InterruptedException Thrown if the thread is interrupted
+    */
+   boolean await(CountDownLatch latch, long timeout) throws InterruptedException
+   {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+      while (latch.getCount() > 0)
+      {
+         if (timeout > 0 && System.nanoTime() - deadline >= 0)
+            return false;
+
+         if (!runReadyTask(true))
+            latch.await(HELP_INTERVAL, TimeUnit.MILLISECONDS);
+      }
+
+      return true;
+   }
+
+   /**
+    * Run the next ready task in the current thread
+    * @param helping Is the thread waiting for other tasks
+    * @return True if a task was run; otherwise false
+    */
+   private boolean runReadyTask(boolean helping)
+   {
+      if (helping)
+      {
+         // Only help when the thread pool is behind, or hasn't picked up a task in time,
+         // since the waiting thread can't return before the task it helps with is done
+         Task head = ready.peek();
+
+         if (head == null)
+            return false;
+
+         if (backlog.get() == 0 && System.nanoTime() - head.enqueued < HELP_INTERVAL_NANOS)
+            return false;
+      }
+
+      Task task = ready.poll();
+
+      if (task == null)
+         return false;
+
+      ClassLoader cl = SecurityActions.getThreadContextClassLoader();
+      try
+      {
+         task.run();
+      }
+      finally
+      {
+         SecurityActions.setThreadContextClassLoader(cl);
+      }
+
+      return true;
+   }
+
+   /**
+    * The unresolved dependencies of a bean deployer
+    */
+   class Dependencies implements BeanEntry.Listener
+   {
+      /** The bean deployer */
+      private BeanDeployer deployer;
+
+      /** The number of unresolved dependencies */
+      private AtomicInteger remaining;
+
+      /**
+       * Constructor
+       * @param deployer The bean deployer
+       * @param count The number of unresolved dependencies
+       */
+      Dependencies(BeanDeployer deployer, int count)
+      {
+         this.deployer = deployer;
+         this.remaining = new AtomicInteger(count);
+      }
+
+      /**
+       * A dependency has been resolved
+       */
+      public void resolved()
+      {
+         if (remaining.decrementAndGet() == 0)
+            execute(deployer);
+      }
+   }
+
+   /**
+    * A task on the ready queue
+    */
+   static class Task implements Runnable, Comparable<Task>
+   {
+      /** The task */
+      private Runnable task;
+
+      /** The priority */
+      private long priority;
+
+      /** The sequence */
+      private long sequence;
+
+      /** The time the task was put on the ready queue */
+      private long enqueued;
+
+      /**
+       * Constructor
+       * @param task The task
+       * @param priority The priority; higher runs first
+       * @param sequence The sequence; lower runs first for the same priority
+       */
+      Task(Runnable task, long priority, long sequence)
+      {
+         this.task = task;
+         this.priority = priority;
+         this.sequence = sequence;
+         this.enqueued = System.nanoTime();
+      }
+
+      /**
+       * Run
+       */
+      public void run()
+      {
+         task.run();
+      }
+
+      /**
+       * Compare
+       * @param o The other task
+       * @return The order
+       */
+      public int compareTo(Task o)
+      {
+         if (priority != o.priority)
+            return priority > o.priority ? -1 : 1;
+
+         if (sequence != o.sequence)
+            return sequence < o.sequence ? -1 : 1;
+
+         return 0;
+      }
+   }
+}
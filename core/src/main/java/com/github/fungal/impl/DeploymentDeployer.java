@@ -28,18 +28,7 @@ import com.github.fungal.spi.deployers.DeployException;
 import com.github.fungal.spi.deployers.Deployer;
 import com.github.fungal.spi.deployers.Deployment;
 
-import java.lang.reflect.Method;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -92,15 +81,61 @@ public final class DeploymentDeployer implements CloneableDeployer
    /**
     * {@inheritDoc}
     */
-   public Deployment deploy(URL url, Context context, ClassLoader parent) throws DeployException
+   public Deployment deploy(URL url, Context context, final ClassLoader parent) throws DeployException
    {
       DeployException deployException = null;
       try
       {
-         Unmarshaller deploymentU = new Unmarshaller();
-         com.github.fungal.deployment.Deployment deployment = deploymentU.unmarshal(url);
+         com.github.fungal.deployment.Deployment deployment = kernel.removeDescriptor(url);
+         BeanBatch batch = null;
 
-         if (deployment != null && deployment.getBean().size() > 0)
+         if (deployment == null)
+         {
+            // The beans are scheduled while the rest of the descriptor is being read
+            final BeanBatch streamBatch = new BeanBatch(kernel, 16, log);
+
+            try
+            {
+               deployment = kernel.parseDescriptor(url, new Unmarshaller.Listener()
+               {
+                  public void beanRead(Bean bt)
+                  {
+                     kernel.setBeanStatus(bt.getName(), ServiceLifecycle.NOT_STARTED);
+                     streamBatch.stream(new BeanDeployer(bt, streamBatch, kernel, parent, log));
+                  }
+               });
+            }
+            catch (Throwable t)
+            {
+               log.log(Level.SEVERE, t.getMessage(), t);
+               DeployException de = new DeployException("Deployment " + url + " failed", t);
+
+               if (streamBatch.isStreamed())
+               {
+                  // Cancel the streamed beans, and roll back the installed beans
+                  // once the running beans have finished
+                  streamBatch.failed(de);
+
+                  try
+                  {
+                     streamBatch.deploy();
+                  }
+                  catch (DeployException bde)
+                  {
+                     // The read failure is reported
+                  }
+               }
+
+               throw de;
+            }
+
+            if (streamBatch.isStreamed())
+            {
+               kernel.beansRegistered();
+               batch = streamBatch;
+            }
+         }
+         else if (deployment.getBean().size() > 0)
          {
             for (Bean bt : deployment.getBean())
             {
@@ -109,44 +144,35 @@ public final class DeploymentDeployer implements CloneableDeployer
 
             kernel.beansRegistered();
 
-            List<BeanDeployer> deployers = new ArrayList<BeanDeployer>(deployment.getBean().size());
-            List<String> beans = Collections.synchronizedList(new ArrayList<String>(deployment.getBean().size()));
-            Map<String, List<Method>> uninstall = 
-               new ConcurrentHashMap<String, List<Method>>(deployment.getBean().size());
-            Map<String, String> stops =
-               Collections.synchronizedMap(new HashMap<String, String>(deployment.getBean().size()));
-            Map<String, String> destroys =
-               Collections.synchronizedMap(new HashMap<String, String>(deployment.getBean().size()));
-            Set<String> ignoreStops = Collections.synchronizedSet(new HashSet<String>(deployment.getBean().size()));
-            Set<String> ignoreDestroys = Collections.synchronizedSet(new HashSet<String>(deployment.getBean().size()));
-
-            final CountDownLatch beansLatch = new CountDownLatch(deployment.getBean().size());
+            batch = new BeanBatch(kernel, deployment.getBean().size(), log);
 
             for (Bean bt : deployment.getBean())
             {
-               BeanDeployer deployer = new BeanDeployer(bt, beans, uninstall,
-                                                        stops, destroys, ignoreStops, ignoreDestroys,
-                                                        kernel, beansLatch, parent, log);
-               deployers.add(deployer);
-
-               kernel.getExecutorService().submit(deployer);
+               batch.add(new BeanDeployer(bt, batch, kernel, parent, log));
             }
+         }
 
-            beansLatch.await();
-
-            Iterator<BeanDeployer> it = deployers.iterator();
-            while (deployException == null && it.hasNext())
+         if (batch != null)
+         {
+            try
             {
-               BeanDeployer deployer = it.next();
-               if (deployer.getDeployException() != null)
-                  deployException = deployer.getDeployException();
+               batch.deploy();
+            }
+            catch (DeployException de)
+            {
+               deployException = de;
             }
 
             if (deployException == null)
-               return new BeanDeploymentImpl(url, beans, uninstall,
-                                             stops, destroys, ignoreStops, ignoreDestroys, kernel);
+               return new BeanDeploymentImpl(url, batch.getBeans(),
+                                             BeanDeploymentImpl.getSystemProperties(deployment.getBean()),
+                                             kernel);
          }
       }
+      catch (DeployException de)
+      {
+         throw de;
+      }
       catch (Throwable t)
       {
          log.log(Level.SEVERE, t.getMessage(), t);
@@ -0,0 +1,155 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The locks of the deployment URLs.
+ *
+ * A deployment and an undeployment of the same URL are mutually exclusive,
+ * while different URLs are deployed concurrently. The locks are reentrant,
+ * and a lock is removed once no thread holds or waits for it
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+final class DeploymentLocks
+{
+   /** The locks */
+   private ConcurrentMap<String, UrlLock> locks;
+
+   /**
+    * Constructor
+    */
+   DeploymentLocks()
+   {
+      this.locks = new ConcurrentHashMap<String, UrlLock>();
+   }
+
+   /**
+    * Lock a URL
+    * @param url The URL
+    */
+   void lock(URL url)
+   {
+      if (url == null)
+         throw new IllegalArgumentException("URL is null");
+
+      String key = url.toExternalForm();
+
+      while (true)
+      {
+         UrlLock lock = locks.get(key);
+
+         if (lock == null)
+         {
+            lock = new UrlLock();
+
+            if (locks.putIfAbsent(key, lock) == null)
+            {
+               lock.lock();
+               return;
+            }
+         }
+         else if (lock.acquire())
+         {
+            lock.lock();
+            return;
+         }
+         else
+         {
+            // The lock is being removed
+            locks.remove(key, lock);
+         }
+      }
+   }
+
+   /**
+    * Unlock a URL
+    * @param url The URL
+    */
+   void unlock(URL url)
+   {
+      if (url == null)
+         throw new IllegalArgumentException("URL is null");
+
+      String key = url.toExternalForm();
+      UrlLock lock = locks.get(key);
+
+      if (lock == null)
+         throw new IllegalMonitorStateException("URL isn't locked: " + key);
+
+      lock.unlock();
+
+      if (lock.release())
+         locks.remove(key, lock);
+   }
+
+   /**
+    * The lock of a URL
+    */
+   static class UrlLock extends ReentrantLock
+   {
+      /** Serial version uid */
+      private static final long serialVersionUID = 1L;
+
+      /** The number of lock calls which haven't been unlocked */
+      private AtomicInteger references;
+
+      /**
+       * Constructor
+       */
+      UrlLock()
+      {
+         this.references = new AtomicInteger(1);
+      }
+
+      /**
+       * Acquire a reference
+       * @return True if acquired; false if the lock is being removed
+       */
+      boolean acquire()
+      {
+         while (true)
+         {
+            int current = references.get();
+
+            if (current == 0)
+               return false;
+
+            if (references.compareAndSet(current, current + 1))
+               return true;
+         }
+      }
+
+      /**
+       * Release a reference
+       * @return True if it was the last reference; otherwise false
+       */
+      boolean release()
+      {
+         return references.decrementAndGet() == 0;
+      }
+   }
+}
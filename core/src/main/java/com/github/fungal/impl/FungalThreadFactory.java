@@ -20,6 +20,10 @@
 
 package com.github.fungal.impl;
 
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -27,7 +31,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * The thread factory for Fungal
  * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
  */
-public class FungalThreadFactory implements ThreadFactory
+public class FungalThreadFactory implements ThreadFactory, ForkJoinPool.ForkJoinWorkerThreadFactory
 {
    /** The thread group */
    private ThreadGroup tg;
@@ -54,4 +58,56 @@ public class FungalThreadFactory implements ThreadFactory
    {
       return new Thread(tg, r, "fungal-" + threadNumber.getAndIncrement());
    }
+
+   /**
+    * Create a new worker thread for a fork/join pool
+    * @param pool The pool
+    * @return The thread
+    */
+   public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+   {
+      ForkJoinWorkerThread t = new FungalWorkerThread(pool);
+      t.setName("fungal-" + threadNumber.getAndIncrement());
+      return t;
+   }
+
+   /**
+    * Create an executor service which runs each task in a new virtual thread
+    * @return The executor service; <code>null</code> if virtual threads aren't supported by the platform
+    */
+   static ExecutorService newVirtualThreadExecutor()
+   {
+      try
+      {
+         // Resolved through reflection in order to run on platforms without virtual threads
+         Class<?> builderClz = Class.forName("java.lang.Thread$Builder");
+
+         Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+         builder = builderClz.getMethod("name", String.class, long.class).invoke(builder, "fungal-", Long.valueOf(1));
+         ThreadFactory tf = (ThreadFactory)builderClz.getMethod("factory").invoke(builder);
+
+         Method m = java.util.concurrent.Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+
+         return (ExecutorService)m.invoke(null, tf);
+      }
+      catch (Throwable t)
+      {
+         return null;
+      }
+   }
+
+   /**
+    * The worker thread for a fork/join pool
+    */
+   static class FungalWorkerThread extends ForkJoinWorkerThread
+   {
+      /**
+       * Constructor
+       * @param pool The pool
+       */
+      FungalWorkerThread(ForkJoinPool pool)
+      {
+         super(pool);
+      }
+   }
 }
@@ -90,12 +90,14 @@ public final class HotDeployer implements HotDeployerMBean, Runnable
          if (!deployment.toExternalForm().startsWith(directory.toURI().toURL().toExternalForm()))
             return;
 
+         // Keep the file system access outside of the monitor
+         File f = new File(deployment.toURI());
+         Long modified = Long.valueOf(f.lastModified());
+
          synchronized (deployments)
          {
             deployments.add(deployment);
-
-            File f = new File(deployment.toURI());
-            modifiedTimestamp.put(deployment.toString(), Long.valueOf(f.lastModified()));
+            modifiedTimestamp.put(deployment.toString(), modified);
          }
       }
       catch (Throwable t)
@@ -0,0 +1,345 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The install history of the beans.
+ *
+ * The history keeps the install time of each bean, and the length of the
+ * longest dependency path starting with the bean as seen during the last
+ * startup. The path length is used to schedule the beans on the critical
+ * path first
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+final class InstallHistory
+{
+   /** The name of the history file */
+   static final String FILE_NAME = "install-history.properties";
+
+   /** The install times in microseconds of the previous startups */
+   private Map<String, Long> previous;
+
+   /** The path lengths in microseconds of the previous startups */
+   private Map<String, Long> paths;
+
+   /** The install times in microseconds of this startup */
+   private ConcurrentMap<String, Long> durations;
+
+   /**
+    * Constructor
+    */
+   InstallHistory()
+   {
+      this.previous = new HashMap<String, Long>(1);
+      this.paths = new HashMap<String, Long>(1);
+      this.durations = new ConcurrentHashMap<String, Long>(1);
+   }
+
+   /**
+    * Load the history
+    * @param file The file
+    * @exception IOException Thrown if the history can't be read
+    */
+   void load(File file) throws IOException
+   {
+      if (file == null)
+         throw new IllegalArgumentException("File is null");
+
+      if (!file.exists())
+         return;
+
+      Properties properties = new Properties();
+      InputStream is = null;
+      try
+      {
+         is = new FileInputStream(file);
+         properties.load(is);
+      }
+      finally
+      {
+         if (is != null)
+         {
+            try
+            {
+               is.close();
+            }
+            catch (IOException ioe)
+            {
+               // Ignore
+            }
+         }
+      }
+
+      Map<String, Long> loadedDurations = new HashMap<String, Long>(properties.size());
+      Map<String, Long> loadedPaths = new HashMap<String, Long>(properties.size());
+
+      for (String name : properties.stringPropertyNames())
+      {
+         String value = properties.getProperty(name);
+         int index = value.indexOf(',');
+
+         try
+         {
+            if (index != -1)
+            {
+               loadedDurations.put(name, Long.valueOf(value.substring(0, index).trim()));
+               loadedPaths.put(name, Long.valueOf(value.substring(index + 1).trim()));
+            }
+         }
+         catch (NumberFormatException nfe)
+         {
+            // Skip the entry
+         }
+      }
+
+      previous = loadedDurations;
+      paths = loadedPaths;
+   }
+
+   /**
+    * Save the history
+    * @param file The file
+    * @param dependencies The dependencies of the beans
+    * @exception IOException Thrown if the history can't be written
+    */
+   void save(File file, Map<String, Set<String>> dependencies) throws IOException
+   {
+      if (file == null)
+         throw new IllegalArgumentException("File is null");
+
+      if (dependencies == null)
+         throw new IllegalArgumentException("Dependencies is null");
+
+      // Only the beans seen during this startup are kept; a bean which wasn't
+      // installed, such as a lazy bean, keeps its previous install time
+      Map<String, Long> merged = new HashMap<String, Long>(dependencies.size());
+
+      for (String name : dependencies.keySet())
+      {
+         Long old = previous.get(name);
+
+         if (old != null)
+            merged.put(name, old);
+      }
+
+      for (Map.Entry<String, Long> entry : durations.entrySet())
+      {
+         Long old = previous.get(entry.getKey());
+
+         if (old != null)
+         {
+            // Smooth the install time over the startups
+            merged.put(entry.getKey(), Long.valueOf((old.longValue() + entry.getValue().longValue()) / 2));
+         }
+         else
+         {
+            merged.put(entry.getKey(), entry.getValue());
+         }
+      }
+
+      Map<String, Set<String>> dependants = new HashMap<String, Set<String>>(dependencies.size());
+
+      for (Map.Entry<String, Set<String>> entry : dependencies.entrySet())
+      {
+         for (String dependency : entry.getValue())
+         {
+            Set<String> s = dependants.get(dependency);
+
+            if (s == null)
+            {
+               s = new HashSet<String>(1);
+               dependants.put(dependency, s);
+            }
+
+            s.add(entry.getKey());
+         }
+      }
+
+      Map<String, Long> lengths = getPathLengths(merged, dependencies, dependants);
+
+      Properties properties = new Properties();
+
+      for (Map.Entry<String, Long> entry : merged.entrySet())
+      {
+         properties.setProperty(entry.getKey(), entry.getValue() + "," + lengths.get(entry.getKey()));
+      }
+
+      OutputStream os = null;
+      try
+      {
+         os = new FileOutputStream(file);
+         properties.store(os, "Fungal install history");
+      }
+      finally
+      {
+         if (os != null)
+         {
+            try
+            {
+               os.close();
+            }
+            catch (IOException ioe)
+            {
+               // Ignore
+            }
+         }
+      }
+   }
+
+   /**
+    * Record the install time of a bean
+    * @param name The name of the bean
+    * @param nanos The install time in nanoseconds
+    */
+   void record(String name, long nanos)
+   {
+      durations.put(name, Long.valueOf(TimeUnit.NANOSECONDS.toMicros(nanos)));
+   }
+
+   /**
+    * Get the priority of a bean, e.g. the length of the longest dependency
+    * path starting with the bean during the previous startups
+    * @param name The name of the bean
+    * @return The priority; <code>0</code> if the bean hasn't been seen before
+    */
+   long getPriority(String name)
+   {
+      Long length = paths.get(name);
+
+      if (length == null)
+         return 0L;
+
+      return length.longValue();
+   }
+
+   /**
+    * Get the length of the longest dependency path starting with each bean.
+    *
+    * The beans are visited in reverse topological order, such that the path
+    * lengths of the dependants of a bean are known when the bean is visited.
+    * The beans of a cycle are visited last, and the beans of the cycle which
+    * haven't been visited don't add to the path
+    * @param merged The install times
+    * @param dependencies The dependencies of the beans
+    * @param dependants The dependants of the beans
+    * @return The lengths
+    */
+   private Map<String, Long> getPathLengths(Map<String, Long> merged, Map<String, Set<String>> dependencies,
+                                            Map<String, Set<String>> dependants)
+   {
+      Map<String, Long> lengths = new HashMap<String, Long>(merged.size());
+      Map<String, Integer> remaining = new HashMap<String, Integer>(merged.size());
+      LinkedList<String> ready = new LinkedList<String>();
+
+      for (String name : merged.keySet())
+      {
+         int count = 0;
+         Set<String> s = dependants.get(name);
+
+         if (s != null)
+         {
+            for (String dependant : s)
+            {
+               if (!dependant.equals(name) && merged.containsKey(dependant))
+                  count++;
+            }
+         }
+
+         remaining.put(name, Integer.valueOf(count));
+
+         if (count == 0)
+            ready.add(name);
+      }
+
+      Iterator<String> unvisited = merged.keySet().iterator();
+
+      while (lengths.size() < merged.size())
+      {
+         String name = ready.poll();
+
+         if (name == null)
+         {
+            // The remaining beans are part of, or depend on, a cycle
+            name = unvisited.next();
+
+            if (lengths.containsKey(name))
+               continue;
+         }
+         else if (lengths.containsKey(name))
+         {
+            continue;
+         }
+
+         long max = 0L;
+         Set<String> s = dependants.get(name);
+
+         if (s != null)
+         {
+            for (String dependant : s)
+            {
+               Long length = lengths.get(dependant);
+
+               if (length != null)
+                  max = Math.max(max, length.longValue());
+            }
+         }
+
+         lengths.put(name, Long.valueOf(max + merged.get(name).longValue()));
+
+         Set<String> d = dependencies.get(name);
+
+         if (d != null)
+         {
+            for (String dependency : d)
+            {
+               Integer count = remaining.get(dependency);
+
+               if (count != null && !dependency.equals(name))
+               {
+                  remaining.put(dependency, Integer.valueOf(count.intValue() - 1));
+
+                  if (count.intValue() == 1)
+                     ready.add(dependency);
+               }
+            }
+         }
+      }
+
+      return lengths;
+   }
+}
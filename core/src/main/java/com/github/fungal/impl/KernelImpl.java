@@ -30,7 +30,9 @@ import com.github.fungal.api.deployment.BeanDeployment;
 import com.github.fungal.api.events.Event;
 import com.github.fungal.api.events.EventListener;
 import com.github.fungal.api.remote.Command;
+import com.github.fungal.api.util.ConverterRegistry;
 import com.github.fungal.api.util.JMX;
+import com.github.fungal.api.util.ReflectionCache;
 import com.github.fungal.bootstrap.Bootstrap;
 import com.github.fungal.impl.netboot.Netboot;
 import com.github.fungal.impl.remote.CommunicationServer;
@@ -38,6 +40,7 @@ import com.github.fungal.impl.remote.CommunicatorImpl;
 import com.github.fungal.impl.remote.commands.Deploy;
 import com.github.fungal.impl.remote.commands.GetCommand;
 import com.github.fungal.impl.remote.commands.Help;
+import com.github.fungal.impl.remote.commands.Profile;
 import com.github.fungal.impl.remote.commands.Undeploy;
 import com.github.fungal.spi.deployers.DeployException;
 import com.github.fungal.spi.deployers.DeployerPhases;
@@ -53,6 +56,7 @@ import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -61,20 +65,29 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -103,24 +116,57 @@ public class KernelImpl implements Kernel, KernelImplMBean
    /** Deployments */
    private List<Deployment> deployments = Collections.synchronizedList(new ArrayList<Deployment>(1));
 
-   /** Beans */
-   private ConcurrentMap<String, Object> beans = new ConcurrentHashMap<String, Object>(1);
+   /** Bean entries; the instance, status, dependencies and lifecycle of each bean */
+   private ConcurrentMap<String, BeanEntry> beanEntries;
 
-   /** Bean status */
-   private ConcurrentMap<String, ServiceLifecycle> beanStatus = new ConcurrentHashMap<String, ServiceLifecycle>(1);
+   /** Bean deployments */
+   private AtomicInteger beanDeployments;
 
-   /** Bean dependants */
-   private ConcurrentMap<String, Set<String>> beanDependants = new ConcurrentHashMap<String, Set<String>>(1);
+   /** The ranks of the deployments made during startup */
+   private ConcurrentMap<String, Integer> deploymentRanks = new ConcurrentHashMap<String, Integer>(1);
 
-   /** Bean latches */
-   private Map<String, List<CountDownLatch>> beanLatches =
-      Collections.synchronizedMap(new HashMap<String, List<CountDownLatch>>(1));
+   /** The next deployment rank */
+   private int nextDeploymentRank;
 
-   /** Bean deployments */
-   private AtomicInteger beanDeployments;
+   /** Descriptors parsed ahead of their deployment */
+   private ConcurrentMap<String, com.github.fungal.deployment.Deployment> descriptors =
+      new ConcurrentHashMap<String, com.github.fungal.deployment.Deployment>(1);
+
+   /** The errors of the descriptors parsed ahead of their deployment */
+   private ConcurrentMap<String, Throwable> descriptorErrors = new ConcurrentHashMap<String, Throwable>(1);
+
+   /** The stamps of the descriptor files when they were parsed ahead of their deployment */
+   private ConcurrentMap<String, String> descriptorStamps = new ConcurrentHashMap<String, String>(1);
+
+   /** The descriptors of system/ and deploy/ being parsed during startup; <code>null</code> if none */
+   private CountDownLatch descriptorPlan;
+
+   /** The cache of parsed descriptors; <code>null</code> if not used */
+   private com.github.fungal.deployment.DeploymentCache deploymentCache;
+
+   /** The dependencies declared by the beans of the startup plan; <code>null</code> if none */
+   private volatile Map<String, Set<String>> plannedDependencies;
+
+   /** The lock of the bean dependency graph */
+   private Lock dependencyGraphLock = new ReentrantLock();
 
    /** Kernel thread pool */
-   private ThreadPoolExecutor threadPoolExecutor;
+   private ExecutorService executorService;
+
+   /** Dependency scheduler */
+   private DependencyScheduler dependencyScheduler;
+
+   /** Shutdown scheduler */
+   private ShutdownScheduler shutdownScheduler;
+
+   /** The number of bean status changes */
+   private AtomicLong beanStatusChanges = new AtomicLong(0);
+
+   /** Install history */
+   private InstallHistory installHistory;
+
+   /** Profiler */
+   private Profiler profiler;
 
    /** The old class loader */
    private ClassLoader oldClassLoader;
@@ -146,8 +192,17 @@ public class KernelImpl implements Kernel, KernelImplMBean
    /** Uncallbacks */
    private ConcurrentMap<Class<?>, List<Callback>> uncallbacks = new ConcurrentHashMap<Class<?>, List<Callback>>(1);
 
-   /** Callback beans */
-   private ConcurrentMap<Object, List<Callback>> callbackBeans = new ConcurrentHashMap<Object, List<Callback>>(1);
+   /** The bean names by type; the class, the superclasses and the interfaces of the beans */
+   private ConcurrentMap<Class<?>, Set<String>> beanTypes = new ConcurrentHashMap<Class<?>, Set<String>>(1);
+
+   /** The beans added since the last incallback */
+   private Queue<String> newBeans = new ConcurrentLinkedQueue<String>();
+
+   /** The incallbacks registered since the last incallback */
+   private Queue<Callback> newIncallbacks = new ConcurrentLinkedQueue<Callback>();
+
+   /** The incallback lock */
+   private Object incallbackLock = new Object();
 
    /** DeployerPhases beans */
    private Set<String> deployerPhasesBeans = Collections.synchronizedSet(new HashSet<String>(1));
@@ -183,13 +238,23 @@ public class KernelImpl implements Kernel, KernelImplMBean
       this.log = null;
       this.trace = false;
       this.deployments.clear();
-      this.beans.clear();
-      this.beanStatus.clear();
-      this.beanDependants.clear();
-      this.beanLatches.clear();
+      this.beanEntries = new ConcurrentHashMap<String, BeanEntry>(kernelConfiguration != null ?
+                                                                  kernelConfiguration.getBeanCapacity() : 16);
       this.beanDeployments = new AtomicInteger(0);
+      this.descriptors.clear();
+      this.descriptorErrors.clear();
+      this.descriptorStamps.clear();
+      this.descriptorPlan = null;
+      this.plannedDependencies = null;
+      this.deploymentCache = null;
+      this.deploymentRanks.clear();
+      this.nextDeploymentRank = 0;
 
       setExecutorService(null);
+      this.dependencyScheduler = new DependencyScheduler(this);
+      this.shutdownScheduler = new ShutdownScheduler(this);
+      this.installHistory = new InstallHistory();
+      this.profiler = new Profiler();
 
       this.oldClassLoader = null;
       this.kernelClassLoader = null;
@@ -199,7 +264,9 @@ public class KernelImpl implements Kernel, KernelImplMBean
       this.temporaryEnvironment = false;
       this.incallbacks.clear();
       this.uncallbacks.clear();
-      this.callbackBeans.clear();
+      this.beanTypes.clear();
+      this.newBeans.clear();
+      this.newIncallbacks.clear();
       this.deployerPhasesBeans.clear();
       this.newDeployerPhasesBeans.clear();
       this.hotDeployer = null;
@@ -331,18 +398,7 @@ public class KernelImpl implements Kernel, KernelImplMBean
       if (tg == null)
          tg = new ThreadGroup("fungal");
 
-      BlockingQueue<Runnable> threadPoolQueue = new SynchronousQueue<Runnable>(true);
-      ThreadFactory tf = new FungalThreadFactory(tg);
-
-      ThreadPoolExecutor tpe = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), Integer.MAX_VALUE,
-                                                      60, TimeUnit.SECONDS,
-                                                      threadPoolQueue,
-                                                      tf);
-
-      tpe.allowCoreThreadTimeOut(true);
-      tpe.prestartAllCoreThreads();
-
-      setExecutorService(tpe);
+      setExecutorService(createExecutorService(tg));
 
       File root = null;
 
@@ -393,6 +449,15 @@ public class KernelImpl implements Kernel, KernelImplMBean
             deployDirectory = new File(root, File.separator + kernelConfiguration.getDeploy() + File.separator);
       }
 
+      if (!temporaryEnvironment)
+      {
+         deploymentCache = new com.github.fungal.deployment.DeploymentCache(
+            new File(root, com.github.fungal.deployment.DeploymentCache.DIRECTORY_NAME));
+      }
+
+      // Parse the descriptors while the kernel class loader is set up
+      planDescriptors(systemDirectory, deployDirectory);
+
       // PRE_CLASSLOADER
       if (els != null && els.size() > 0)
       {
@@ -429,6 +494,10 @@ public class KernelImpl implements Kernel, KernelImplMBean
 
       initKernelLogging();
 
+      if (kernelConfiguration.isVirtualThreads() &&
+          (executorService instanceof ThreadPoolExecutor || executorService instanceof ForkJoinPool))
+         log.warning("Virtual threads aren't supported by the platform; using platform threads");
+
       // Netboot
       boolean netbooted = false;
       if (bootstrap != null)
@@ -520,6 +589,7 @@ public class KernelImpl implements Kernel, KernelImplMBean
          remote.registerCommand(new GetCommand(remote));
          remote.registerCommand(new Deploy(getMainDeployer(), getHotDeployer()));
          remote.registerCommand(new Undeploy(getMainDeployer(), getHotDeployer()));
+         remote.registerCommand(new Profile(profiler));
 
          List<Command> commands = kernelConfiguration.getCommands();
          if (commands != null && commands.size() > 0)
@@ -575,6 +645,22 @@ public class KernelImpl implements Kernel, KernelImplMBean
          log.fine("VM arguments: " + vmArgs.toString());
       }
 
+      // Load the install history
+      File historyFile = null;
+      if (!temporaryEnvironment)
+      {
+         historyFile = new File(root, InstallHistory.FILE_NAME);
+
+         try
+         {
+            installHistory.load(historyFile);
+         }
+         catch (IOException ioe)
+         {
+            log.log(Level.WARNING, "Unable to load the install history: " + ioe.getMessage(), ioe);
+         }
+      }
+
       // Start all URLs defined in bootstrap.xml
       if (bootstrap != null)
       {
@@ -595,98 +681,122 @@ public class KernelImpl implements Kernel, KernelImplMBean
       // PreDeploy
       preDeploy(false);
 
-      // Deploy all files in system/
+      awaitDescriptors();
+
+      List<URL> systemUrls = new ArrayList<URL>(1);
+      List<URL> deployUrls = new ArrayList<URL>(1);
+      int systemCounter = 0;
+      int deployCounter = 0;
+
+      // Find all files in system/
       if (systemDirectory != null && systemDirectory.exists() && systemDirectory.isDirectory())
       {
          File[] files = systemDirectory.listFiles();
 
          if (files != null)
          {
-            List<URL> l = new ArrayList<URL>(files.length);
-            int counter = 0;
-
             for (File f : files)
             {
                URL u = f.toURI().toURL();
                
-               l.add(u);
+               systemUrls.add(u);
 
                if (u.toString().endsWith(".xml"))
-                  counter++;
+                  systemCounter++;
             }
 
-            Collections.sort(l, kernelConfiguration.getDeploymentOrder());
-
-            log.log(Level.FINE, "System deployments: " + l);
-
-            beanDeployments = new AtomicInteger(counter);
-
-            if (kernelConfiguration.isParallelDeploy())
-            {
-               deployUrls(l.toArray(new URL[l.size()]));
-            }
-            else
-            {
-               for (URL u : l)
-               {
-                  deployUrls(new URL[] {u});
-               }
-            }
+            Collections.sort(systemUrls, kernelConfiguration.getDeploymentOrder());
 
-            if (counter > 0)
-               incallback();
+            log.log(Level.FINE, "System deployments: " + systemUrls);
          }
       }
 
-      // Deploy all files in deploy/
+      // Find all files in deploy/
       if (deployDirectory != null && deployDirectory.exists() && deployDirectory.isDirectory())
       {
          File[] files = deployDirectory.listFiles();
 
          if (files != null)
          {
-            List<URL> l = new ArrayList<URL>(files.length);
-            int counter = 0;
-
             for (File f : files)
             {
                URL u = f.toURI().toURL();
                
-               l.add(u);
+               deployUrls.add(u);
 
                if (u.toString().endsWith(".xml"))
-                  counter++;
+                  deployCounter++;
 
                if (hotDeployer != null)
                   hotDeployer.register(u);
             }
 
-            Collections.sort(l, kernelConfiguration.getDeploymentOrder());
+            Collections.sort(deployUrls, kernelConfiguration.getDeploymentOrder());
 
-            log.log(Level.FINE, "Deploy deployments: " + l);
+            log.log(Level.FINE, "Deploy deployments: " + deployUrls);
+         }
+      }
 
-            beanDeployments = new AtomicInteger(counter);
+      if (kernelConfiguration.isParallelDeploy())
+      {
+         // The descriptors in system/ and deploy/ are deployed as one dependency graph
+         beanDeployments = new AtomicInteger(systemCounter + deployCounter);
 
-            if (kernelConfiguration.isParallelDeploy())
-            {
-               deployUrls(l.toArray(new URL[l.size()]));
-            }
-            else
-            {
-               for (URL u : l)
-               {
-                  deployUrls(new URL[] {u});
-               }
-            }
+         deployUrls(systemUrls.toArray(new URL[systemUrls.size()]),
+                    deployUrls.toArray(new URL[deployUrls.size()]));
+
+         if (systemCounter + deployCounter > 0)
+            incallback();
+      }
+      else
+      {
+         beanDeployments = new AtomicInteger(systemCounter);
+
+         for (URL u : systemUrls)
+         {
+            deployUrls(new URL[] {u});
+         }
+
+         if (systemCounter > 0)
+            incallback();
 
-            if (counter > 0)
-               incallback();
+         beanDeployments = new AtomicInteger(deployCounter);
+
+         for (URL u : deployUrls)
+         {
+            deployUrls(new URL[] {u});
          }
+
+         if (deployCounter > 0)
+            incallback();
       }
 
+      // The descriptors which weren't deployed are parsed again when deployed later on
+      descriptors.clear();
+      descriptorErrors.clear();
+      descriptorStamps.clear();
+      plannedDependencies = null;
+
       // PostDeploy
       postDeploy(false);
 
+      // Save the install history
+      if (historyFile != null)
+      {
+         try
+         {
+            installHistory.save(historyFile, getBeanDependencies());
+         }
+         catch (IOException ioe)
+         {
+            log.log(Level.WARNING, "Unable to save the install history: " + ioe.getMessage(), ioe);
+         }
+      }
+
+      // Remove the cached descriptors which weren't used
+      if (deploymentCache != null)
+         deploymentCache.prune();
+
       // Start hot deployer
       if (hotDeployer != null)
          hotDeployer.start();
@@ -741,234 +851,793 @@ public class KernelImpl implements Kernel, KernelImplMBean
    }
 
    /**
-    * Deploy URLs
-    * @param urls The URLs
+    * Deploy URLs.
+    *
+    * The descriptors are parsed up front, and deployed together such that their beans
+    * form one dependency graph across the files. The other deployments are deployed by
+    * order index, directory by directory, once the deployer beans of the descriptors
+    * have been resolved
+    * @param directories The URLs of each directory
     */
-   private void deployUrls(URL[] urls)
+   private void deployUrls(URL[]... directories)
    {
-      if (urls != null && urls.length > 0)
-      {
-         SortedMap<Integer, List<URL>> sm = new TreeMap<Integer, List<URL>>();
+      List<URL> descriptorUrls = new ArrayList<URL>(1);
+      List<UnitGroup> groups = new ArrayList<UnitGroup>(1);
+      int units = 0;
 
-         for (URL url : urls)
+      for (URL[] urls : directories)
+      {
+         if (urls != null && urls.length > 0)
          {
-            Integer index = Integer.valueOf(kernelConfiguration.getDeploymentOrder().getOrderIndex(url));
-            List<URL> l = sm.get(index);
+            SortedMap<Integer, List<URL>> sm = new TreeMap<Integer, List<URL>>();
+            SortedMap<Integer, List<URL>> ranks = new TreeMap<Integer, List<URL>>();
 
-            if (l == null)
-               l = new ArrayList<URL>(1);
-
-            l.add(url);
-            sm.put(index, l);
-         }
-
-         for (List<URL> l : sm.values())
-         {
-            try
+            for (URL url : urls)
             {
-               List<UnitDeployer> unitDeployers = new ArrayList<UnitDeployer>(l.size());
-
-               final CountDownLatch unitLatch = new CountDownLatch(l.size());
+               Integer index = Integer.valueOf(kernelConfiguration.getDeploymentOrder().getOrderIndex(url));
 
-               for (URL url : l)
+               if (url.toString().endsWith(".xml"))
                {
-                  try
-                  {
-                     if (log.isLoggable(Level.FINE))
-                        log.fine("URL=" + url.toString());
-
-                     MainDeployerImpl deployer = (MainDeployerImpl)mainDeployer.clone();
-                     UnitDeployer unitDeployer = new UnitDeployer(url, deployer, kernelClassLoader, unitLatch);
-                     unitDeployers.add(unitDeployer);
-                  
-                     getExecutorService().execute(unitDeployer);
-                  }
-                  catch (Throwable deployThrowable)
-                  {
-                     log.log(Level.SEVERE, deployThrowable.getMessage(), deployThrowable);
-                  }
+                  descriptorUrls.add(url);
+               }
+               else
+               {
+                  List<URL> l = sm.get(index);
+
+                  if (l == null)
+                     l = new ArrayList<URL>(1);
+
+                  l.add(url);
+                  sm.put(index, l);
                }
 
-               unitLatch.await();
+               List<URL> l = ranks.get(index);
+
+               if (l == null)
+                  l = new ArrayList<URL>(1);
+
+               l.add(url);
+               ranks.put(index, l);
 
-               Iterator<UnitDeployer> it = unitDeployers.iterator();
-               while (it.hasNext())
+               units++;
+            }
+
+            // The shutdown order follows the order of the directories and order indexes
+            for (List<URL> l : ranks.values())
+            {
+               for (URL url : l)
                {
-                  UnitDeployer deployer = it.next();
-                  if (deployer.getThrowable() != null)
-                  {
-                     Throwable t = deployer.getThrowable();
-                     log.log(Level.SEVERE, t.getMessage(), t);
-                  }
+                  deploymentRanks.put(url.toExternalForm(), Integer.valueOf(nextDeploymentRank));
                }
+
+               nextDeploymentRank++;
             }
-            catch (Throwable t)
+
+            for (List<URL> l : sm.values())
             {
-               log.log(Level.SEVERE, t.getMessage(), t);
+               UnitGroup group = new UnitGroup(l, 1);
+
+               if (groups.size() > 0)
+                  groups.get(groups.size() - 1).setNext(group);
+
+               groups.add(group);
             }
          }
       }
-   }
 
-   /**
-    * Shutdown
-    * @exception Throwable Thrown if an error occurs
-    */
-   public void shutdown() throws Throwable
-   {
-      Throwable throwable = null;
+      if (units == 0)
+         return;
 
-      List<EventListener> els = kernelConfiguration.getEventListeners();
-      // STOPPING
-      if (els != null && els.size() > 0)
+      try
       {
-         for (EventListener el : els)
+         final CountDownLatch unitLatch = new CountDownLatch(units);
+         List<UnitGroup> allGroups = new ArrayList<UnitGroup>(groups.size() + 1);
+
+         UnitGroup descriptorGroup = new UnitGroup(descriptorUrls, 1);
+         allGroups.add(descriptorGroup);
+         allGroups.addAll(groups);
+
+         for (UnitGroup group : allGroups)
          {
-            el.event(this, Event.STOPPING);
+            group.createUnitDeployers(unitLatch);
          }
-      }
 
-      SecurityActions.setThreadContextClassLoader(kernelClassLoader);
+         Set<String> deployerBeans = parseDescriptors(descriptorUrls);
 
-      // Stop hot deployer
-      if (hotDeployer != null)
-      {
-         hotDeployer.stop();
-      }
+         if (groups.size() > 0)
+         {
+            // The first group waits for the deployer beans, or for all the descriptors
+            UnitGroup first = groups.get(0);
+            first.setGate(deployerBeans.size() + 1);
+            descriptorGroup.setNext(first);
 
-      // Stop the remote connector
-      if (remote != null)
-      {
-         // Remove Communicator bean
-         setBeanStatus("Communicator", ServiceLifecycle.STOPPING);
-         removeBean("Communicator", false);
+            for (String bean : deployerBeans)
+            {
+               getBeanEntry(bean).addListener(first);
+            }
 
-         remote.stop();
-      }
+            first.resolved();
+         }
 
-      if (jmxRemote != null)
+         descriptorGroup.resolved();
+
+         dependencyScheduler.await(unitLatch);
+
+         for (UnitGroup group : allGroups)
+         {
+            group.logThrowables();
+         }
+      }
+      catch (Throwable t)
       {
-         jmxRemote.stop();
+         log.log(Level.SEVERE, t.getMessage(), t);
       }
+   }
 
-      // PreUndeploy
-      preUndeploy(false);      
+   /**
+    * Plan the descriptors of the directories; the descriptors are parsed by the
+    * kernel thread pool, such that the parsing overlaps the setup of the kernel
+    * class loader and netboot
+    * @param directories The directories
+    */
+   private void planDescriptors(File... directories)
+   {
+      List<URL> urls = new ArrayList<URL>(1);
 
-      // Shutdown all deployments
-      if (deployments.size() > 0)
+      for (File directory : directories)
       {
-         List<Deployment> shutdownDeployments = new LinkedList<Deployment>(deployments);
-         Collections.reverse(shutdownDeployments);
+         File[] files = directory != null && directory.isDirectory() ? directory.listFiles() : null;
 
-         for (Deployment deployment : shutdownDeployments)
+         if (files != null)
          {
-            if (hotDeployer != null)
-               hotDeployer.unregister(deployment.getURL());
-
-            try
-            {
-               shutdownDeployment(deployment);
-            }
-            catch (Throwable t)
+            for (File f : files)
             {
-               if (throwable == null)
-                  throwable = t;
+               if (f.getName().endsWith(".xml"))
+               {
+                  try
+                  {
+                     urls.add(f.toURI().toURL());
+                  }
+                  catch (IOException ioe)
+                  {
+                     // The descriptor is parsed by its deployment
+                  }
+               }
             }
          }
       }
 
-      // PostUndeploy
-      // We are removing all deployments including all DeployerPhases beans => no postUndeploy call
+      if (urls.size() == 0)
+         return;
 
-      // Remove kernel bean
-      setBeanStatus("Kernel", ServiceLifecycle.STOPPING);
-      removeBean("Kernel", false);
+      final CountDownLatch latch = new CountDownLatch(urls.size());
+      descriptorPlan = latch;
 
-      // Check for additional beans
-      if (beans.size() > 0)
+      for (final URL url : urls)
       {
-         List<String> beanNames = new LinkedList<String>(beans.keySet());
-         for (String beanName : beanNames)
+         Runnable task = new Runnable()
          {
-            removeBean(beanName);
-         }
-      }
-
-      // Unregister MBeans
-      if (mbeanServer != null)
-      {
-         ObjectName mainDeployerObjectName = new ObjectName(kernelConfiguration.getName() + ":name=MainDeployer");
-         if (mbeanServer.isRegistered(mainDeployerObjectName))
-            mbeanServer.unregisterMBean(mainDeployerObjectName);
+            public void run()
+            {
+               String stamp = getStamp(url);
+               try
+               {
+                  com.github.fungal.deployment.Deployment deployment = parseDescriptor(url);
 
-         ObjectName hotDeployerObjectName = new ObjectName(kernelConfiguration.getName() + ":name=HotDeployer");
-         if (mbeanServer.isRegistered(hotDeployerObjectName))
-            mbeanServer.unregisterMBean(hotDeployerObjectName);
+                  if (deployment != null)
+                     putDescriptor(url, deployment, stamp);
+               }
+               catch (Throwable t)
+               {
+                  descriptorErrors.put(url.toExternalForm(), t);
 
-         ObjectName kernelObjectName = new ObjectName(kernelConfiguration.getName() + ":name=Kernel");
-         if (mbeanServer.isRegistered(kernelObjectName))
-            mbeanServer.unregisterMBean(kernelObjectName);
+                  if (stamp != null)
+                     descriptorStamps.put(url.toExternalForm(), stamp);
+               }
+               finally
+               {
+                  latch.countDown();
+               }
+            }
+         };
 
-         // Release MBeanServer
-         if (!kernelConfiguration.isUsePlatformMBeanServer())
-            MBeanServerFactory.releaseMBeanServer(mbeanServer);
+         if (kernelConfiguration.isParallelDeploy())
+         {
+            dependencyScheduler.execute(task);
+         }
+         else
+         {
+            task.run();
+         }
       }
+   }
 
-      // Shutdown thread pool
-      if (getExecutorService() != null)
-         getExecutorService().shutdown();
+   /**
+    * Wait for the descriptors of the startup plan, and report the descriptors
+    * which couldn't be parsed together; the descriptors which were changed while the
+    * kernel was set up are parsed again by their deployment
+    * @exception InterruptedException Thrown if the thread is interrupted
+    * @exception MalformedURLException Thrown if a descriptor URL is invalid
+    */
+   private void awaitDescriptors() throws InterruptedException, MalformedURLException
+   {
+      if (descriptorPlan == null)
+         return;
 
-      // Cleanup temporary environment
-      if (temporaryEnvironment)
+      dependencyScheduler.await(descriptorPlan);
+      descriptorPlan = null;
+
+      for (String key : new ArrayList<String>(descriptorStamps.keySet()))
       {
-         File tmp = new File(SecurityActions.getSystemProperty("java.io.tmpdir"));
-         File root = new File(tmp, kernelConfiguration.getName());
+         URL url = new URL(key);
 
-         recursiveDelete(root);
+         if (isDescriptorChanged(url))
+            removeDescriptor(url);
       }
 
-      SecurityActions.setSystemProperty(kernelConfiguration.getName() + ".home", "");
-      SecurityActions.setSystemProperty(kernelConfiguration.getName() + ".bindaddress", "");
+      // The dependency cycles which span descriptors are found before any of them is deployed
+      Map<String, Set<String>> planned = new HashMap<String, Set<String>>(descriptors.size());
 
-      // STOPPED
-      if (els != null && els.size() > 0)
+      for (com.github.fungal.deployment.Deployment deployment : descriptors.values())
       {
-         for (EventListener el : els)
+         for (Bean bt : deployment.getBean())
          {
-            el.event(this, Event.STOPPED);
+            planned.put(bt.getName(), BeanDeployer.getDeclaredDependencies(bt));
          }
       }
 
-      // Log shutdown
-      if (log != null)
+      plannedDependencies = planned;
+
+      if (descriptorErrors.size() > 0)
       {
-         log.info(VERSION + " stopped");
+         StringBuilder sb = new StringBuilder();
+         sb.append("Unable to parse ").append(descriptorErrors.size()).append(" descriptor(s):");
+
+         for (Map.Entry<String, Throwable> entry : new TreeMap<String, Throwable>(descriptorErrors).entrySet())
+         {
+            sb.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue().getMessage());
+         }
+
+         log.severe(sb.toString());
+      }
+   }
+
+   /**
+    * Parse descriptors ahead of their deployment
+    * @param urls The URLs of the descriptors
+    * @return The names of the beans which may be deployers
+    */
+   private Set<String> parseDescriptors(List<URL> urls)
+   {
+      Set<String> result = new HashSet<String>(1);
+
+      for (URL url : urls)
+      {
+         // The error of a descriptor in the startup plan has been reported
+         if (descriptorErrors.containsKey(url.toExternalForm()) && !isDescriptorChanged(url))
+            continue;
+
+         try
+         {
+            com.github.fungal.deployment.Deployment deployment = descriptors.get(url.toExternalForm());
+
+            if (deployment == null || isDescriptorChanged(url))
+            {
+               String stamp = getStamp(url);
+
+               deployment = parseDescriptor(url);
+
+               if (deployment != null)
+                  putDescriptor(url, deployment, stamp);
+            }
+
+            if (deployment != null)
+            {
+
+               for (Bean bt : deployment.getBean())
+               {
+                  if (isDeployerBean(bt))
+                     result.add(bt.getName());
+               }
+            }
+         }
+         catch (Throwable t)
+         {
+            // The error is reported by the deployment of the descriptor
+            if (log.isLoggable(Level.FINE))
+               log.fine("Parsing " + url + ": " + t.getMessage());
+         }
+      }
+
+      return result;
+   }
+
+   /**
+    * Is a bean a deployer, or can't it be determined from its definition
+    * @param bt The bean
+    * @return True if the bean may be a deployer; otherwise false
+    */
+   private boolean isDeployerBean(Bean bt)
+   {
+      if (bt.getClazz() == null)
+         return true;
+
+      try
+      {
+         Class<?> clz = Class.forName(bt.getClazz(), false, kernelClassLoader);
+
+         return com.github.fungal.spi.deployers.Deployer.class.isAssignableFrom(clz) ||
+            DeployerPhases.class.isAssignableFrom(clz);
+      }
+      catch (Throwable t)
+      {
+         return true;
+      }
+   }
+
+   /**
+    * Parse a descriptor; the descriptor cache is used if available
+    * @param url The URL of the descriptor
+    * @return The descriptor
+    * @exception IOException Thrown if the descriptor can't be read
+    */
+   com.github.fungal.deployment.Deployment parseDescriptor(URL url) throws IOException
+   {
+      return parseDescriptor(url, null);
+   }
+
+   /**
+    * Parse a descriptor, and hand each bean to a listener as soon as it has been read;
+    * the descriptor cache is used if available
+    * @param url The URL of the descriptor
+    * @param listener The listener; <code>null</code> if none
+    * @return The descriptor
+    * @exception IOException Thrown if the descriptor can't be read
+    */
+   com.github.fungal.deployment.Deployment parseDescriptor(URL url,
+                                                          com.github.fungal.deployment.Unmarshaller.Listener listener)
+      throws IOException
+   {
+      if (deploymentCache != null)
+         return deploymentCache.unmarshal(url, listener);
+
+      return new com.github.fungal.deployment.Unmarshaller().unmarshal(url, listener);
+   }
+
+   /**
+    * Get a descriptor which was parsed ahead of its deployment
+    * @param url The URL of the descriptor
+    * @return The descriptor; <code>null</code> if it hasn't been parsed, or if it has
+    *         been changed since it was parsed
+    */
+   com.github.fungal.deployment.Deployment removeDescriptor(URL url)
+   {
+      boolean changed = isDescriptorChanged(url);
+      com.github.fungal.deployment.Deployment deployment = descriptors.remove(url.toExternalForm());
+
+      descriptorErrors.remove(url.toExternalForm());
+      descriptorStamps.remove(url.toExternalForm());
+
+      if (deployment != null && changed)
+      {
+         if (log.isLoggable(Level.FINE))
+            log.fine("Descriptor changed since it was parsed: " + url);
+
+         return null;
+      }
+
+      return deployment;
+   }
+
+   /**
+    * Add a descriptor which was parsed ahead of its deployment
+    * @param url The URL of the descriptor
+    * @param deployment The descriptor
+    * @param stamp The stamp of the descriptor file before it was parsed; <code>null</code> if none
+    */
+   private void putDescriptor(URL url, com.github.fungal.deployment.Deployment deployment, String stamp)
+   {
+      descriptors.put(url.toExternalForm(), deployment);
+      descriptorErrors.remove(url.toExternalForm());
+
+      if (stamp != null)
+      {
+         descriptorStamps.put(url.toExternalForm(), stamp);
+      }
+      else
+      {
+         descriptorStamps.remove(url.toExternalForm());
+      }
+   }
+
+   /**
+    * Has a descriptor been changed since it was parsed ahead of its deployment; e.g.
+    * by netboot or by a deployer phase during startup
+    * @param url The URL of the descriptor
+    * @return True if changed; otherwise false
+    */
+   private boolean isDescriptorChanged(URL url)
+   {
+      String stamp = descriptorStamps.get(url.toExternalForm());
+
+      if (stamp == null)
+         return false;
+
+      return !stamp.equals(getStamp(url));
+   }
+
+   /**
+    * Get the stamp of a descriptor file; its last modification time and length
+    * @param url The URL of the descriptor
+    * @return The stamp; <code>null</code> if the descriptor isn't a file
+    */
+   private static String getStamp(URL url)
+   {
+      if (!"file".equals(url.getProtocol()))
+         return null;
+
+      try
+      {
+         File f = new File(url.toURI());
+
+         return f.lastModified() + "/" + f.length();
+      }
+      catch (Exception e)
+      {
+         return null;
+      }
+   }
+
+   /**
+    * Shutdown
+    * @exception Throwable Thrown if an error occurs
+    */
+   public void shutdown() throws Throwable
+   {
+      Throwable throwable = null;
+
+      List<EventListener> els = kernelConfiguration.getEventListeners();
+      // STOPPING
+      if (els != null && els.size() > 0)
+      {
+         for (EventListener el : els)
+         {
+            el.event(this, Event.STOPPING);
+         }
+      }
+
+      SecurityActions.setThreadContextClassLoader(kernelClassLoader);
+
+      // Stop hot deployer
+      if (hotDeployer != null)
+      {
+         hotDeployer.stop();
+      }
+
+      // Stop the remote connector
+      if (remote != null)
+      {
+         // Remove Communicator bean
+         setBeanStatus("Communicator", ServiceLifecycle.STOPPING);
+         removeBean("Communicator", false);
+
+         remote.stop();
+      }
+
+      if (jmxRemote != null)
+      {
+         jmxRemote.stop();
+      }
+
+      // PreUndeploy
+      preUndeploy(false);      
+
+      // Shutdown all deployments
+      if (deployments.size() > 0)
+      {
+         List<Deployment> shutdownDeployments = getShutdownOrder(new ArrayList<Deployment>(deployments));
+
+         if (hotDeployer != null)
+         {
+            for (Deployment deployment : shutdownDeployments)
+            {
+               hotDeployer.unregister(deployment.getURL());
+            }
+         }
+
+         Throwable t = shutdownDeployments(shutdownDeployments);
+         if (throwable == null)
+            throwable = t;
+      }
+
+      // PostUndeploy
+      // We are removing all deployments including all DeployerPhases beans => no postUndeploy call
+
+      // Remove kernel bean
+      setBeanStatus("Kernel", ServiceLifecycle.STOPPING);
+      removeBean("Kernel", false);
+
+      // Check for additional beans
+      List<String> beanNames = new LinkedList<String>();
+      for (Map.Entry<String, BeanEntry> entry : beanEntries.entrySet())
+      {
+         if (entry.getValue().getBean() != null)
+            beanNames.add(entry.getKey());
+      }
+
+      for (String beanName : beanNames)
+      {
+         removeBean(beanName);
+      }
+
+      // Unregister MBeans
+      if (mbeanServer != null)
+      {
+         ObjectName mainDeployerObjectName = new ObjectName(kernelConfiguration.getName() + ":name=MainDeployer");
+         if (mbeanServer.isRegistered(mainDeployerObjectName))
+            mbeanServer.unregisterMBean(mainDeployerObjectName);
+
+         ObjectName hotDeployerObjectName = new ObjectName(kernelConfiguration.getName() + ":name=HotDeployer");
+         if (mbeanServer.isRegistered(hotDeployerObjectName))
+            mbeanServer.unregisterMBean(hotDeployerObjectName);
+
+         ObjectName kernelObjectName = new ObjectName(kernelConfiguration.getName() + ":name=Kernel");
+         if (mbeanServer.isRegistered(kernelObjectName))
+            mbeanServer.unregisterMBean(kernelObjectName);
+
+         // Release MBeanServer
+         if (!kernelConfiguration.isUsePlatformMBeanServer())
+            MBeanServerFactory.releaseMBeanServer(mbeanServer);
+      }
+
+      // Shutdown thread pool
+      if (getExecutorService() != null)
+         getExecutorService().shutdown();
+
+      // Cleanup temporary environment
+      if (temporaryEnvironment)
+      {
+         File tmp = new File(SecurityActions.getSystemProperty("java.io.tmpdir"));
+         File root = new File(tmp, kernelConfiguration.getName());
+
+         recursiveDelete(root);
+      }
+
+      SecurityActions.setSystemProperty(kernelConfiguration.getName() + ".home", "");
+      SecurityActions.setSystemProperty(kernelConfiguration.getName() + ".bindaddress", "");
+
+      // STOPPED
+      if (els != null && els.size() > 0)
+      {
+         for (EventListener el : els)
+         {
+            el.event(this, Event.STOPPED);
+         }
+      }
+
+      // Log shutdown
+      if (log != null)
+      {
+         log.info(VERSION + " stopped");
       }
       else
       {
          System.out.println(VERSION + " stopped");
       }
 
-      // Shutdown kernel class loader
-      if (kernelClassLoader != null)
+      // Shutdown kernel class loader
+      if (kernelClassLoader != null)
+      {
+         try
+         {
+            kernelClassLoader.shutdown();
+         }
+         catch (IOException ioe)
+         {
+            // Swallow
+         }
+      }
+
+      // Reset to the old class loader
+      SecurityActions.setThreadContextClassLoader(oldClassLoader);
+
+      initialize();
+
+      if (throwable != null)
+         throw throwable;
+   }
+
+   /**
+    * Shutdown deployments in order. Consecutive bean deployments are shutdown together,
+    * such that their beans are stopped in dependency order across the deployments
+    * @param shutdownDeployments The deployments in shutdown order
+    * @return The first error; <code>null</code> if none
+    */
+   Throwable shutdownDeployments(List<Deployment> shutdownDeployments)
+   {
+      Throwable throwable = null;
+      int index = 0;
+
+      while (index < shutdownDeployments.size())
+      {
+         Deployment deployment = shutdownDeployments.get(index);
+
+         if (deployment instanceof BeanDeploymentImpl)
+         {
+            List<Deployment> group = new ArrayList<Deployment>(1);
+            List<String> beanNames = new ArrayList<String>();
+
+            while (index < shutdownDeployments.size() &&
+                   shutdownDeployments.get(index) instanceof BeanDeploymentImpl)
+            {
+               group.add(0, shutdownDeployments.get(index));
+               index++;
+            }
+
+            for (Deployment d : group)
+            {
+               beanNames.addAll(((BeanDeploymentImpl)d).getBeans());
+            }
+
+            try
+            {
+               shutdownScheduler.shutdown(beanNames);
+            }
+            catch (Throwable t)
+            {
+               if (throwable == null)
+                  throwable = t;
+            }
+
+            deployments.removeAll(group);
+         }
+         else
+         {
+            try
+            {
+               shutdownDeployment(deployment);
+            }
+            catch (Throwable t)
+            {
+               if (throwable == null)
+                  throwable = t;
+            }
+
+            index++;
+         }
+      }
+
+      return throwable;
+   }
+
+   /**
+    * Get the deployments which depend on a set of deployments, directly or through other
+    * deployments; the dependencies are the dependencies between their beans
+    * @param roots The deployments
+    * @return The dependant deployments in the order they were registered; excluding the roots
+    */
+   List<Deployment> getDependantDeployments(Collection<Deployment> roots)
+   {
+      Set<Deployment> visited = new HashSet<Deployment>(roots);
+      LinkedList<Deployment> queue = new LinkedList<Deployment>(roots);
+
+      while (queue.size() > 0)
+      {
+         Deployment deployment = queue.removeFirst();
+
+         if (deployment instanceof BeanDeployment)
+         {
+            for (String bean : ((BeanDeployment)deployment).getBeans())
+            {
+               for (String dependant : getBeanDependants(bean))
+               {
+                  BeanEntry entry = beanEntries.get(dependant);
+
+                  if (entry != null && entry.getDeployment() != null && visited.add(entry.getDeployment()))
+                     queue.add(entry.getDeployment());
+               }
+            }
+         }
+      }
+
+      List<Deployment> result = new ArrayList<Deployment>(visited.size() - roots.size());
+
+      synchronized (deployments)
+      {
+         for (Deployment deployment : deployments)
+         {
+            if (visited.contains(deployment) && !roots.contains(deployment))
+               result.add(deployment);
+         }
+      }
+
+      return result;
+   }
+
+   /**
+    * Get the order in which deployments are shutdown; the reverse order of the deployments,
+    * where a deployment is shutdown after the deployments with beans that depend on its beans
+    * @param deployments The deployments in the order they were registered
+    * @return The deployments in shutdown order
+    */
+   List<Deployment> getShutdownOrder(List<Deployment> deployments)
+   {
+      Collections.reverse(deployments);
+
+      int size = deployments.size();
+      Map<String, Integer> owners = new HashMap<String, Integer>();
+
+      for (int i = 0; i < size; i++)
+      {
+         if (deployments.get(i) instanceof BeanDeployment)
+         {
+            for (String bean : ((BeanDeployment)deployments.get(i)).getBeans())
+            {
+               owners.put(bean, Integer.valueOf(i));
+            }
+         }
+      }
+
+      // The deployments that have to be shutdown before each deployment
+      List<Set<Integer>> before = new ArrayList<Set<Integer>>(size);
+      // The deployments that wait for each deployment
+      List<List<Integer>> waiting = new ArrayList<List<Integer>>(size);
+
+      for (int i = 0; i < size; i++)
+      {
+         before.add(new HashSet<Integer>(1));
+         waiting.add(new ArrayList<Integer>(1));
+      }
+
+      for (int i = 0; i < size; i++)
+      {
+         if (deployments.get(i) instanceof BeanDeployment)
+         {
+            for (String bean : ((BeanDeployment)deployments.get(i)).getBeans())
+            {
+               for (String dependant : getBeanDependants(bean))
+               {
+                  Integer owner = owners.get(dependant);
+
+                  if (owner != null && owner.intValue() != i && before.get(i).add(owner))
+                     waiting.get(owner.intValue()).add(Integer.valueOf(i));
+               }
+            }
+         }
+      }
+
+      List<Deployment> result = new ArrayList<Deployment>(size);
+      boolean[] done = new boolean[size];
+      boolean progress = true;
+
+      while (result.size() < size)
       {
-         try
+         int next = -1;
+
+         for (int i = 0; next == -1 && i < size; i++)
          {
-            kernelClassLoader.shutdown();
+            // A cycle between deployments is broken in the reverse order
+            if (!done[i] && (before.get(i).size() == 0 || !progress))
+               next = i;
          }
-         catch (IOException ioe)
+
+         if (next == -1)
          {
-            // Swallow
+            progress = false;
+            continue;
          }
-      }
 
-      // Reset to the old class loader
-      SecurityActions.setThreadContextClassLoader(oldClassLoader);
+         progress = true;
+         done[next] = true;
+         result.add(deployments.get(next));
 
-      initialize();
+         for (Integer w : waiting.get(next))
+         {
+            before.get(w.intValue()).remove(Integer.valueOf(next));
+         }
+      }
 
-      if (throwable != null)
-         throw throwable;
+      return result;
    }
 
    /**
@@ -985,13 +1654,11 @@ public class KernelImpl implements Kernel, KernelImplMBean
       Throwable throwable = null;
       try
       {
-         Method stopMethod = SecurityActions.getMethod(deployment.getClass(), "stop", (Class[])null);
-         SecurityActions.setAccessible(stopMethod);
-         stopMethod.invoke(deployment, (Object[])null);
-      }
-      catch (NoSuchMethodException nsme)
-      {
-         // No stop method
+         Method stopMethod = ReflectionCache.getMethod(deployment.getClass(), "stop");
+
+         // No stop method if null
+         if (stopMethod != null)
+            stopMethod.invoke(deployment, (Object[])null);
       }
       catch (InvocationTargetException ite)
       {
@@ -1000,13 +1667,11 @@ public class KernelImpl implements Kernel, KernelImplMBean
 
       try
       {
-         Method destroyMethod = SecurityActions.getMethod(deployment.getClass(), "destroy", (Class[])null);
-         SecurityActions.setAccessible(destroyMethod);
-         destroyMethod.invoke(deployment, (Object[])null);
-      }
-      catch (NoSuchMethodException nsme)
-      {
-         // No destroy method
+         Method destroyMethod = ReflectionCache.getMethod(deployment.getClass(), "destroy");
+
+         // No destroy method if null
+         if (destroyMethod != null)
+            destroyMethod.invoke(deployment, (Object[])null);
       }
       catch (InvocationTargetException ite)
       {
@@ -1018,10 +1683,29 @@ public class KernelImpl implements Kernel, KernelImplMBean
 
       deployments.remove(deployment);
 
+      releaseClassLoader(deployment.getClassLoader());
+
       if (throwable != null)
          throw throwable;
    }
 
+   /**
+    * Release the references the kernel holds to the class loader of an undeployed deployment
+    * @param cl The class loader
+    */
+   private void releaseClassLoader(ClassLoader cl)
+   {
+      // The class loaders of the kernel are shared by the deployments
+      for (ClassLoader kcl = kernelClassLoader; kcl != null; kcl = kcl.getParent())
+      {
+         if (kcl == cl)
+            return;
+      }
+
+      if (cl != null)
+         ConverterRegistry.unregister(cl);
+   }
+
    /**
     * Get the kernel class loader
     * @return The class loader
@@ -1034,13 +1718,92 @@ public class KernelImpl implements Kernel, KernelImplMBean
       return kernelClassLoader;
    }
 
+   /**
+    * Create the executor service
+    * @param tg The thread group
+    * @return The executor service
+    */
+   private ExecutorService createExecutorService(ThreadGroup tg)
+   {
+      if (kernelConfiguration.isVirtualThreads())
+      {
+         ExecutorService es = FungalThreadFactory.newVirtualThreadExecutor();
+
+         if (es != null)
+            return es;
+      }
+
+      FungalThreadFactory tf = new FungalThreadFactory(tg);
+
+      int coreSize = kernelConfiguration.getExecutorCorePoolSize();
+      int maxSize = kernelConfiguration.getExecutorMaxPoolSize();
+
+      if (coreSize < 0)
+         throw new IllegalArgumentException("Executor core pool size is negative");
+
+      if (kernelConfiguration.isExecutorWorkStealing())
+      {
+         int parallelism = Math.min(Math.max(coreSize, 1), Math.max(maxSize, 1));
+
+         return new ForkJoinPool(parallelism, tf, null, true);
+      }
+
+      if (maxSize < 1 || maxSize < coreSize)
+         throw new IllegalArgumentException("Executor max pool size is invalid: " + maxSize);
+
+      int queueSize = kernelConfiguration.getExecutorQueueSize();
+      BlockingQueue<Runnable> threadPoolQueue = null;
+
+      switch (kernelConfiguration.getExecutorQueue())
+      {
+         case KernelConfiguration.QUEUE_SYNCHRONOUS:
+            threadPoolQueue = new SynchronousQueue<Runnable>(true);
+            break;
+         case KernelConfiguration.QUEUE_LINKED:
+            threadPoolQueue = new LinkedBlockingQueue<Runnable>(queueSize);
+            break;
+         case KernelConfiguration.QUEUE_ARRAY:
+            threadPoolQueue = new ArrayBlockingQueue<Runnable>(queueSize, true);
+            break;
+         default:
+            throw new IllegalArgumentException("Unknown executor queue: " + kernelConfiguration.getExecutorQueue());
+      }
+
+      RejectedExecutionHandler reh = null;
+
+      switch (kernelConfiguration.getExecutorRejectionPolicy())
+      {
+         case KernelConfiguration.REJECTION_ABORT:
+            reh = new ThreadPoolExecutor.AbortPolicy();
+            break;
+         case KernelConfiguration.REJECTION_CALLER_RUNS:
+            reh = new ThreadPoolExecutor.CallerRunsPolicy();
+            break;
+         default:
+            throw new IllegalArgumentException("Unknown executor rejection policy: " +
+                                               kernelConfiguration.getExecutorRejectionPolicy());
+      }
+
+      ThreadPoolExecutor tpe = new ThreadPoolExecutor(coreSize, maxSize,
+                                                      kernelConfiguration.getExecutorKeepAlive(), TimeUnit.SECONDS,
+                                                      threadPoolQueue,
+                                                      tf, reh);
+
+      if (kernelConfiguration.getExecutorKeepAlive() > 0)
+         tpe.allowCoreThreadTimeOut(true);
+
+      tpe.prestartAllCoreThreads();
+
+      return tpe;
+   }
+
    /**
     * Set the executor service
     * @param v The value
     */
-   private void setExecutorService(ThreadPoolExecutor v)
+   private void setExecutorService(ExecutorService v)
    {
-      this.threadPoolExecutor = v;
+      this.executorService = v;
    }
 
    /** 
@@ -1049,10 +1812,46 @@ public class KernelImpl implements Kernel, KernelImplMBean
     */
    public ExecutorService getExecutorService()
    {
-      if (threadPoolExecutor == null)
+      if (executorService == null)
          throw new IllegalStateException("Thread pool is null");
 
-      return threadPoolExecutor;
+      return executorService;
+   }
+
+   /**
+    * Get the install history
+    * @return The history
+    */
+   InstallHistory getInstallHistory()
+   {
+      return installHistory;
+   }
+
+   /**
+    * Get the profiler
+    * @return The profiler
+    */
+   Profiler getProfiler()
+   {
+      return profiler;
+   }
+
+   /**
+    * Get the dependency scheduler
+    * @return The scheduler
+    */
+   DependencyScheduler getDependencyScheduler()
+   {
+      return dependencyScheduler;
+   }
+
+   /**
+    * Get the shutdown scheduler
+    * @return The scheduler
+    */
+   ShutdownScheduler getShutdownScheduler()
+   {
+      return shutdownScheduler;
    }
 
    /**
@@ -1071,7 +1870,12 @@ public class KernelImpl implements Kernel, KernelImplMBean
     */
    ServiceLifecycle getBeanStatus(String name)
    {
-      return beanStatus.get(name);
+      BeanEntry entry = beanEntries.get(name);
+
+      if (entry == null)
+         return null;
+
+      return entry.getStatus();
    }
 
    /**
@@ -1081,34 +1885,107 @@ public class KernelImpl implements Kernel, KernelImplMBean
     */
    void setBeanStatus(String name, ServiceLifecycle status)
    {
-      beanStatus.put(name, status);
-
       if (trace)
          log.log(Level.FINER, "Bean: " + name + ", Status: " + status);
 
+      beanStatusChanges.incrementAndGet();
+
       if (status == ServiceLifecycle.NOT_STARTED)
       {
-         List<CountDownLatch> l = beanLatches.get(name);
-         if (l == null)
-         {
-            beanLatches.put(name, Collections.synchronizedList(new ArrayList<CountDownLatch>(1)));
-         }
-      }
-      else if (status == ServiceLifecycle.STARTED || status == ServiceLifecycle.ERROR)
-      {
-         synchronized (beanLatches)
+         // A new registration replaces a failed one, but keeps the listeners
+         // that are waiting for a bean which wasn't registered yet
+         BeanEntry entry = new BeanEntry(status);
+         BeanEntry existing = beanEntries.putIfAbsent(name, entry);
+
+         if (existing != null)
          {
-            List<CountDownLatch> l = beanLatches.get(name);
-            if (l != null)
+            if (existing.getStatus() == null)
             {
-               for (CountDownLatch cdl : l)
+               existing.setStatus(status);
+            }
+            else if (existing.getStatus() == ServiceLifecycle.ERROR)
+            {
+               if (existing.getDependants() != null)
                {
-                  if (cdl.getCount() > 0)
-                     cdl.countDown();
+                  for (String dependant : existing.getDependants())
+                  {
+                     entry.addDependant(dependant);
+                  }
                }
+
+               beanEntries.replace(name, existing, entry);
             }
          }
       }
+      else
+      {
+         getBeanEntry(name).setStatus(status);
+      }
+   }
+
+   /**
+    * Get the number of bean status changes, which tells if the beans make progress
+    * @return The value
+    */
+   long getBeanStatusChanges()
+   {
+      return beanStatusChanges.get();
+   }
+
+   /**
+    * Get a bean without creating a lazy bean
+    * @param name The name of the bean
+    * @return The bean; <code>null</code> if the bean doesn't exist, or hasn't been created
+    */
+   Object findBean(String name)
+   {
+      BeanEntry entry = beanEntries.get(name);
+
+      return entry != null ? entry.getBean() : null;
+   }
+
+   /**
+    * Is a bean installed; a lazy bean is installed before it has been created
+    * @param name The name of the bean
+    * @return True if installed; otherwise false
+    */
+   boolean isBeanInstalled(String name)
+   {
+      BeanEntry entry = beanEntries.get(name);
+
+      return entry != null && (entry.getBean() != null || entry.getLazy() != null);
+   }
+
+   /**
+    * Find the entry for a bean
+    * @param name The bean name
+    * @return The entry; <code>null</code> if the bean isn't known
+    */
+   BeanEntry findBeanEntry(String name)
+   {
+      return beanEntries.get(name);
+   }
+
+   /**
+    * Get the entry for a bean, and create it if it doesn't exist
+    * @param name The bean name
+    * @return The entry
+    */
+   private BeanEntry getBeanEntry(String name)
+   {
+      BeanEntry entry = beanEntries.get(name);
+
+      if (entry == null)
+      {
+         BeanEntry newEntry = new BeanEntry(null);
+         entry = beanEntries.putIfAbsent(name, newEntry);
+         if (entry == null)
+         {
+            entry = newEntry;
+         }
+      }
+
+      return entry;
    }
 
    /**
@@ -1129,9 +2006,11 @@ public class KernelImpl implements Kernel, KernelImplMBean
     */
    private void addBean(String name, Object bean, boolean mgt)
    {
-      if (!beans.containsKey(name))
+      if (getBeanEntry(name).setBean(bean))
       {
-         beans.put(name, bean);
+         addBeanTypes(name, bean.getClass());
+
+         newBeans.offer(name);
 
          if (mgt && kernelConfiguration.isManagement() && kernelConfiguration.isBeanManagement())
          {
@@ -1149,7 +2028,65 @@ public class KernelImpl implements Kernel, KernelImplMBean
       else
       {
          log.log(Level.SEVERE, "Bean [" + name + "] already exists (Existing=" + 
-                 beans.get(name) + ", New=" + bean + ")");
+                 getBean(name) + ", New=" + bean + ")");
+      }
+   }
+
+   /**
+    * Add the types of a bean; the types of a lazy bean are added before it has been
+    * created, such that a lookup by one of its types creates it
+    * @param name The name of the bean
+    * @param clz The class of the bean
+    */
+   void addBeanTypes(String name, Class<?> clz)
+   {
+      synchronized (beanTypes)
+      {
+         for (Class<?> type : ReflectionCache.getTypes(clz))
+         {
+            Set<String> names = beanTypes.get(type);
+            if (names == null)
+            {
+               names = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(1));
+               beanTypes.put(type, names);
+            }
+
+            names.add(name);
+         }
+      }
+   }
+
+   /**
+    * Remove the name of a bean from the bean types; a type without any beans is removed,
+    * such that the index doesn't keep the class loader of an undeployed bean
+    * @param name The name of the bean
+    * @param types The types; <code>null</code> for all types
+    */
+   private void removeBeanTypes(String name, Set<Class<?>> types)
+   {
+      synchronized (beanTypes)
+      {
+         if (types != null)
+         {
+            for (Class<?> type : types)
+            {
+               Set<String> names = beanTypes.get(type);
+
+               if (names != null && names.remove(name) && names.size() == 0)
+                  beanTypes.remove(type);
+            }
+         }
+         else
+         {
+            Iterator<Set<String>> it = beanTypes.values().iterator();
+            while (it.hasNext())
+            {
+               Set<String> names = it.next();
+
+               if (names.remove(name) && names.size() == 0)
+                  it.remove();
+            }
+         }
       }
    }
 
@@ -1172,52 +2109,84 @@ public class KernelImpl implements Kernel, KernelImplMBean
       if (trace)
          log.log(Level.FINER, "Removing bean: " + name);
 
-      if (uncallbacks.size() > 0)
+      BeanEntry entry = beanEntries.get(name);
+      Object bean = entry != null ? entry.getBean() : null;
+
+      if (bean != null)
       {
-         Object bean = beans.get(name);
+         Set<Class<?>> types = ReflectionCache.getTypes(bean.getClass());
 
-         if (bean != null)
+         if (uncallbacks.size() > 0 && entry.hasCallbacks())
          {
-            if (callbackBeans.containsKey(bean))
+            for (Class<?> type : types)
             {
-               Iterator<Map.Entry<Class<?>, List<Callback>>> cit = uncallbacks.entrySet().iterator();
-               while (cit.hasNext())
-               {
-                  Map.Entry<Class<?>, List<Callback>> entry = cit.next();
+               List<Callback> callbacks = uncallbacks.get(type);
 
-                  Class<?> type = entry.getKey();
-                  List<Callback> callbacks = entry.getValue();
-            
-                  if (type.isInstance(bean))
+               if (callbacks != null)
+               {
+                  for (Callback cb : callbacks.toArray(new Callback[callbacks.size()]))
                   {
-                     for (Callback cb : callbacks)
+                     try
                      {
-                        try
-                        {
-                           Method m = cb.getMethod();
-                           Object instance = cb.getInstance();
-
-                           SecurityActions.setAccessible(m);
-                           m.invoke(instance, new Object[] {bean});
-                        }
-                        catch (Throwable t)
-                        {
-                           if (log.isLoggable(Level.FINE))
-                              log.fine(cb.toString());
-                        }
+                        Method m = cb.getMethod();
+                        Object instance = cb.getInstance();
+
+                        SecurityActions.setAccessible(m);
+                        m.invoke(instance, new Object[] {bean});
+                     }
+                     catch (Throwable t)
+                     {
+                        if (log.isLoggable(Level.FINE))
+                           log.fine(cb.toString());
                      }
                   }
                }
-
-               callbackBeans.remove(bean);
             }
          }
+
+         removeBeanTypes(name, types);
+      }
+      else
+      {
+         // A lazy bean which hasn't been created
+         removeBeanTypes(name, null);
       }
 
       deployerPhasesBeans.remove(name);
-      beans.remove(name);
-      beanStatus.remove(name);
-      beanLatches.remove(name);
+
+      if (entry != null)
+      {
+         // The bean no longer depends on its dependencies
+         Set<String> dependencies = entry.getDependencies();
+         if (dependencies != null)
+         {
+            for (String dependency : dependencies)
+            {
+               BeanEntry dependencyEntry = beanEntries.get(dependency);
+
+               if (dependencyEntry != null)
+                  dependencyEntry.removeDependant(name);
+            }
+         }
+
+         // Beans which still depend on the bean keep their edges, such that they
+         // are known once the bean is installed again
+         if (entry.hasDependants())
+         {
+            BeanEntry newEntry = new BeanEntry(null);
+            for (String dependant : entry.getDependants())
+            {
+               newEntry.addDependant(dependant);
+            }
+
+            beanEntries.replace(name, entry, newEntry);
+         }
+         else
+         {
+            beanEntries.remove(name, entry);
+         }
+      }
+      profiler.removeBean(name);
 
       if (mgt && kernelConfiguration.isManagement() && kernelConfiguration.isBeanManagement())
       {
@@ -1234,6 +2203,98 @@ public class KernelImpl implements Kernel, KernelImplMBean
       }
    }
 
+   /**
+    * Destroy a bean; invoke its uninstall, stop and destroy methods, and remove it
+    * @param name The name of the bean
+    * @exception Throwable Thrown if an error occurs
+    */
+   void destroyBean(String name) throws Throwable
+   {
+      Throwable throwable = null;
+      ClassLoader cl = SecurityActions.getThreadContextClassLoader();
+
+      try
+      {
+         BeanEntry entry = beanEntries.get(name);
+
+         if (entry != null && entry.getLazy() != null)
+            entry.getLazy().discard();
+
+         setBeanStatus(name, ServiceLifecycle.STOPPING);
+         Object bean = entry != null ? entry.getBean() : null;
+
+         if (bean != null)
+         {
+            SecurityActions.setThreadContextClassLoader(SecurityActions.getClassLoader(bean.getClass()));
+
+            List<Method> l = entry.getUninstalls();
+            if (l != null)
+            {
+               for (Method m : l)
+               {
+                  try
+                  {
+                     SecurityActions.setAccessible(m);
+                     m.invoke(bean, (Object[])null);
+                  }
+                  catch (InvocationTargetException ite)
+                  {
+                     if (throwable == null)
+                        throwable = ite.getTargetException();
+                  }
+               }
+            }
+
+            if (entry.getStop() != null)
+            {
+               try
+               {
+                  Method stopMethod = ReflectionCache.getMethod(bean.getClass(), entry.getStop());
+
+                  // No stop method if null
+                  if (stopMethod != null)
+                     stopMethod.invoke(bean, (Object[])null);
+               }
+               catch (InvocationTargetException ite)
+               {
+                  if (throwable == null)
+                     throwable = ite.getTargetException();
+               }
+            }
+
+            if (entry.getDestroy() != null)
+            {
+               try
+               {
+                  Method destroyMethod = ReflectionCache.getMethod(bean.getClass(), entry.getDestroy());
+
+                  // No destroy method if null
+                  if (destroyMethod != null)
+                     destroyMethod.invoke(bean, (Object[])null);
+               }
+               catch (InvocationTargetException ite)
+               {
+                  if (throwable == null)
+                     throwable = ite.getTargetException();
+               }
+            }
+         }
+      }
+      catch (Throwable t)
+      {
+         if (throwable == null)
+            throwable = t;
+      }
+      finally
+      {
+         SecurityActions.setThreadContextClassLoader(cl);
+         removeBean(name);
+      }
+
+      if (throwable != null)
+         throw throwable;
+   }
+
    /**
     * Get a bean
     * @param name The bean name
@@ -1249,10 +2310,54 @@ public class KernelImpl implements Kernel, KernelImplMBean
       if (expectedType == null)
          throw new IllegalArgumentException("ExpectedType is null");
 
-      if (!beans.containsKey(name))
+      Object bean = getBean(name);
+
+      if (bean == null)
          throw new IllegalArgumentException("Bean '" + name + "' doesn't exist");
 
-      return expectedType.cast(getBean(name));
+      return expectedType.cast(bean);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public <T> Map<String, T> getBeansOfType(Class<T> type)
+   {
+      if (type == null)
+         throw new IllegalArgumentException("Type is null");
+
+      Set<String> names = beanTypes.get(type);
+
+      if (names == null || names.size() == 0)
+         return Collections.emptyMap();
+
+      Map<String, T> result = new TreeMap<String, T>();
+
+      for (String name : names)
+      {
+         Object bean = getBean(name);
+
+         if (bean != null)
+            result.put(name, type.cast(bean));
+      }
+
+      return Collections.unmodifiableMap(result);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public <T> T getBean(Class<T> type) throws Throwable
+   {
+      Map<String, T> result = getBeansOfType(type);
+
+      if (result.size() > 1)
+         throw new IllegalStateException("More than one bean of type " + type.getName() + ": " + result.keySet());
+
+      if (result.size() == 0)
+         return null;
+
+      return result.values().iterator().next();
    }
 
    /**
@@ -1272,43 +2377,27 @@ public class KernelImpl implements Kernel, KernelImplMBean
 
             beansRegistered();
 
-            List<BeanDeployer> deployers = new ArrayList<BeanDeployer>(beans.length);
-            List<String> beanNames = Collections.synchronizedList(new ArrayList<String>(beans.length));
-            Map<String, List<Method>> uninstall = 
-               new ConcurrentHashMap<String, List<Method>>(beans.length);
-            Map<String, String> stops =
-               Collections.synchronizedMap(new HashMap<String, String>(beans.length));
-            Map<String, String> destroys =
-               Collections.synchronizedMap(new HashMap<String, String>(beans.length));
-            Set<String> ignoreStops = Collections.synchronizedSet(new HashSet<String>(beans.length));
-            Set<String> ignoreDestroys = Collections.synchronizedSet(new HashSet<String>(beans.length));
-
-            final CountDownLatch beansLatch = new CountDownLatch(beans.length);
+            BeanBatch batch = new BeanBatch(this, beans.length, log);
 
             for (Bean bt : beans)
             {
-               BeanDeployer deployer = new BeanDeployer(bt, beanNames, uninstall,
-                                                        stops, destroys, ignoreStops, ignoreDestroys,
-                                                        this, beansLatch, kernelClassLoader, log);
-               deployers.add(deployer);
-
-               getExecutorService().submit(deployer);
+               batch.add(new BeanDeployer(bt, batch, this, kernelClassLoader, log));
             }
 
-            beansLatch.await();
-
-            Iterator<BeanDeployer> it = deployers.iterator();
-            while (deployException == null && it.hasNext())
+            try
             {
-               BeanDeployer deployer = it.next();
-               if (deployer.getDeployException() != null)
-                  deployException = deployer.getDeployException();
+               batch.deploy();
+            }
+            catch (DeployException de)
+            {
+               deployException = de;
             }
 
             if (deployException == null)
             {
-               BeanDeployment deployment = new BeanDeploymentImpl(null, beanNames, uninstall, 
-                                                                  stops, destroys, ignoreStops, ignoreDestroys, this);
+               BeanDeployment deployment =
+                  new BeanDeploymentImpl(null, batch.getBeans(),
+                                         BeanDeploymentImpl.getSystemProperties(Arrays.asList(beans)), this);
                registerDeployment(deployment);
                return deployment;
             }
@@ -1348,79 +2437,187 @@ public class KernelImpl implements Kernel, KernelImplMBean
     */
    public Object getBean(String name)
    {
-      return beans.get(name);
+      BeanEntry entry = beanEntries.get(name);
+
+      if (entry == null)
+         return null;
+
+      Object bean = entry.getBean();
+
+      if (bean == null)
+      {
+         BeanDeployer lazy = entry.getLazy();
+
+         if (lazy != null)
+            bean = lazy.initialize();
+      }
+
+      return bean;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public Set<String> getBeanDependencies(String name)
+   {
+      if (name == null)
+         throw new IllegalArgumentException("Name is null");
+
+      BeanEntry entry = beanEntries.get(name);
+
+      if (entry == null || entry.getDependencies() == null)
+         return Collections.emptySet();
+
+      return Collections.unmodifiableSet(entry.getDependencies());
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public Set<String> getBeanDependants(String name)
+   {
+      if (name == null)
+         throw new IllegalArgumentException("Name is null");
+
+      BeanEntry entry = beanEntries.get(name);
+
+      if (entry == null || entry.getDependants() == null)
+         return Collections.emptySet();
+
+      return Collections.unmodifiableSet(entry.getDependants());
+   }
+
+   /**
+    * Get the dependencies of all beans
+    * @return The sets of dependencies by bean name
+    */
+   private Map<String, Set<String>> getBeanDependencies()
+   {
+      Map<String, Set<String>> result = new HashMap<String, Set<String>>(beanEntries.size());
+
+      for (Map.Entry<String, BeanEntry> entry : beanEntries.entrySet())
+      {
+         Set<String> dependencies = entry.getValue().getDependencies();
+
+         if (dependencies != null)
+            result.put(entry.getKey(), dependencies);
+      }
+
+      return result;
+   }
+
+   /**
+    * Register the dependencies of a bean without waiting for them
+    * @param from The name of the bean
+    * @param to The names of the beans it depends on
+    */
+   void addBeanDependencies(String from, Set<String> to)
+   {
+      for (String dependency : to)
+      {
+         getBeanEntry(from).addDependency(dependency);
+         getBeanEntry(dependency).addDependant(from);
+      }
    }
 
    /**
-    * Get the set of dependants for a bean
+    * Get the dependencies of a bean, including the dependencies declared by the
+    * beans of the startup plan which haven't been deployed yet
     * @param name The name of the bean
-    * @return The set of dependants; <code>null</code> if there are no dependants
+    * @return The names of the beans it depends on
+    */
+   Set<String> getPlannedDependencies(String name)
+   {
+      Map<String, Set<String>> planned = plannedDependencies;
+      Set<String> result = getBeanDependencies(name);
+
+      if (planned != null && planned.containsKey(name))
+      {
+         result = new HashSet<String>(result);
+         result.addAll(planned.get(name));
+      }
+
+      return result;
+   }
+
+   /**
+    * Get the lock of the bean dependency graph; held while the beans of a deployment
+    * are checked for dependency cycles and their dependencies are registered
+    * @return The lock
     */
-   Set<String> getBeanDependants(String name)
+   Lock getDependencyGraphLock()
    {
-      return beanDependants.get(name);
+      return dependencyGraphLock;
    }
 
    /**
     * Add a bean to the dependants map
     * @param from The name of the from bean
     * @param to The name of the to bean
-    * @param cdl The count down latch that should be notified
+    * @param dependencies The dependencies that should be notified
     */
-   void addBeanDependants(String from, String to, CountDownLatch cdl)
+   void addBeanDependants(String from, String to, DependencyScheduler.Dependencies dependencies)
    {
-      // Register the 'from' -> 'to' binding
-      Set<String> dependants = beanDependants.get(from);
-      if (dependants == null)
+      // Register the 'from' -> 'to' binding in both directions
+      getBeanEntry(from).addDependency(to);
+      getBeanEntry(to).addDependant(from);
+
+      // Notify the dependencies once the 'to' has started
+      getBeanEntry(to).addListener(dependencies);
+   }
+
+   /**
+    * Register deployment
+    * @param deployment The deployment
+    */
+   void registerDeployment(Deployment deployment)
+   {
+      synchronized (deployments)
       {
-         Set<String> newDependants = new HashSet<String>(1);
-         dependants = beanDependants.putIfAbsent(from, newDependants);
-         if (dependants == null)
+         // Keep the deployments made during startup in rank order, such that
+         // they are shutdown in the reverse order
+         int rank = getDeploymentRank(deployment);
+         int index = deployments.size();
+
+         while (index > 0 && getDeploymentRank(deployments.get(index - 1)) > rank)
          {
-            dependants = newDependants;
+            index--;
          }
-      }
-      
-      dependants.add(to);
 
-      // Register the count down latch if the 'to' hasn't started
-      ServiceLifecycle slc = getBeanStatus(to);
-      boolean doCountDown = true;
+         deployments.add(index, deployment);
+      }
 
-      if (slc != ServiceLifecycle.STARTED && slc != ServiceLifecycle.ERROR)
+      if (deployment instanceof BeanDeployment)
       {
-         synchronized (beanLatches)
+         for (String bean : ((BeanDeployment)deployment).getBeans())
          {
-            slc = getBeanStatus(to);
-            if (slc != ServiceLifecycle.STARTED && slc != ServiceLifecycle.ERROR)
-            {
-               List<CountDownLatch> l = beanLatches.get(to);
-               if (l == null)
-               {
-                  l = Collections.synchronizedList(new ArrayList<CountDownLatch>(1));
-                  beanLatches.put(to, l);
-               }
-         
-               l.add(cdl);
-               doCountDown = false;
-            }
+            BeanEntry entry = beanEntries.get(bean);
+
+            if (entry != null)
+               entry.setDeployment(deployment);
          }
       }
-
-      if (doCountDown)
-         cdl.countDown();
+      
+      if (started && deployment instanceof BeanDeployment)
+         incallback();
    }
 
    /**
-    * Register deployment
+    * Get the rank of a deployment
     * @param deployment The deployment
+    * @return The rank; <code>Integer.MAX_VALUE</code> if the deployment wasn't made during startup
     */
-   void registerDeployment(Deployment deployment)
+   private int getDeploymentRank(Deployment deployment)
    {
-      deployments.add(deployment);
-      
-      if (started && deployment instanceof BeanDeployment)
-         incallback();
+      if (deployment.getURL() == null)
+         return Integer.MAX_VALUE;
+
+      Integer rank = deploymentRanks.get(deployment.getURL().toExternalForm());
+
+      if (rank == null)
+         return Integer.MAX_VALUE;
+
+      return rank.intValue();
    }
 
    /**
@@ -1475,7 +2672,14 @@ public class KernelImpl implements Kernel, KernelImplMBean
    {
       StringBuilder sb = new StringBuilder();
 
-      Iterator<String> it = new TreeSet<String>(beans.keySet()).iterator();
+      Set<String> names = new TreeSet<String>();
+      for (Map.Entry<String, BeanEntry> entry : beanEntries.entrySet())
+      {
+         if (entry.getValue().getBean() != null)
+            names.add(entry.getKey());
+      }
+
+      Iterator<String> it = names.iterator();
       while (it.hasNext())
       {
          dumpBean(sb, it.next());
@@ -1499,6 +2703,30 @@ public class KernelImpl implements Kernel, KernelImplMBean
       return sb.toString();
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public String profile(String column)
+   {
+      return profiler.report(column);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public long getReflectionCacheHits()
+   {
+      return ReflectionCache.getHits();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public long getReflectionCacheMisses()
+   {
+      return ReflectionCache.getMisses();
+   }
+
    /**
     * Dump a bean
     * @param sb The string builder
@@ -1506,15 +2734,17 @@ public class KernelImpl implements Kernel, KernelImplMBean
     */
    private void dumpBean(StringBuilder sb, String name)
    {
-      if (beans.containsKey(name))
+      BeanEntry entry = beanEntries.get(name);
+
+      if (entry != null && entry.getBean() != null)
       {
-         sb.append("Bean \"").append(name).append("\" (").append(beanStatus.get(name)).append(")\n");
-         sb.append("  Class: ").append((beans.get(name)).getClass().getName()).append("\n");
+         sb.append("Bean \"").append(name).append("\" (").append(entry.getStatus()).append(")\n");
+         sb.append("  Class: ").append(entry.getBean().getClass().getName()).append("\n");
 
-         if (beanDependants.containsKey(name))
+         if (entry.getDependencies() != null)
          {
             sb.append("  DependsOn: ");
-            Iterator<String> it = beanDependants.get(name).iterator();
+            Iterator<String> it = entry.getDependencies().iterator();
             while (it.hasNext())
             {
                sb.append(it.next());
@@ -1553,6 +2783,7 @@ public class KernelImpl implements Kernel, KernelImplMBean
       }
       
       callbacks.add(cb);
+      newIncallbacks.offer(cb);
    }
 
    /**
@@ -1576,55 +2807,83 @@ public class KernelImpl implements Kernel, KernelImplMBean
    }
 
    /**
-    * Handle incallback
+    * Handle incallback; the new incallbacks are matched against all beans
+    * of their type, and the new beans are matched against the incallbacks
+    * of their types
     */
-   private void incallback()
+   void incallback()
    {
-      if (incallbacks.size() > 0)
+      synchronized (incallbackLock)
       {
-         Iterator<Map.Entry<Class<?>, List<Callback>>> cit = incallbacks.entrySet().iterator();
-         while (cit.hasNext())
+         Callback cb = newIncallbacks.poll();
+         while (cb != null)
          {
-            Map.Entry<Class<?>, List<Callback>> entry = cit.next();
+            Set<String> names = beanTypes.get(cb.getType());
 
-            Class<?> type = entry.getKey();
-            List<Callback> callbacks = entry.getValue();
-            
-            Iterator<Object> bit = beans.values().iterator();
-            while (bit.hasNext())
+            if (names != null)
             {
-               Object bean = bit.next();
+               for (String name : names)
+               {
+                  BeanEntry entry = beanEntries.get(name);
 
-               if (type.isInstance(bean))
+                  if (entry != null && entry.getBean() != null)
+                     incallback(cb, entry);
+               }
+            }
+
+            cb = newIncallbacks.poll();
+         }
+
+         String name = newBeans.poll();
+         while (name != null)
+         {
+            BeanEntry entry = beanEntries.get(name);
+            Object bean = entry != null ? entry.getBean() : null;
+
+            if (bean != null && incallbacks.size() > 0)
+            {
+               for (Class<?> type : ReflectionCache.getTypes(bean.getClass()))
                {
-                  for (Callback cb : callbacks)
+                  List<Callback> callbacks = incallbacks.get(type);
+
+                  if (callbacks != null)
                   {
-                     List<Callback> registeredCallbacks = callbackBeans.get(bean);
-                     if (registeredCallbacks == null || !registeredCallbacks.contains(cb))
+                     for (Callback c : callbacks.toArray(new Callback[callbacks.size()]))
                      {
-                        if (registeredCallbacks == null)
-                           registeredCallbacks = new ArrayList<Callback>(1);
-
-                        try
-                        {
-                           Method m = cb.getMethod();
-                           Object instance = cb.getInstance();
-                           
-                           SecurityActions.setAccessible(m);
-                           m.invoke(instance, new Object[] {bean});
-
-                           registeredCallbacks.add(cb);
-                           callbackBeans.put(bean, registeredCallbacks);
-                        }
-                        catch (Throwable t)
-                        {
-                           if (log.isLoggable(Level.FINE))
-                              log.fine(cb.toString());
-                        }
+                        incallback(c, entry);
                      }
                   }
                }
             }
+
+            name = newBeans.poll();
+         }
+      }
+   }
+
+   /**
+    * Invoke an incallback for a bean, unless it has been invoked already
+    * @param cb The callback
+    * @param entry The entry of the bean
+    */
+   private void incallback(Callback cb, BeanEntry entry)
+   {
+      if (!entry.hasCallback(cb))
+      {
+         try
+         {
+            Method m = cb.getMethod();
+            Object instance = cb.getInstance();
+
+            SecurityActions.setAccessible(m);
+            m.invoke(instance, new Object[] {entry.getBean()});
+
+            entry.addCallback(cb);
+         }
+         catch (Throwable t)
+         {
+            if (log.isLoggable(Level.FINE))
+               log.fine(cb.toString());
          }
       }
    }
@@ -1799,8 +3058,6 @@ public class KernelImpl implements Kernel, KernelImplMBean
     */
    void postDeploy(boolean delegate) throws Throwable
    {
-      beanLatches.clear();
-
       if (newDeployerPhasesBeans.size() > 0)
       {
          deployerPhasesBeans.addAll(newDeployerPhasesBeans);
@@ -1913,6 +3170,9 @@ public class KernelImpl implements Kernel, KernelImplMBean
       /** Unit latch */
       private CountDownLatch unitLatch;
 
+      /** Unit group */
+      private UnitGroup group;
+
       /** Throwable */
       private Throwable throwable;
 
@@ -1922,16 +3182,19 @@ public class KernelImpl implements Kernel, KernelImplMBean
        * @param deployer The main deployer
        * @param classLoader The class loader
        * @param unitLatch The unit latch
+       * @param group The unit group
        */
       public UnitDeployer(final URL url,
                           final MainDeployerImpl deployer,
                           final ClassLoader classLoader,
-                          final CountDownLatch unitLatch)
+                          final CountDownLatch unitLatch,
+                          final UnitGroup group)
       {
          this.url = url;
          this.deployer = deployer;
          this.classLoader = classLoader;
          this.unitLatch = unitLatch;
+         this.group = group;
          this.throwable = null;
       }
 
@@ -1951,9 +3214,19 @@ public class KernelImpl implements Kernel, KernelImplMBean
             throwable = t;
          }
 
+         group.unitDone();
          unitLatch.countDown();
       }
 
+      /**
+       * Get the URL
+       * @return The value
+       */
+      public URL getUrl()
+      {
+         return url;
+      }
+
       /**
        * Get deploy exception
        * @return null if no error; otherwise the exception
@@ -1963,4 +3236,137 @@ public class KernelImpl implements Kernel, KernelImplMBean
          return throwable;
       }
    }
+
+   /**
+    * A group of deployments which are deployed in parallel once the
+    * group has been resolved
+    */
+   class UnitGroup implements BeanEntry.Listener
+   {
+      /** The URLs */
+      private List<URL> urls;
+
+      /** The unit deployers */
+      private List<UnitDeployer> unitDeployers;
+
+      /** The number of unresolved events before the group can be deployed */
+      private AtomicInteger gate;
+
+      /** Has the group been released */
+      private AtomicBoolean released;
+
+      /** The number of remaining deployments */
+      private AtomicInteger remaining;
+
+      /** The next group */
+      private UnitGroup next;
+
+      /**
+       * Constructor
+       * @param urls The URLs
+       * @param gate The number of unresolved events before the group can be deployed
+       */
+      UnitGroup(List<URL> urls, int gate)
+      {
+         this.urls = urls;
+         this.unitDeployers = new ArrayList<UnitDeployer>(urls.size());
+         this.gate = new AtomicInteger(gate);
+         this.released = new AtomicBoolean(false);
+         this.remaining = new AtomicInteger(urls.size());
+         this.next = null;
+      }
+
+      /**
+       * Set the number of unresolved events before the group can be deployed
+       * @param value The value
+       */
+      void setGate(int value)
+      {
+         gate.set(value);
+      }
+
+      /**
+       * Set the next group
+       * @param group The group
+       */
+      void setNext(UnitGroup group)
+      {
+         this.next = group;
+      }
+
+      /**
+       * Create the unit deployers
+       * @param unitLatch The unit latch
+       */
+      void createUnitDeployers(CountDownLatch unitLatch)
+      {
+         for (URL url : urls)
+         {
+            try
+            {
+               MainDeployerImpl deployer = (MainDeployerImpl)mainDeployer.clone();
+               unitDeployers.add(new UnitDeployer(url, deployer, kernelClassLoader, unitLatch, this));
+            }
+            catch (Throwable t)
+            {
+               log.log(Level.SEVERE, t.getMessage(), t);
+               unitDone();
+               unitLatch.countDown();
+            }
+         }
+      }
+
+      /**
+       * An event has been resolved
+       */
+      public void resolved()
+      {
+         if (gate.decrementAndGet() <= 0)
+            release();
+      }
+
+      /**
+       * Deploy the group
+       */
+      private void release()
+      {
+         if (!released.compareAndSet(false, true))
+            return;
+
+         if (urls.size() == 0 && next != null)
+            next.release();
+
+         for (UnitDeployer unitDeployer : unitDeployers)
+         {
+            if (log.isLoggable(Level.FINE))
+               log.fine("URL=" + unitDeployer.getUrl().toString());
+
+            dependencyScheduler.execute(unitDeployer);
+         }
+      }
+
+      /**
+       * A deployment of the group has completed
+       */
+      void unitDone()
+      {
+         if (remaining.decrementAndGet() == 0 && next != null)
+            next.release();
+      }
+
+      /**
+       * Log the errors of the deployments
+       */
+      void logThrowables()
+      {
+         for (UnitDeployer deployer : unitDeployers)
+         {
+            if (deployer.getThrowable() != null)
+            {
+               Throwable t = deployer.getThrowable();
+               log.log(Level.SEVERE, t.getMessage(), t);
+            }
+         }
+      }
+   }
 }
@@ -50,4 +50,25 @@ public interface KernelImplMBean
     * @return The information
     */
    public String dump(String name);
+
+   /**
+    * Get the startup profile of the beans and the deployments
+    * @param column The column to sort the beans by in descending order: <code>wait</code>,
+    *               <code>class</code>, <code>construct</code>, <code>inject</code>, <code>create</code>,
+    *               <code>start</code>, <code>install</code> or <code>total</code>
+    * @return The profile
+    */
+   public String profile(String column);
+
+   /**
+    * Get the number of reflective lookups served from the reflection cache
+    * @return The value
+    */
+   public long getReflectionCacheHits();
+
+   /**
+    * Get the number of reflective lookups which had to scan the classes
+    * @return The value
+    */
+   public long getReflectionCacheMisses();
 }
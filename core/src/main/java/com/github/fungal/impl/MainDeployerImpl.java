@@ -32,7 +32,11 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * The main deployer for Fungal
+ * The main deployer for Fungal.
+ *
+ * The deployment and undeployment of a URL hold the lock of the URL, which is
+ * shared by all copies of the main deployer, such that different URLs are
+ * deployed in parallel
  * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
  */
 public final class MainDeployerImpl implements Cloneable, MainDeployerImplMBean
@@ -46,6 +50,9 @@ public final class MainDeployerImpl implements Cloneable, MainDeployerImplMBean
    private KernelImpl kernel;
    private Deployers deployers;
 
+   /** The locks of the URLs; unlike monitors they don't pin the carrier of a virtual thread */
+   private DeploymentLocks locks;
+
    /**
     * Constructor
     * @param kernel The kernel
@@ -61,6 +68,7 @@ public final class MainDeployerImpl implements Cloneable, MainDeployerImplMBean
 
       this.kernel = kernel;
       this.deployers = deployers;
+      this.locks = new DeploymentLocks();
    }
 
    /**
@@ -77,11 +85,34 @@ public final class MainDeployerImpl implements Cloneable, MainDeployerImplMBean
     * @param url The URL for the deployment
     * @exception Throwable If an error occurs
     */
-   public synchronized void deploy(URL url) throws Throwable
+   public void deploy(URL url) throws Throwable
    {
       deploy(url, true, kernel.getKernelClassLoader());
    }
 
+   /**
+    * Deploy
+    * @param url The URL for the deployment
+    * @param deployerPhases Run DeployerPhases hooks
+    * @param classLoader The parent class loader for the deployment
+    * @exception Throwable If an error occurs
+    */
+   void deploy(URL url, boolean deployerPhases, ClassLoader classLoader) throws Throwable
+   {
+      if (url == null)
+         throw new IllegalArgumentException("URL is null");
+
+      locks.lock(url);
+      try
+      {
+         doDeploy(url, deployerPhases, classLoader);
+      }
+      finally
+      {
+         locks.unlock(url);
+      }
+   }
+
    /**
     * Deploy
     * @param url The URL for the deployment
@@ -90,7 +121,7 @@ public final class MainDeployerImpl implements Cloneable, MainDeployerImplMBean
     * @exception Throwable If an error occurs
     */
    @SuppressWarnings("unchecked")
-   synchronized void deploy(URL url, boolean deployerPhases, ClassLoader classLoader) throws Throwable
+   private void doDeploy(URL url, boolean deployerPhases, ClassLoader classLoader) throws Throwable
    {
       if (url == null)
          throw new IllegalArgumentException("URL is null");
@@ -101,6 +132,8 @@ public final class MainDeployerImpl implements Cloneable, MainDeployerImplMBean
       if (trace)
          log.log(Level.FINER, "Deploy: " + url.toExternalForm());
 
+      long start = System.nanoTime();
+
       List<Deployer> copy = new ArrayList<Deployer>(deployers.getDeployers().size());
 
       for (Deployer deployer : deployers.getDeployers())
@@ -155,6 +188,8 @@ public final class MainDeployerImpl implements Cloneable, MainDeployerImplMBean
 
       context.clear();
 
+      kernel.getProfiler().recordDeployment(url, System.nanoTime() - start);
+
       if (deployerPhases && throwable == null)
          kernel.postDeploy(true);
 
@@ -167,18 +202,91 @@ public final class MainDeployerImpl implements Cloneable, MainDeployerImplMBean
     * @param url The URL for the deployment
     * @exception Throwable If an error occurs
     */
-   public synchronized void undeploy(URL url) throws Throwable
+   public void undeploy(URL url) throws Throwable
    {
       undeploy(url, true);
    }
 
+   /**
+    * Undeploy, and optionally the deployments which depend on it
+    * @param url The URL for the deployment
+    * @param cascade Undeploy the dependant deployments
+    * @param redeploy Deploy the deployment and the dependant deployments again afterwards
+    * @return The URLs of the dependant deployments which were undeployed in deployment order
+    * @exception Throwable If an error occurs
+    */
+   public List<URL> undeploy(URL url, boolean cascade, boolean redeploy) throws Throwable
+   {
+      if (url == null)
+         throw new IllegalArgumentException("URL is null");
+
+      List<URL> locked = new ArrayList<URL>(1);
+
+      locks.lock(url);
+      locked.add(url);
+      try
+      {
+         List<URL> dependants = Collections.emptyList();
+
+         if (cascade)
+         {
+            dependants = doCascadeUndeploy(url, locked);
+         }
+         else
+         {
+            doUndeploy(url, true);
+         }
+
+         if (redeploy)
+         {
+            doDeploy(url, true, kernel.getKernelClassLoader());
+
+            for (URL dependant : dependants)
+            {
+               doDeploy(dependant, true, kernel.getKernelClassLoader());
+            }
+         }
+
+         return dependants;
+      }
+      finally
+      {
+         for (int i = locked.size() - 1; i >= 0; i--)
+         {
+            locks.unlock(locked.get(i));
+         }
+      }
+   }
+
+   /**
+    * Undeploy
+    * @param url The URL for the deployment
+    * @param deployerPhases Enable deployer phases
+    * @exception Throwable If an error occurs
+    */
+   void undeploy(URL url, boolean deployerPhases) throws Throwable
+   {
+      if (url == null)
+         throw new IllegalArgumentException("URL is null");
+
+      locks.lock(url);
+      try
+      {
+         doUndeploy(url, deployerPhases);
+      }
+      finally
+      {
+         locks.unlock(url);
+      }
+   }
+
    /**
     * Undeploy
     * @param url The URL for the deployment
     * @param deployerPhases Enable deployer phases
     * @exception Throwable If an error occurs
     */
-   synchronized void undeploy(URL url, boolean deployerPhases) throws Throwable
+   private void doUndeploy(URL url, boolean deployerPhases) throws Throwable
    {
       if (url == null)
          throw new IllegalArgumentException("URL is null");
@@ -216,11 +324,97 @@ public final class MainDeployerImpl implements Cloneable, MainDeployerImplMBean
       }
    }
 
+   /**
+    * Undeploy a deployment and the deployments which depend on it
+    * @param url The URL for the deployment
+    * @param locked The locked URLs; the URLs of the dependant deployments are locked and added
+    * @return The URLs of the dependant deployments in deployment order
+    * @exception Throwable If an error occurs
+    */
+   private List<URL> doCascadeUndeploy(URL url, List<URL> locked) throws Throwable
+   {
+      if (trace)
+         log.log(Level.FINER, "CascadeUndeploy: " + url.toExternalForm());
+
+      List<Deployment> deployments = kernel.getDeployments(url, false);
+      if (deployments == null)
+         return Collections.emptyList();
+
+      List<Deployment> dependants = kernel.getDependantDeployments(deployments);
+      List<URL> urls = getURLs(deployments, dependants, url);
+
+      // The dependant deployments may change while their locks are taken, so the
+      // locks are taken until every dependant deployment is locked
+      while (!locked.containsAll(urls))
+      {
+         for (URL u : urls)
+         {
+            if (!locked.contains(u))
+            {
+               locks.lock(u);
+               locked.add(u);
+            }
+         }
+
+         dependants = kernel.getDependantDeployments(deployments);
+         urls = getURLs(deployments, dependants, url);
+      }
+
+      if (trace)
+         log.log(Level.FINER, "CascadeUndeploy: " + url.toExternalForm() + " dependants " + urls);
+
+      kernel.preUndeploy(true);
+
+      List<Deployment> all = new ArrayList<Deployment>(deployments.size() + dependants.size());
+      all.addAll(deployments);
+      all.addAll(dependants);
+
+      Throwable throwable = kernel.shutdownDeployments(kernel.getShutdownOrder(all));
+
+      if (throwable == null)
+         kernel.postUndeploy(true);
+
+      if (throwable != null)
+         throw throwable;
+
+      return urls;
+   }
+
+   /**
+    * Get the URLs of the dependant deployments in deployment order; a deployment comes
+    * after the deployments with beans that its beans depend on
+    * @param deployments The deployments of the URL
+    * @param dependants The dependant deployments
+    * @param url The URL which is excluded
+    * @return The distinct URLs in deployment order
+    */
+   private List<URL> getURLs(List<Deployment> deployments, List<Deployment> dependants, URL url)
+   {
+      List<Deployment> all = new ArrayList<Deployment>(deployments.size() + dependants.size());
+      all.addAll(deployments);
+      all.addAll(dependants);
+
+      List<Deployment> order = kernel.getShutdownOrder(all);
+      Collections.reverse(order);
+
+      List<URL> urls = new ArrayList<URL>(order.size());
+
+      for (Deployment deployment : order)
+      {
+         URL u = deployment.getURL();
+
+         if (u != null && !u.equals(url) && !urls.contains(u))
+            urls.add(u);
+      }
+
+      return urls;
+   }
+
    /**
     * Register a deployment -- advanced usage
     * @param deployment The deployment
     */
-   public synchronized void registerDeployment(Deployment deployment)
+   public void registerDeployment(Deployment deployment)
    {
       if (deployment == null)
          throw new IllegalArgumentException("Deployment is null");
@@ -228,7 +422,19 @@ public final class MainDeployerImpl implements Cloneable, MainDeployerImplMBean
       if (trace)
          log.log(Level.FINER, "RegisterDeployment: " + deployment);
 
-      kernel.registerDeployment(deployment);
+      URL url = deployment.getURL();
+
+      if (url != null)
+         locks.lock(url);
+      try
+      {
+         kernel.registerDeployment(deployment);
+      }
+      finally
+      {
+         if (url != null)
+            locks.unlock(url);
+      }
    }
 
    /**
@@ -236,7 +442,7 @@ public final class MainDeployerImpl implements Cloneable, MainDeployerImplMBean
     * @param deployment The deployment
     * @exception Throwable If an error occurs
     */
-   public synchronized void unregisterDeployment(Deployment deployment) throws Throwable
+   public void unregisterDeployment(Deployment deployment) throws Throwable
    {
       if (deployment == null)
          throw new IllegalArgumentException("Deployment is null");
@@ -244,7 +450,19 @@ public final class MainDeployerImpl implements Cloneable, MainDeployerImplMBean
       if (trace)
          log.log(Level.FINER, "UnregisterDeployment: " + deployment);
 
-      kernel.shutdownDeployment(deployment);
+      URL url = deployment.getURL();
+
+      if (url != null)
+         locks.lock(url);
+      try
+      {
+         kernel.shutdownDeployment(deployment);
+      }
+      finally
+      {
+         if (url != null)
+            locks.unlock(url);
+      }
    }
 
    /**
@@ -257,6 +475,7 @@ public final class MainDeployerImpl implements Cloneable, MainDeployerImplMBean
       MainDeployerImpl md = (MainDeployerImpl)super.clone();
       md.kernel = kernel;
       md.deployers = deployers;
+      md.locks = locks;
       
       return md;
    }
@@ -0,0 +1,226 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.util.ReflectionCache;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The profiler for Fungal.
+ *
+ * The profiler keeps the time spent in each phase of the installation of
+ * the beans, and the time spent deploying each URL
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public final class Profiler
+{
+   /** Phase: Waiting for the dependencies and a thread */
+   static final int WAIT = 0;
+
+   /** Phase: Loading the class */
+   static final int CLASS_LOADING = 1;
+
+   /** Phase: Constructing the instance */
+   static final int CONSTRUCTION = 2;
+
+   /** Phase: Injecting the properties */
+   static final int INJECTION = 3;
+
+   /** Phase: Invoking the create method */
+   static final int CREATE = 4;
+
+   /** Phase: Invoking the start method */
+   static final int START = 5;
+
+   /** Phase: Invoking the install methods */
+   static final int INSTALL = 6;
+
+   /** The number of phases */
+   static final int PHASES = 7;
+
+   /** The columns of the report */
+   private static final String[] COLUMNS = {"wait", "class", "construct", "inject",
+                                            "create", "start", "install", "total"};
+
+   /** The bean timings in nanoseconds */
+   private ConcurrentMap<String, long[]> beans;
+
+   /** The deployment timings in nanoseconds */
+   private ConcurrentMap<String, Long> deployments;
+
+   /**
+    * Constructor
+    */
+   Profiler()
+   {
+      this.beans = new ConcurrentHashMap<String, long[]>(1);
+      this.deployments = new ConcurrentHashMap<String, Long>(1);
+   }
+
+   /**
+    * Record the timings of a bean
+    * @param name The name of the bean
+    * @param timings The timings of the phases in nanoseconds
+    */
+   void recordBean(String name, long[] timings)
+   {
+      long[] copy = new long[PHASES + 1];
+      long total = 0L;
+
+      for (int i = 0; i < PHASES; i++)
+      {
+         copy[i] = timings[i];
+
+         if (i != WAIT)
+            total += timings[i];
+      }
+
+      copy[PHASES] = total;
+
+      beans.put(name, copy);
+   }
+
+   /**
+    * Record the timing of a deployment
+    * @param url The URL of the deployment
+    * @param nanos The time in nanoseconds
+    */
+   void recordDeployment(URL url, long nanos)
+   {
+      deployments.put(url.toExternalForm(), Long.valueOf(nanos));
+   }
+
+   /**
+    * Remove the timings of a bean
+    * @param name The name of the bean
+    */
+   void removeBean(String name)
+   {
+      beans.remove(name);
+   }
+
+   /**
+    * Get the report
+    * @param column The column to sort by in descending order; <code>null</code> for the total
+    * @return The report
+    */
+   public String report(String column)
+   {
+      int index = PHASES;
+
+      if (column != null)
+      {
+         index = -1;
+         for (int i = 0; index == -1 && i < COLUMNS.length; i++)
+         {
+            if (COLUMNS[i].equalsIgnoreCase(column.trim()))
+               index = i;
+         }
+
+         if (index == -1)
+            throw new IllegalArgumentException("Unknown column: " + column);
+      }
+
+      final int sortIndex = index;
+
+      List<Map.Entry<String, long[]>> beanEntries = new ArrayList<Map.Entry<String, long[]>>(beans.entrySet());
+      Collections.sort(beanEntries, new Comparator<Map.Entry<String, long[]>>()
+      {
+         public int compare(Map.Entry<String, long[]> o1, Map.Entry<String, long[]> o2)
+         {
+            long v1 = o1.getValue()[sortIndex];
+            long v2 = o2.getValue()[sortIndex];
+
+            if (v1 != v2)
+               return v1 > v2 ? -1 : 1;
+
+            return o1.getKey().compareTo(o2.getKey());
+         }
+      });
+
+      List<Map.Entry<String, Long>> deploymentEntries =
+         new ArrayList<Map.Entry<String, Long>>(deployments.entrySet());
+      Collections.sort(deploymentEntries, new Comparator<Map.Entry<String, Long>>()
+      {
+         public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2)
+         {
+            int result = o2.getValue().compareTo(o1.getValue());
+
+            if (result != 0)
+               return result;
+
+            return o1.getKey().compareTo(o2.getKey());
+         }
+      });
+
+      StringBuilder sb = new StringBuilder();
+
+      sb.append("Beans (ms)\n");
+      sb.append("  Name");
+      for (String c : COLUMNS)
+      {
+         sb.append(", ").append(c);
+      }
+      sb.append("\n");
+
+      for (Map.Entry<String, long[]> entry : beanEntries)
+      {
+         sb.append("  ").append(entry.getKey());
+         for (long value : entry.getValue())
+         {
+            sb.append(", ").append(toMillis(value));
+         }
+         sb.append("\n");
+      }
+
+      sb.append("Deployments (ms)\n");
+      for (Map.Entry<String, Long> entry : deploymentEntries)
+      {
+         sb.append("  ").append(entry.getKey()).append(", ");
+         sb.append(toMillis(entry.getValue().longValue())).append("\n");
+      }
+
+      sb.append("Reflection cache\n");
+      sb.append("  hits, ").append(ReflectionCache.getHits()).append("\n");
+      sb.append("  misses, ").append(ReflectionCache.getMisses()).append("\n");
+
+      return sb.toString();
+   }
+
+   /**
+    * Format nanoseconds as milliseconds
+    * @param nanos The value
+    * @return The formatted value
+    */
+   private static String toMillis(long nanos)
+   {
+      return String.format(Locale.US, "%.3f", Double.valueOf(nanos / 1000000.0));
+   }
+}
@@ -0,0 +1,317 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * The shutdown scheduler for Fungal.
+ *
+ * A set of beans is destroyed in reverse dependency order; a bean is handed to
+ * the kernel thread pool as soon as all the beans that depend on it have been
+ * destroyed, so independent beans are destroyed in parallel. Beans without
+ * dependencies between them are destroyed in the reverse order of the list.
+ *
+ * The waiting thread helps out by destroying ready beans itself when the
+ * thread pool is behind, and a bean which doesn't finish within the stop
+ * timeout of the kernel configuration is abandoned, such that the beans it
+ * depends on can be destroyed. The timeout doesn't apply to a bean destroyed
+ * by the waiting thread
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+final class ShutdownScheduler
+{
+   /** The interval in milliseconds between checks while waiting */
+   private static final long POLL_INTERVAL = 10L;
+
+   /** The interval in nanoseconds */
+   private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL);
+
+   /** The logger */
+   private static Logger log = Logger.getLogger(ShutdownScheduler.class.getName());
+
+   /** The kernel */
+   private KernelImpl kernel;
+
+   /**
+    * Constructor
+    * @param kernel The kernel
+    */
+   ShutdownScheduler(KernelImpl kernel)
+   {
+      if (kernel == null)
+         throw new IllegalArgumentException("Kernel is null");
+
+      this.kernel = kernel;
+   }
+
+   /**
+    * Destroy a set of beans
+    * @param beans The names of the beans in install order
+    * @exception Throwable Thrown if a bean fails to be destroyed; the first error is reported
+    */
+   void shutdown(List<String> beans) throws Throwable
+   {
+      if (beans == null)
+         throw new IllegalArgumentException("Beans is null");
+
+      List<String> names = new ArrayList<String>(beans);
+      Set<String> members = new HashSet<String>(names);
+
+      // The dependencies are captured up front, since a destroyed bean is removed from the kernel
+      Map<String, Set<String>> dependencies = new HashMap<String, Set<String>>(names.size());
+      Map<String, Integer> dependants = new HashMap<String, Integer>(names.size());
+
+      for (String name : names)
+      {
+         int count = 0;
+
+         for (String dependant : kernel.getBeanDependants(name))
+         {
+            if (!dependant.equals(name) && members.contains(dependant))
+               count++;
+         }
+
+         dependants.put(name, Integer.valueOf(count));
+         dependencies.put(name, new HashSet<String>(kernel.getBeanDependencies(name)));
+      }
+
+      Shutdown shutdown = new Shutdown(kernel.getKernelConfiguration().isParallelDeploy());
+
+      for (int i = names.size() - 1; i >= 0; i--)
+      {
+         if (dependants.get(names.get(i)).intValue() == 0)
+            shutdown.submit(names.get(i));
+      }
+
+      long timeout = TimeUnit.MILLISECONDS.toNanos(kernel.getKernelConfiguration().getBeanStopTimeout());
+      Set<String> finished = new HashSet<String>(names.size());
+
+      while (finished.size() < names.size())
+      {
+         String name = shutdown.completed.poll();
+
+         if (name == null)
+         {
+            // Without the thread pool, or when the thread pool is behind, the beans
+            // are destroyed by the waiting thread
+            if (helpIfBehind(shutdown))
+               continue;
+
+            name = shutdown.completed.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+         }
+
+         if (name == null && timeout > 0)
+         {
+            long now = System.nanoTime();
+
+            for (Map.Entry<String, Long> entry : shutdown.running.entrySet())
+            {
+               if (now - entry.getValue().longValue() > timeout && !finished.contains(entry.getKey()))
+               {
+                  log.warning("Bean " + entry.getKey() + " didn't stop within " +
+                              kernel.getKernelConfiguration().getBeanStopTimeout() + " ms");
+                  name = entry.getKey();
+                  break;
+               }
+            }
+         }
+
+         if (name == null && !helpIfBehind(shutdown) && shutdown.submitted.size() == finished.size())
+         {
+            // The remaining beans depend on each other; break the cycle in reverse order
+            for (int i = names.size() - 1; i >= 0; i--)
+            {
+               if (!shutdown.submitted.contains(names.get(i)))
+               {
+                  shutdown.submit(names.get(i));
+                  break;
+               }
+            }
+         }
+
+         if (name != null && finished.add(name))
+         {
+            for (String dependency : dependencies.get(name))
+            {
+               Integer count = dependants.get(dependency);
+
+               if (count != null)
+               {
+                  dependants.put(dependency, Integer.valueOf(count.intValue() - 1));
+
+                  if (count.intValue() == 1 && !finished.contains(dependency))
+                     shutdown.submit(dependency);
+               }
+            }
+         }
+      }
+
+      if (shutdown.throwable.get() != null)
+         throw shutdown.throwable.get();
+   }
+
+   /**
+    * Destroy a ready bean in the waiting thread; only without the thread pool,
+    * or when the thread pool is behind, since the stop timeout doesn't apply
+    * @param shutdown The shutdown
+    * @return True if a bean was destroyed; otherwise false
+    */
+   private boolean helpIfBehind(Shutdown shutdown)
+   {
+      return (!shutdown.parallel || shutdown.isBehind()) && shutdown.help();
+   }
+
+   /**
+    * The state of a shutdown
+    */
+   class Shutdown
+   {
+      /** Use the thread pool */
+      private boolean parallel;
+
+      /** The beans which are ready to be destroyed */
+      private Queue<String> ready;
+
+      /** The beans which have been submitted */
+      private Set<String> submitted;
+
+      /** The beans being destroyed, and the time they were started */
+      private ConcurrentMap<String, Long> running;
+
+      /** The beans which have been destroyed */
+      private BlockingQueue<String> completed;
+
+      /** The first error */
+      private AtomicReference<Throwable> throwable;
+
+      /** The last time a ready bean was taken */
+      private volatile long taken;
+
+      /**
+       * Constructor
+       * @param parallel Use the thread pool
+       */
+      Shutdown(boolean parallel)
+      {
+         this.parallel = parallel;
+         this.ready = new ConcurrentLinkedQueue<String>();
+         this.submitted = new HashSet<String>();
+         this.running = new ConcurrentHashMap<String, Long>();
+         this.completed = new LinkedBlockingQueue<String>();
+         this.throwable = new AtomicReference<Throwable>(null);
+         this.taken = System.nanoTime();
+      }
+
+      /**
+       * Submit a bean which is ready to be destroyed
+       * @param name The name of the bean
+       */
+      void submit(String name)
+      {
+         if (!submitted.add(name))
+            return;
+
+         ready.offer(name);
+
+         if (parallel)
+         {
+            try
+            {
+               kernel.getExecutorService().execute(new Runnable()
+               {
+                  public void run()
+                  {
+                     runReady();
+                  }
+               });
+            }
+            catch (RejectedExecutionException ree)
+            {
+               // The bean stays on the ready queue, and is destroyed by the waiting thread
+            }
+         }
+      }
+
+      /**
+       * Is the thread pool behind; e.g. no ready bean has been taken for a while
+       * @return True if behind; otherwise false
+       */
+      boolean isBehind()
+      {
+         return ready.size() > 0 && System.nanoTime() - taken > POLL_INTERVAL_NANOS;
+      }
+
+      /**
+       * Destroy a ready bean in the waiting thread
+       * @return True if a bean was destroyed; otherwise false
+       */
+      boolean help()
+      {
+         return runReady();
+      }
+
+      /**
+       * Destroy the next ready bean
+       * @return True if a bean was destroyed; otherwise false
+       */
+      private boolean runReady()
+      {
+         String name = ready.poll();
+
+         if (name == null)
+            return false;
+
+         taken = System.nanoTime();
+         running.put(name, Long.valueOf(System.nanoTime()));
+         try
+         {
+            kernel.destroyBean(name);
+         }
+         catch (Throwable t)
+         {
+            throwable.compareAndSet(null, t);
+         }
+         finally
+         {
+            running.remove(name);
+            completed.offer(name);
+         }
+
+         return true;
+      }
+   }
+}
@@ -38,6 +38,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Netboot functionality
@@ -140,7 +141,14 @@ public class Netboot
 
                dependencyResolvers.add(dependencyResolver);
 
-               executorService.execute(dependencyResolver);
+               try
+               {
+                  executorService.execute(dependencyResolver);
+               }
+               catch (RejectedExecutionException ree)
+               {
+                  dependencyResolver.run();
+               }
             }
 
             dependencyLatch.await();
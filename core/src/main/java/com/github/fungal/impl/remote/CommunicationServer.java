@@ -30,6 +30,7 @@ import java.net.Socket;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -184,7 +185,15 @@ public class CommunicationServer implements Runnable
             Socket socket = ss.accept();
 
             Runnable r = new Communication(this, socket);
-            kernel.getExecutorService().submit(r);
+            try
+            {
+               kernel.getExecutorService().submit(r);
+            }
+            catch (RejectedExecutionException ree)
+            {
+               log.warning("Connection from " + socket.getRemoteSocketAddress() + " rejected");
+               socket.close();
+            }
          }
          catch (IOException ioe)
          {
@@ -0,0 +1,177 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.api.util;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The converters of the property values
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class ConverterRegistryTestCase
+{
+   /** The class loader */
+   private static final ClassLoader CL = ConverterRegistryTestCase.class.getClassLoader();
+
+   /**
+    * The built-in types are converted
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testBuiltin() throws Throwable
+   {
+      assertEquals(Integer.valueOf(42), ConverterRegistry.getConverter(int.class).convert("42", CL));
+      assertEquals(Long.valueOf(42L), ConverterRegistry.getConverter(Long.class).convert("42", CL));
+      assertEquals(Boolean.TRUE, ConverterRegistry.getConverter(boolean.class).convert("true", CL));
+      assertEquals(Character.valueOf('x'), ConverterRegistry.getConverter(char.class).convert("xyz", CL));
+      assertEquals(String.class, ConverterRegistry.getConverter(Class.class).convert("java.lang.String", CL));
+
+      // A blank value of a primitive type is left as is
+      assertEquals(" ", ConverterRegistry.getConverter(int.class).convert(" ", CL));
+
+      Properties p = (Properties)ConverterRegistry.getConverter(Properties.class).convert("a=1, b=2 c", CL);
+      assertEquals("1", p.getProperty("a"));
+      assertEquals("2", p.getProperty("b"));
+      assertEquals("", p.getProperty("c"));
+   }
+
+   /**
+    * A type with a constructor taking a string, or a static valueOf method, is converted
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testResolved() throws Throwable
+   {
+      assertEquals(new File("/tmp"), ConverterRegistry.getConverter(File.class).convert("/tmp", CL));
+      assertEquals(new BigDecimal("1.5"), ConverterRegistry.getConverter(BigDecimal.class).convert("1.5", CL));
+      assertEquals(TimeUnit.SECONDS, ConverterRegistry.getConverter(TimeUnit.class).convert("SECONDS", CL));
+
+      assertSame(ConverterRegistry.getConverter(File.class), ConverterRegistry.getConverter(File.class));
+      assertNull(ConverterRegistry.getConverter(Runnable.class));
+   }
+
+   /**
+    * A value which can't be converted is reported with the failure as the cause
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testFailure() throws Throwable
+   {
+      try
+      {
+         ConverterRegistry.getConverter(BigDecimal.class).convert("abc", CL);
+         fail("Not convertible");
+      }
+      catch (IllegalArgumentException iae)
+      {
+         assertTrue(String.valueOf(iae.getCause()), iae.getCause() instanceof NumberFormatException);
+      }
+   }
+
+   /**
+    * A registered converter replaces the converter of a type until it is unregistered
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testRegister() throws Throwable
+   {
+      assertNull(ConverterRegistry.getConverter(Point.class));
+
+      Converter converter = new Converter()
+      {
+         public Object convert(String value, ClassLoader cl)
+         {
+            int index = value.indexOf(',');
+            return new Point(Integer.parseInt(value.substring(0, index)), Integer.parseInt(value.substring(index + 1)));
+         }
+      };
+
+      ConverterRegistry.register(Point.class, converter);
+      try
+      {
+         assertSame(converter, ConverterRegistry.getConverter(Point.class));
+
+         Point p = (Point)ConverterRegistry.getConverter(Point.class).convert("3,4", CL);
+         assertEquals(3, p.x);
+         assertEquals(4, p.y);
+      }
+      finally
+      {
+         ConverterRegistry.unregister(Point.class);
+      }
+
+      assertNull(ConverterRegistry.getConverter(Point.class));
+   }
+
+   /**
+    * The converters of the types of a class loader are unregistered with the class loader
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testUnregisterClassLoader() throws Throwable
+   {
+      ConverterRegistry.register(Point.class, new Converter()
+      {
+         public Object convert(String value, ClassLoader cl)
+         {
+            return new Point(0, 0);
+         }
+      });
+
+      ConverterRegistry.unregister(Point.class.getClassLoader());
+
+      assertNull(ConverterRegistry.getConverter(Point.class));
+   }
+
+   /**
+    * A type without a string constructor and a valueOf method
+    */
+   public static class Point
+   {
+      /** The x coordinate */
+      private int x;
+
+      /** The y coordinate */
+      private int y;
+
+      /**
+       * Constructor
+       * @param x The x coordinate
+       * @param y The y coordinate
+       */
+      public Point(int x, int y)
+      {
+         this.x = x;
+         this.y = y;
+      }
+   }
+}
@@ -0,0 +1,132 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.api.util;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The compiled templates of <code>${...}</code> values
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class PlaceholderTemplateTestCase
+{
+   /**
+    * Tear down
+    */
+   @After
+   public void tearDown()
+   {
+      System.clearProperty("fungal.test.name");
+      System.clearProperty("fungal.test.key");
+      System.clearProperty("fungal.test.blank");
+   }
+
+   /**
+    * The variables are substituted with the system properties
+    */
+   @Test
+   public void testSubstitute()
+   {
+      System.setProperty("fungal.test.name", "value");
+
+      String plain = "no variables";
+      assertSame(plain, PlaceholderTemplate.substitute(plain));
+      assertNull(PlaceholderTemplate.substitute(null));
+
+      assertEquals("a-value-b", PlaceholderTemplate.substitute("a-${fungal.test.name}-b"));
+      assertEquals("value", PlaceholderTemplate.substitute("${fungal.test.name:default}"));
+      assertEquals("default", PlaceholderTemplate.substitute("${fungal.test.undefined:default}"));
+      assertEquals(File.separator + File.pathSeparator, PlaceholderTemplate.substitute("${/}${:}"));
+   }
+
+   /**
+    * The default value is used for a blank variable, and the names and default
+    * values can contain variables
+    */
+   @Test
+   public void testNested()
+   {
+      System.setProperty("fungal.test.key", "fungal.test.name");
+      System.setProperty("fungal.test.name", "value");
+      System.setProperty("fungal.test.blank", " ");
+
+      assertEquals("value", PlaceholderTemplate.substitute("${${fungal.test.key}}"));
+      assertEquals("value", PlaceholderTemplate.substitute("${fungal.test.undefined:${fungal.test.name}}"));
+      assertEquals("default", PlaceholderTemplate.substitute("${fungal.test.blank:default}"));
+   }
+
+   /**
+    * An unterminated variable is kept as it is
+    */
+   @Test
+   public void testUnterminated()
+   {
+      assertEquals("a${fungal.test.name", PlaceholderTemplate.substitute("a${fungal.test.name"));
+   }
+
+   /**
+    * A template is compiled once, and evaluated with the current values
+    */
+   @Test
+   public void testCompiled()
+   {
+      PlaceholderTemplate template = PlaceholderTemplate.compile("${fungal.test.name:none}");
+      assertSame(template, PlaceholderTemplate.compile("${fungal.test.name:none}"));
+
+      assertEquals("none", template.evaluate());
+
+      System.setProperty("fungal.test.name", "value");
+      assertEquals("value", template.evaluate());
+   }
+
+   /**
+    * The names of the variables that a template depends on are collected
+    */
+   @Test
+   public void testNames()
+   {
+      System.setProperty("fungal.test.key", "fungal.test.name");
+      System.setProperty("fungal.test.name", "value");
+
+      Set<String> names = new HashSet<String>();
+      PlaceholderTemplate.compile("${/}${${fungal.test.key}}${env.FUNGAL_TEST_UNDEFINED:x}").addNames(names);
+
+      assertEquals(new HashSet<String>(Arrays.asList("fungal.test.key", "fungal.test.name",
+                                                     "env.FUNGAL_TEST_UNDEFINED")), names);
+
+      Map<String, String> values = PlaceholderTemplate.getValues(names);
+      assertEquals("value", values.get("fungal.test.name"));
+      assertTrue(values.containsKey("env.FUNGAL_TEST_UNDEFINED"));
+      assertNull(values.get("env.FUNGAL_TEST_UNDEFINED"));
+   }
+}
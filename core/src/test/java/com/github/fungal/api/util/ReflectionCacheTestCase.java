@@ -0,0 +1,192 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.api.util;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The class-keyed reflection cache
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class ReflectionCacheTestCase
+{
+   /**
+    * An entry is resolved once per class and key
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testResolvedOnce() throws Throwable
+   {
+      final AtomicInteger resolved = new AtomicInteger(0);
+
+      ReflectionCache.Resolver<String> resolver = new ReflectionCache.Resolver<String>()
+      {
+         public String resolve(Class<?> clz)
+         {
+            resolved.incrementAndGet();
+            return clz.getSimpleName();
+         }
+      };
+
+      long hits = ReflectionCache.getHits();
+
+      assertEquals("Sample", ReflectionCache.get(Sample.class, "test:once", resolver));
+      assertEquals("Sample", ReflectionCache.get(Sample.class, "test:once", resolver));
+      assertEquals("Other", ReflectionCache.get(Other.class, "test:once", resolver));
+
+      assertEquals(2, resolved.get());
+      assertTrue(ReflectionCache.getHits() > hits);
+   }
+
+   /**
+    * An entry which isn't found is cached too
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testNotFound() throws Throwable
+   {
+      final AtomicInteger resolved = new AtomicInteger(0);
+
+      ReflectionCache.Resolver<String> resolver = new ReflectionCache.Resolver<String>()
+      {
+         public String resolve(Class<?> clz)
+         {
+            resolved.incrementAndGet();
+            return null;
+         }
+      };
+
+      assertNull(ReflectionCache.get(Sample.class, "test:none", resolver));
+      assertNull(ReflectionCache.get(Sample.class, "test:none", resolver));
+      assertEquals(1, resolved.get());
+   }
+
+   /**
+    * An entry which can't be resolved isn't cached, and the error is reported
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testFailure() throws Throwable
+   {
+      final AtomicInteger resolved = new AtomicInteger(0);
+
+      ReflectionCache.Resolver<String> resolver = new ReflectionCache.Resolver<String>()
+      {
+         public String resolve(Class<?> clz) throws Exception
+         {
+            if (resolved.incrementAndGet() == 1)
+               throw new NoSuchMethodException("first");
+
+            return "second";
+         }
+      };
+
+      try
+      {
+         ReflectionCache.get(Sample.class, "test:failure", resolver);
+         fail("Not resolved");
+      }
+      catch (NoSuchMethodException nsme)
+      {
+         // Expected
+      }
+
+      assertEquals("second", ReflectionCache.get(Sample.class, "test:failure", resolver));
+   }
+
+   /**
+    * The lifecycle methods are cached
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testMethod() throws Throwable
+   {
+      Method start = ReflectionCache.getMethod(Sample.class, "start");
+
+      assertEquals("start", start.getName());
+      assertSame(start, ReflectionCache.getMethod(Sample.class, "start"));
+      assertNull(ReflectionCache.getMethod(Sample.class, "stop"));
+   }
+
+   /**
+    * The types are the class, the superclasses and all the interfaces
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testTypes() throws Throwable
+   {
+      Set<Class<?>> types = ReflectionCache.getTypes(ArrayList.class);
+
+      assertTrue(types.contains(ArrayList.class));
+      assertTrue(types.contains(Object.class));
+      assertTrue(types.contains(List.class));
+      assertTrue(types.contains(Collection.class));
+      assertTrue(types.contains(Iterable.class));
+      assertTrue(types.contains(RandomAccess.class));
+      assertTrue(types.contains(Serializable.class));
+      assertSame(types, ReflectionCache.getTypes(ArrayList.class));
+
+      try
+      {
+         types.add(String.class);
+         fail("Modifiable");
+      }
+      catch (UnsupportedOperationException uoe)
+      {
+         // Expected
+      }
+   }
+
+   /**
+    * A class of the test
+    */
+   public static class Sample
+   {
+      /**
+       * Start
+       */
+      public void start()
+      {
+      }
+   }
+
+   /**
+    * Another class of the test
+    */
+   public static class Other
+   {
+   }
+}
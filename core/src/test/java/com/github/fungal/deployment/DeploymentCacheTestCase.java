@@ -0,0 +1,259 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.deployment;
+
+import com.github.fungal.api.deployment.Bean;
+import com.github.fungal.impl.support.KernelHome;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The cache of the parsed deployment descriptors
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class DeploymentCacheTestCase
+{
+   /** A descriptor with all the elements */
+   private static final String DESCRIPTOR =
+      "<deployment>" +
+      "<bean name=\"A\" class=\"test.A\" interface=\"test.I\" lazy=\"true\">" +
+      "<constructor factoryMethod=\"create\" factoryClass=\"test.F\">" +
+      "<parameter>1</parameter><parameter class=\"java.lang.Integer\">2</parameter>" +
+      "<parameter><inject bean=\"B\" property=\"p\"/></parameter><parameter><null/></parameter>" +
+      "<factory bean=\"F\"/></constructor>" +
+      "<property name=\"text\">${user.home}/value</property>" +
+      "<property name=\"inject\"><inject bean=\"B\" property=\"q\"/></property>" +
+      "<property name=\"list\"><list elementClass=\"java.lang.String\"><value>a</value><value>b</value></list>" +
+      "</property>" +
+      "<property name=\"set\" class=\"java.util.Set\"><set elementClass=\"java.lang.String\"><value>c</value>" +
+      "</set></property>" +
+      "<property name=\"map\"><map keyClass=\"java.lang.String\" valueClass=\"java.lang.Integer\">" +
+      "<entry><key>k</key><value>1</value></entry></map></property>" +
+      "<property name=\"null\"><null/></property>" +
+      "<property name=\"this\"><this/></property>" +
+      "<depends>B</depends><depends>C</depends>" +
+      "<install method=\"install\"/><uninstall method=\"uninstall\"/>" +
+      "<incallback method=\"add\"/><uncallback method=\"remove\"/>" +
+      "<create method=\"create\"/><start method=\"start\"/><stop method=\"stop\"/><destroy method=\"destroy\"/>" +
+      "<ignoreCreate/><ignoreStart/><ignoreStop/><ignoreDestroy/>" +
+      "</bean>" +
+      "<bean name=\"B\" class=\"test.B\"/>" +
+      "</deployment>";
+
+   /** The home */
+   private KernelHome home;
+
+   /** The cache directory */
+   private File directory;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("deployment-cache");
+      directory = home.getFile(DeploymentCache.DIRECTORY_NAME);
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      home.delete();
+   }
+
+   /**
+    * A cached deployment is the same as the parsed deployment
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testRoundTrip() throws Throwable
+   {
+      URL url = home.writeContent("deploy", "all.xml", DESCRIPTOR);
+      String expected = describe(new Unmarshaller().unmarshal(url));
+
+      assertEquals(expected, describe(new DeploymentCache(directory).unmarshal(url)));
+      assertEquals(1, entries().length);
+
+      assertEquals(expected, describe(new DeploymentCache(directory).unmarshal(url)));
+      assertEquals(1, entries().length);
+   }
+
+   /**
+    * A streamed deployment hands its beans to the listener, and is cached
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testStream() throws Throwable
+   {
+      URL url = home.writeContent("deploy", "all.xml", DESCRIPTOR);
+      final List<String> names = new ArrayList<String>();
+
+      Deployment deployment = new DeploymentCache(directory).unmarshal(url, new Unmarshaller.Listener()
+      {
+         public void beanRead(Bean bean)
+         {
+            names.add(bean.getName());
+         }
+      });
+
+      assertEquals(2, names.size());
+      assertEquals("A", names.get(0));
+      assertEquals(1, entries().length);
+      assertEquals(describe(deployment), describe(new DeploymentCache(directory).unmarshal(url)));
+   }
+
+   /**
+    * A changed descriptor gets a new entry, and the entries which weren't used are pruned
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testChangedAndPruned() throws Throwable
+   {
+      URL url = home.writeContent("deploy", "all.xml", DESCRIPTOR);
+      new DeploymentCache(directory).unmarshal(url);
+
+      home.writeContent("deploy", "all.xml", DESCRIPTOR.replace("test.B", "test.C"));
+
+      DeploymentCache cache = new DeploymentCache(directory);
+      Deployment deployment = cache.unmarshal(url);
+
+      assertEquals("test.C", deployment.getBean().get(1).getClazz());
+      assertEquals(2, entries().length);
+
+      cache.prune();
+
+      assertEquals(1, entries().length);
+      assertEquals("test.C", new DeploymentCache(directory).unmarshal(url).getBean().get(1).getClazz());
+   }
+
+   /**
+    * A damaged entry is ignored, and the descriptor is parsed again
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testDamagedEntry() throws Throwable
+   {
+      URL url = home.writeContent("deploy", "all.xml", DESCRIPTOR);
+      String expected = describe(new DeploymentCache(directory).unmarshal(url));
+
+      for (File entry : entries())
+      {
+         OutputStream os = new FileOutputStream(entry);
+         try
+         {
+            os.write(new byte[] {0x46, 0x55, 0x4E, 0x47, 0, 0, 0, 1, 7});
+         }
+         finally
+         {
+            os.close();
+         }
+      }
+
+      assertEquals(expected, describe(new DeploymentCache(directory).unmarshal(url)));
+   }
+
+   /**
+    * Get the cache entries
+    * @return The entries
+    */
+   private File[] entries()
+   {
+      File[] files = directory.listFiles();
+      assertTrue(files != null);
+
+      return files;
+   }
+
+   /**
+    * Describe a model object through its getters
+    * @param o The object
+    * @return The description
+    * @exception Exception Thrown if an error occurs
+    */
+   private static String describe(Object o) throws Exception
+   {
+      if (o == null || o instanceof String || o instanceof Boolean || o instanceof Number)
+         return String.valueOf(o);
+
+      StringBuilder sb = new StringBuilder();
+
+      if (o instanceof Collection)
+      {
+         sb.append("[");
+         for (Object element : (Collection<?>)o)
+         {
+            sb.append(describe(element)).append(",");
+         }
+         sb.append("]");
+
+         return sb.toString();
+      }
+
+      Map<String, Object> values = new TreeMap<String, Object>();
+      for (Method m : o.getClass().getMethods())
+      {
+         String name = m.getName();
+
+         if (m.getParameterTypes().length == 0 && !Modifier.isStatic(m.getModifiers()) &&
+             m.getDeclaringClass() != Object.class &&
+             (name.startsWith("get") || name.startsWith("is")))
+         {
+            values.put(name, m.invoke(o));
+         }
+      }
+
+      // The markers, e.g. null and this, have no values
+      if (values.isEmpty())
+         return o.getClass().getSimpleName();
+
+      sb.append("{");
+      for (Map.Entry<String, Object> entry : values.entrySet())
+      {
+         sb.append(entry.getKey()).append("=").append(describe(entry.getValue())).append(",");
+      }
+      sb.append("}");
+
+      return sb.toString();
+   }
+}
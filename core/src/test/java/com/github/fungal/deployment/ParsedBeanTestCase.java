@@ -0,0 +1,133 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.deployment;
+
+import com.github.fungal.api.deployment.Bean;
+import com.github.fungal.api.deployment.Depends;
+import com.github.fungal.api.deployment.Property;
+import com.github.fungal.api.deployment.Stop;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The model of the beans read from a deployment descriptor
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class ParsedBeanTestCase
+{
+   /**
+    * A bean is copied with all of its values, and a parsed bean isn't copied again
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testOf() throws Throwable
+   {
+      Bean bean = new Bean("A");
+      bean.setClazz("test.A");
+      bean.setInterface("test.I");
+      bean.setLazy(true);
+      bean.setIgnoreCreate(true);
+      bean.setStop(new Stop());
+      bean.getProperty().add(new Property("p"));
+      bean.getDepends().add(new Depends());
+
+      Bean parsed = ParsedBean.of(bean);
+
+      assertNotSame(bean, parsed);
+      assertSame(parsed, ParsedBean.of(parsed));
+
+      assertEquals("A", parsed.getName());
+      assertEquals("test.A", parsed.getClazz());
+      assertEquals("test.I", parsed.getInterface());
+      assertTrue(parsed.isLazy());
+      assertTrue(parsed.isIgnoreCreate());
+      assertSame(bean.getStop(), parsed.getStop());
+      assertEquals(1, parsed.getProperty().size());
+      assertEquals(1, parsed.getDepends().size());
+      assertEquals(0, parsed.getInstall().size());
+
+      bean.getProperty().add(new Property("q"));
+      assertEquals(1, parsed.getProperty().size());
+
+      try
+      {
+         ParsedBean.of(null);
+         fail("Null bean");
+      }
+      catch (IllegalArgumentException iae)
+      {
+         // Expected
+      }
+   }
+
+   /**
+    * The names of the beans read from different descriptors are shared
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testInterned() throws Throwable
+   {
+      Bean a = read("<deployment><bean name=\"Shared\" class=\"test.Shared\">" +
+                    "<depends>Other</depends></bean></deployment>");
+      Bean b = read("<deployment><bean name=\"Shared\" class=\"test.Shared\"/></deployment>");
+
+      assertTrue(a instanceof ParsedBean);
+      assertNotSame(a, b);
+      assertSame(a.getName(), b.getName());
+      assertSame(a.getClazz(), b.getClazz());
+      assertSame("Other", a.getDepends().get(0).getValue());
+   }
+
+   /**
+    * A parsed bean can be used wherever a bean is
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testSubstitutable() throws Throwable
+   {
+      Bean bean = read("<deployment><bean name=\"A\" class=\"test.A\"/></deployment>");
+
+      bean.setClazz("test.B");
+      bean.getProperty().add(new Property("p"));
+
+      assertEquals("test.B", bean.getClazz());
+      assertEquals(1, bean.getProperty().size());
+   }
+
+   /**
+    * Read the first bean of a descriptor
+    * @param descriptor The descriptor
+    * @return The bean
+    * @exception Throwable Thrown if an error occurs
+    */
+   private static Bean read(String descriptor) throws Throwable
+   {
+      return new Unmarshaller().unmarshal(new ByteArrayInputStream(descriptor.getBytes("UTF-8"))).getBean().get(0);
+   }
+}
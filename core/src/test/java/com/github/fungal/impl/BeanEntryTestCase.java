@@ -0,0 +1,180 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The lock-free listeners of a bean entry
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class BeanEntryTestCase
+{
+   /**
+    * A listener added before the bean is started is notified once it is started
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testStarted() throws Throwable
+   {
+      BeanEntry entry = new BeanEntry(ServiceLifecycle.NOT_STARTED);
+      Counter counter = new Counter();
+
+      entry.addListener(counter);
+      assertFalse(entry.isResolved());
+
+      entry.setStatus(ServiceLifecycle.STARTING);
+      assertEquals(0, counter.count.get());
+
+      entry.setStatus(ServiceLifecycle.STARTED);
+      assertTrue(entry.isResolved());
+      assertEquals(1, counter.count.get());
+   }
+
+   /**
+    * A listener added to a resolved bean is notified right away
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testResolved() throws Throwable
+   {
+      BeanEntry entry = new BeanEntry(ServiceLifecycle.STARTED);
+      Counter counter = new Counter();
+
+      entry.addListener(counter);
+      assertEquals(1, counter.count.get());
+   }
+
+   /**
+    * A failed bean releases its listeners
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testError() throws Throwable
+   {
+      BeanEntry entry = new BeanEntry(null);
+      Counter counter = new Counter();
+
+      entry.addListener(counter);
+      entry.setStatus(ServiceLifecycle.ERROR);
+
+      assertTrue(entry.isResolved());
+      assertEquals(1, counter.count.get());
+   }
+
+   /**
+    * A bean which is being stopped is no longer resolved, and new listeners wait
+    * until it is started again
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testStopping() throws Throwable
+   {
+      BeanEntry entry = new BeanEntry(ServiceLifecycle.STARTED);
+      Counter first = new Counter();
+
+      entry.addListener(first);
+      entry.setStatus(ServiceLifecycle.STOPPING);
+      assertFalse(entry.isResolved());
+
+      Counter second = new Counter();
+      entry.addListener(second);
+      assertEquals(0, second.count.get());
+
+      entry.setStatus(ServiceLifecycle.STARTED);
+      assertEquals(1, first.count.get());
+      assertEquals(1, second.count.get());
+   }
+
+   /**
+    * Each listener added while the bean is being started is notified exactly once
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testConcurrentListeners() throws Throwable
+   {
+      for (int round = 0; round < 100; round++)
+      {
+         final BeanEntry entry = new BeanEntry(ServiceLifecycle.NOT_STARTED);
+         final Counter counter = new Counter();
+         final CountDownLatch start = new CountDownLatch(1);
+         Thread[] threads = new Thread[4];
+
+         for (int i = 0; i < threads.length; i++)
+         {
+            threads[i] = new Thread(new Runnable()
+            {
+               public void run()
+               {
+                  try
+                  {
+                     start.await();
+
+                     for (int j = 0; j < 250; j++)
+                     {
+                        entry.addListener(counter);
+                     }
+                  }
+                  catch (InterruptedException ie)
+                  {
+                     Thread.currentThread().interrupt();
+                  }
+               }
+            });
+            threads[i].start();
+         }
+
+         start.countDown();
+         entry.setStatus(ServiceLifecycle.STARTED);
+
+         for (Thread thread : threads)
+         {
+            thread.join();
+         }
+
+         assertEquals(threads.length * 250, counter.count.get());
+      }
+   }
+
+   /**
+    * A listener which counts its notifications
+    */
+   static class Counter implements BeanEntry.Listener
+   {
+      /** The number of notifications */
+      private AtomicInteger count = new AtomicInteger(0);
+
+      /**
+       * {@inheritDoc}
+       */
+      public void resolved()
+      {
+         count.incrementAndGet();
+      }
+   }
+}
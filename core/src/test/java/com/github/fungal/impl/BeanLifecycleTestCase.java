@@ -0,0 +1,151 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.api.KernelFactory;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.PlainBean;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The lifecycle methods, dependencies and removal kept in the single entry of a bean
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class BeanLifecycleTestCase
+{
+   /** The home */
+   private KernelHome home;
+
+   /** The kernel */
+   private Kernel kernel;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("lifecycle");
+      kernel = KernelFactory.create(home.configuration(true).beanCapacity(4));
+      kernel.startup();
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      if (kernel != null)
+         kernel.shutdown();
+
+      home.delete();
+   }
+
+   /**
+    * The default and custom stop and destroy methods, and the uninstall methods, are
+    * invoked on undeploy; and the bean is removed
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testLifecycleMethods() throws Throwable
+   {
+      URL url = home.write("deploy", "beans.xml",
+                           plain("Default", ""),
+                           plain("Custom", "<stop method=\"halt\"/><uninstall method=\"uninstall\"/>"),
+                           plain("Ignored", "<ignoreStop/><ignoreDestroy/>"));
+      kernel.getMainDeployer().deploy(url);
+
+      PlainBean def = kernel.getBean("Default", PlainBean.class);
+      PlainBean custom = kernel.getBean("Custom", PlainBean.class);
+      PlainBean ignored = kernel.getBean("Ignored", PlainBean.class);
+
+      assertEquals(Arrays.asList("create", "start"), def.getCalls());
+
+      kernel.getMainDeployer().undeploy(url);
+
+      assertEquals(Arrays.asList("create", "start", "stop", "destroy"), def.getCalls());
+      assertEquals(Arrays.asList("create", "start", "uninstall", "halt", "destroy"), custom.getCalls());
+      assertEquals(Arrays.asList("create", "start"), ignored.getCalls());
+
+      assertNull(((KernelImpl)kernel).findBeanEntry("Default"));
+      assertNull(((KernelImpl)kernel).findBeanEntry("Custom"));
+      assertNull(((KernelImpl)kernel).findBeanEntry("Ignored"));
+   }
+
+   /**
+    * More beans than the initial capacity are all kept, and their dependencies are tracked
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testCapacity() throws Throwable
+   {
+      String[] beans = new String[32];
+      for (int i = 0; i < beans.length; i++)
+      {
+         beans[i] = i == 0 ? KernelHome.bean("B0", 0) : KernelHome.bean("B" + i, 0, "B" + (i - 1));
+      }
+
+      URL url = home.write("deploy", "beans.xml", beans);
+      kernel.getMainDeployer().deploy(url);
+
+      for (int i = 0; i < beans.length; i++)
+      {
+         assertNotNull(kernel.getBean("B" + i, Object.class));
+      }
+
+      assertEquals(Collections.singleton("B4"), kernel.getBeanDependencies("B5"));
+      assertEquals(Collections.singleton("B6"), kernel.getBeanDependants("B5"));
+
+      kernel.getMainDeployer().undeploy(url);
+
+      for (int i = 0; i < beans.length; i++)
+      {
+         assertNull(((KernelImpl)kernel).findBeanEntry("B" + i));
+      }
+   }
+
+   /**
+    * A plain bean definition
+    * @param name The name
+    * @param body The extra elements
+    * @return The definition
+    */
+   private static String plain(String name, String body)
+   {
+      return "<bean name=\"" + name + "\" class=\"" + PlainBean.class.getName() + "\">" +
+         "<constructor><parameter>p</parameter><parameter>1</parameter></constructor>" + body + "</bean>";
+   }
+}
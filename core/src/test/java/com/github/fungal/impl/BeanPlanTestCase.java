@@ -0,0 +1,130 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.PlainBean;
+
+import java.net.URL;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Beans installed through their compiled plans
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class BeanPlanTestCase
+{
+   /** The bean definition */
+   private static final String PLAIN =
+      "<bean name=\"Plain\" class=\"" + PlainBean.class.getName() + "\">" +
+      "<constructor><parameter>pre-</parameter><parameter>3</parameter></constructor>" +
+      "<property name=\"value\">value-</property>" +
+      "<property name=\"number\">42</property>" +
+      "<install method=\"install\"/>" +
+      "<uninstall method=\"uninstall\"/>" +
+      "</bean>";
+
+   /** The home */
+   private KernelHome home;
+
+   /** The kernel */
+   private Kernel kernel;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("bean-plan");
+      kernel = home.createKernel(true);
+      kernel.startup();
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      if (kernel != null)
+         kernel.shutdown();
+
+      home.delete();
+   }
+
+   /**
+    * A bean with a constructor, properties and an install method is installed
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testInstall() throws Throwable
+   {
+      URL url = home.write("deploy", "plain.xml", PLAIN);
+      kernel.getMainDeployer().deploy(url);
+
+      PlainBean bean = kernel.getBean("Plain", PlainBean.class);
+      assertNotNull(bean);
+      assertEquals("pre-", bean.getPrefix());
+      assertEquals(3, bean.getCount());
+      assertEquals("value-", bean.getValue());
+      assertEquals(42, bean.getNumber());
+      assertEquals(Arrays.asList("create", "start", "install:pre-value-42"), bean.getCalls());
+
+      kernel.getMainDeployer().undeploy(url);
+
+      assertEquals(Arrays.asList("create", "start", "install:pre-value-42", "uninstall", "stop", "destroy"),
+                   bean.getCalls());
+   }
+
+   /**
+    * A new instance is installed from the cached plan when the definition is redeployed
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testReinstall() throws Throwable
+   {
+      URL url = home.write("deploy", "plain.xml", PLAIN);
+
+      kernel.getMainDeployer().deploy(url);
+      PlainBean first = kernel.getBean("Plain", PlainBean.class);
+      kernel.getMainDeployer().undeploy(url);
+
+      kernel.getMainDeployer().deploy(url);
+      PlainBean second = kernel.getBean("Plain", PlainBean.class);
+
+      assertNotNull(second);
+      assertEquals(42, second.getNumber());
+      assertEquals(Arrays.asList("create", "start", "install:pre-value-42"), second.getCalls());
+      assertNotSame(first, second);
+   }
+}
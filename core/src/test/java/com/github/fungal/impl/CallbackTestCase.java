@@ -0,0 +1,135 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.PlainBean;
+import com.github.fungal.impl.support.RegistryBean;
+import com.github.fungal.impl.support.TestBean;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The incallbacks and uncallbacks, which are dispatched by the type of the beans
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class CallbackTestCase
+{
+   /** The registry definition */
+   private static final String REGISTRY =
+      "<bean name=\"Registry\" class=\"" + RegistryBean.class.getName() + "\">" +
+      "<incallback method=\"add\"/><uncallback method=\"remove\"/></bean>";
+
+   /** A bean of another type */
+   private static final String PLAIN =
+      "<bean name=\"Plain\" class=\"" + PlainBean.class.getName() + "\">" +
+      "<constructor><parameter>p</parameter><parameter>1</parameter></constructor></bean>";
+
+   /** The home */
+   private KernelHome home;
+
+   /** The kernel */
+   private Kernel kernel;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("callback");
+      kernel = home.createKernel(true);
+      kernel.startup();
+      TestBean.clearEvents();
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      if (kernel != null)
+         kernel.shutdown();
+
+      home.delete();
+   }
+
+   /**
+    * The beans deployed after the registry are passed to it once
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testBeansAfterRegistry() throws Throwable
+   {
+      kernel.getMainDeployer().deploy(home.write("deploy", "registry.xml", REGISTRY));
+      RegistryBean registry = kernel.getBean("Registry", RegistryBean.class);
+
+      URL beans = home.write("deploy", "beans.xml", KernelHome.bean("A", 0), KernelHome.bean("B", 0), PLAIN);
+      kernel.getMainDeployer().deploy(beans);
+
+      assertEquals(Arrays.asList("add:A", "add:B"), sorted(registry.getCalls()));
+
+      kernel.getMainDeployer().undeploy(beans);
+
+      assertEquals(Arrays.asList("add:A", "add:B", "remove:A", "remove:B"), sorted(registry.getCalls()));
+   }
+
+   /**
+    * The beans deployed before the registry are passed to it once it is deployed
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testBeansBeforeRegistry() throws Throwable
+   {
+      kernel.getMainDeployer().deploy(home.write("deploy", "beans.xml", KernelHome.bean("A", 0), PLAIN));
+      kernel.getMainDeployer().deploy(home.write("deploy", "registry.xml", REGISTRY));
+
+      RegistryBean registry = kernel.getBean("Registry", RegistryBean.class);
+      assertEquals(Arrays.asList("add:A"), registry.getCalls());
+
+      kernel.getMainDeployer().deploy(home.write("deploy", "more.xml", KernelHome.bean("B", 0)));
+      assertEquals(Arrays.asList("add:A", "add:B"), registry.getCalls());
+   }
+
+   /**
+    * Sort the calls
+    * @param calls The calls
+    * @return The sorted calls
+    */
+   private static List<String> sorted(List<String> calls)
+   {
+      Collections.sort(calls);
+      return calls;
+   }
+}
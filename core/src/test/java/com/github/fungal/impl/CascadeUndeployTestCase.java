@@ -0,0 +1,172 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.TestBean;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cascade undeployment and redeployment
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class CascadeUndeployTestCase
+{
+   /** The home */
+   private KernelHome home;
+
+   /** The kernel */
+   private Kernel kernel;
+
+   /** The deployment of A */
+   private URL a;
+
+   /** The deployment of B; depends on A */
+   private URL b;
+
+   /** The deployment of C; depends on B */
+   private URL c;
+
+   /** The deployment of D */
+   private URL d;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("cascade-undeploy");
+
+      a = home.write("deploy", "a.xml", KernelHome.bean("A", 0));
+      b = home.write("deploy", "b.xml", KernelHome.bean("B", 0, "A"));
+      c = home.write("deploy", "c.xml", KernelHome.bean("C", 0, "B"));
+      d = home.write("deploy", "d.xml", KernelHome.bean("D", 0));
+
+      kernel = home.createKernel(true);
+      kernel.startup();
+
+      TestBean.clearEvents();
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      if (kernel != null)
+         kernel.shutdown();
+
+      home.delete();
+   }
+
+   /**
+    * A cascade undeployment stops the dependant deployments first, and returns
+    * them in deployment order
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testCascadeUndeploy() throws Throwable
+   {
+      List<URL> dependants = kernel.getMainDeployer().undeploy(a, true, false);
+
+      assertEquals(Arrays.asList(b, c), dependants);
+
+      List<String> events = TestBean.getEvents();
+      assertEquals(Arrays.asList("stop:C", "stop:B", "stop:A"), events);
+
+      assertNull(kernel.getDeployments(a));
+      assertNull(kernel.getDeployments(b));
+      assertNull(kernel.getDeployments(c));
+      assertNotNull(kernel.getDeployments(d));
+   }
+
+   /**
+    * A cascade redeployment deploys the deployment and the dependant deployments again
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testCascadeRedeploy() throws Throwable
+   {
+      List<URL> dependants = kernel.getMainDeployer().undeploy(a, true, true);
+
+      assertEquals(Arrays.asList(b, c), dependants);
+
+      List<String> events = TestBean.getEvents();
+      assertEquals(Arrays.asList("stop:C", "stop:B", "stop:A", "start:A", "start:B", "start:C"), events);
+      assertFalse(events.contains("stop:D"));
+
+      assertNotNull(kernel.getDeployments(a));
+      assertNotNull(kernel.getDeployments(b));
+      assertNotNull(kernel.getDeployments(c));
+      assertNotNull(kernel.getBean("C", TestBean.class));
+   }
+
+   /**
+    * A deployment without dependant deployments is undeployed by itself
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testNoDependants() throws Throwable
+   {
+      List<URL> dependants = kernel.getMainDeployer().undeploy(c, true, false);
+
+      assertTrue(dependants.isEmpty());
+      assertEquals(Arrays.asList("stop:C"), TestBean.getEvents());
+      assertNotNull(kernel.getDeployments(b));
+   }
+
+   /**
+    * A dependant deployment which depends on several deployments of the closure is
+    * undeployed once, before all of them
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testSharedDependant() throws Throwable
+   {
+      URL e = home.write("deploy", "e.xml", KernelHome.bean("E", 0, "A", "C"));
+      kernel.getMainDeployer().deploy(e);
+      TestBean.clearEvents();
+
+      List<URL> dependants = kernel.getMainDeployer().undeploy(a, true, false);
+
+      assertEquals(Arrays.asList(b, c, e), dependants);
+      assertEquals(Arrays.asList("stop:E", "stop:C", "stop:B", "stop:A"), TestBean.getEvents());
+      assertNull(kernel.getDeployments(e));
+   }
+}
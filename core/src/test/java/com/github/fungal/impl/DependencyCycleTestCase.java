@@ -0,0 +1,231 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.TestBean;
+
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Dependency cycles which span deployments
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class DependencyCycleTestCase
+{
+   /** The home */
+   private KernelHome home;
+
+   /** The kernel */
+   private Kernel kernel;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("dependency-cycle");
+      kernel = null;
+      TestBean.clearEvents();
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      if (kernel != null)
+         kernel.shutdown();
+
+      home.delete();
+   }
+
+   /**
+    * A cycle across the descriptors of deploy/ deployed in parallel fails both
+    * descriptors, while the other descriptors are deployed
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testStartupParallel() throws Throwable
+   {
+      testStartup(true);
+   }
+
+   /**
+    * A cycle across the descriptors of deploy/ deployed one at a time fails both
+    * descriptors, while the other descriptors are deployed
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testStartupSerial() throws Throwable
+   {
+      testStartup(false);
+   }
+
+   /**
+    * Two descriptors deployed concurrently after startup, which form a cycle, are
+    * both rejected
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testConcurrentDeploy() throws Throwable
+   {
+      kernel = home.createKernel(true);
+      kernel.startup();
+
+      final URL first = home.write("deploy", "first.xml", KernelHome.bean("First", 100, "Second"));
+      final URL second = home.write("deploy", "second.xml", KernelHome.bean("Second", 100, "First"));
+
+      final CountDownLatch start = new CountDownLatch(1);
+      final AtomicInteger failures = new AtomicInteger(0);
+      Thread[] threads = new Thread[2];
+
+      for (int i = 0; i < threads.length; i++)
+      {
+         final URL url = i == 0 ? first : second;
+
+         threads[i] = new Thread(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  start.await();
+                  kernel.getMainDeployer().deploy(url);
+               }
+               catch (Throwable t)
+               {
+                  failures.incrementAndGet();
+               }
+            }
+         });
+         threads[i].start();
+      }
+
+      start.countDown();
+
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      assertEquals(2, failures.get());
+
+      List<String> events = TestBean.getEvents();
+      assertFalse(events.toString(), events.contains("start:First"));
+      assertFalse(events.toString(), events.contains("start:Second"));
+   }
+
+   /**
+    * A bean waiting for a dependency in another deployment, whose start fails, isn't
+    * started, although the failed dependency releases it
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testFailedDependency() throws Throwable
+   {
+      kernel = home.createKernel(true);
+      kernel.startup();
+
+      String broken = "<bean name=\"Broken\" class=\"" + TestBean.class.getName() + "\">" +
+         "<property name=\"name\">Broken</property>" +
+         "<property name=\"delay\">500</property>" +
+         "<property name=\"fail\">true</property></bean>";
+
+      final URL first = home.write("deploy", "broken.xml", broken);
+      URL second = home.write("deploy", "dependant.xml", KernelHome.bean("Dependant", 0, "Broken"));
+
+      final AtomicInteger failures = new AtomicInteger(0);
+
+      Thread thread = new Thread(new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               kernel.getMainDeployer().deploy(first);
+            }
+            catch (Throwable t)
+            {
+               failures.incrementAndGet();
+            }
+         }
+      });
+      thread.start();
+
+      // Broken is being started, so Dependant waits for it
+      Thread.sleep(200);
+
+      try
+      {
+         kernel.getMainDeployer().deploy(second);
+      }
+      catch (Throwable t)
+      {
+         failures.incrementAndGet();
+      }
+
+      thread.join();
+
+      assertEquals(2, failures.get());
+
+      List<String> events = TestBean.getEvents();
+      assertFalse(events.toString(), events.contains("start:Dependant"));
+      assertTrue(kernel.getBeansOfType(TestBean.class).isEmpty());
+   }
+
+   /**
+    * Startup with a cycle across descriptors
+    * @param parallelDeploy Deploy the descriptors in parallel
+    * @exception Throwable Thrown if an error occurs
+    */
+   private void testStartup(boolean parallelDeploy) throws Throwable
+   {
+      home.write("deploy", "cycle1.xml", KernelHome.bean("Cycle1", 0, "Cycle2"));
+      home.write("deploy", "cycle2.xml", KernelHome.bean("Cycle2", 0, "Cycle1"));
+      home.write("deploy", "other.xml", KernelHome.bean("Other", 0));
+
+      kernel = home.createKernel(parallelDeploy);
+      kernel.startup();
+
+      List<String> events = TestBean.getEvents();
+      assertFalse(events.contains("start:Cycle1"));
+      assertFalse(events.contains("start:Cycle2"));
+      assertTrue(events.contains("start:Other"));
+      assertEquals(1, kernel.getBeansOfType(TestBean.class).size());
+   }
+}
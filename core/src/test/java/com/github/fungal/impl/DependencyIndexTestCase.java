@@ -0,0 +1,162 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.TestBean;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The index of the bean dependencies in both directions
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class DependencyIndexTestCase
+{
+   /** The home */
+   private KernelHome home;
+
+   /** The kernel */
+   private Kernel kernel;
+
+   /** The deployment with A */
+   private URL a;
+
+   /** The deployment with B and C */
+   private URL bc;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("dependency-index");
+      kernel = home.createKernel(true);
+      kernel.startup();
+
+      a = home.write("deploy", "a.xml", KernelHome.bean("A", 0));
+      bc = home.write("deploy", "bc.xml", KernelHome.bean("B", 0, "A"), KernelHome.bean("C", 0, "A", "B"));
+
+      kernel.getMainDeployer().deploy(a);
+      kernel.getMainDeployer().deploy(bc);
+
+      TestBean.clearEvents();
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      if (kernel != null)
+         kernel.shutdown();
+
+      home.delete();
+   }
+
+   /**
+    * The dependencies and the dependants of the beans
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testIndex() throws Throwable
+   {
+      assertEquals(Collections.<String>emptySet(), kernel.getBeanDependencies("A"));
+      assertEquals(new HashSet<String>(Arrays.asList("B", "C")), kernel.getBeanDependants("A"));
+
+      assertEquals(Collections.singleton("A"), kernel.getBeanDependencies("B"));
+      assertEquals(Collections.singleton("C"), kernel.getBeanDependants("B"));
+
+      assertEquals(new HashSet<String>(Arrays.asList("A", "B")), kernel.getBeanDependencies("C"));
+      assertEquals(Collections.<String>emptySet(), kernel.getBeanDependants("C"));
+
+      assertEquals(Collections.<String>emptySet(), kernel.getBeanDependencies("Unknown"));
+      assertEquals(Collections.<String>emptySet(), kernel.getBeanDependants("Unknown"));
+   }
+
+   /**
+    * Removed beans are dropped from the dependants of their dependencies
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testRemoval() throws Throwable
+   {
+      kernel.getMainDeployer().undeploy(bc);
+
+      assertEquals(Collections.<String>emptySet(), kernel.getBeanDependants("A"));
+      assertEquals(Collections.<String>emptySet(), kernel.getBeanDependencies("B"));
+   }
+
+   /**
+    * A deployment can't be stopped while beans of another deployment depend on it
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testRemainingDependants() throws Throwable
+   {
+      try
+      {
+         kernel.getMainDeployer().undeploy(a, false, false);
+         fail("Remaining dependants");
+      }
+      catch (Exception e)
+      {
+         assertTrue(e.getMessage(), e.getMessage().contains("remaining dependants [B, C]"));
+      }
+
+      assertNotNull(kernel.getBean("B", TestBean.class));
+   }
+
+   /**
+    * The kernel shutdown stops the dependant deployments first
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testShutdownOrder() throws Throwable
+   {
+      kernel.shutdown();
+      kernel = null;
+
+      List<String> events = TestBean.getEvents();
+
+      assertTrue(events.toString(), events.indexOf("stop:C") < events.indexOf("stop:B"));
+      assertTrue(events.toString(), events.indexOf("stop:B") < events.indexOf("stop:A"));
+      assertEquals(events.toString(), 3, events.size());
+   }
+}
@@ -0,0 +1,144 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.api.KernelFactory;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.TestBean;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Scheduling of the bean deployers once their dependencies are resolved
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class DependencySchedulerTestCase
+{
+   /** The home */
+   private KernelHome home;
+
+   /** The kernel */
+   private Kernel kernel;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("dependency-scheduler");
+      kernel = null;
+      TestBean.clearEvents();
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      if (kernel != null)
+         kernel.shutdown();
+
+      home.delete();
+   }
+
+   /**
+    * Beans declared before their dependencies are started after them
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testDeclarationOrder() throws Throwable
+   {
+      kernel = home.createKernel(true);
+      kernel.startup();
+
+      URL url = home.write("deploy", "chain.xml",
+                           KernelHome.bean("C", 0, "B"), KernelHome.bean("B", 10, "A"), KernelHome.bean("A", 10));
+
+      kernel.getMainDeployer().deploy(url);
+
+      assertEquals(Arrays.asList("start:A", "start:B", "start:C"), TestBean.getEvents());
+   }
+
+   /**
+    * A bean with several dependencies is started after all of them
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testDiamond() throws Throwable
+   {
+      kernel = home.createKernel(true);
+      kernel.startup();
+
+      URL url = home.write("deploy", "diamond.xml",
+                           KernelHome.bean("Top", 0, "Left", "Right"),
+                           KernelHome.bean("Left", 50, "Bottom"),
+                           KernelHome.bean("Right", 10, "Bottom"),
+                           KernelHome.bean("Bottom", 10));
+
+      kernel.getMainDeployer().deploy(url);
+
+      List<String> events = TestBean.getEvents();
+      assertEquals(events.toString(), 4, events.size());
+      assertEquals("start:Bottom", events.get(0));
+      assertEquals("start:Top", events.get(3));
+   }
+
+   /**
+    * Many beans waiting for the same dependency don't hold the threads of a pool
+    * with a single thread, so they are all installed
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testSingleThread() throws Throwable
+   {
+      String[] beans = new String[33];
+
+      for (int i = 0; i < 32; i++)
+      {
+         beans[i] = KernelHome.bean("Waiter" + i, 0, "Root");
+      }
+
+      beans[32] = KernelHome.bean("Root", 100);
+
+      home.write("deploy", "waiters.xml", beans);
+
+      kernel = KernelFactory.create(home.configuration(true).executorCorePoolSize(1).executorMaxPoolSize(1));
+      kernel.startup();
+
+      List<String> events = TestBean.getEvents();
+      assertEquals(events.toString(), 33, events.size());
+      assertEquals("start:Root", events.get(0));
+      assertEquals(33, kernel.getBeansOfType(TestBean.class).size());
+   }
+}
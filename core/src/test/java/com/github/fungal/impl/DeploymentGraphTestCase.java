@@ -0,0 +1,131 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.TestBean;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The descriptors of the kernel deployed as one dependency graph
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class DeploymentGraphTestCase
+{
+   /** The home */
+   private KernelHome home;
+
+   /** The kernel */
+   private Kernel kernel;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("deployment-graph");
+      kernel = null;
+      TestBean.clearEvents();
+
+      // The descriptors depend on descriptors which are later in the deployment order
+      home.write("deploy", "a.xml", KernelHome.bean("A", 10, "Z"));
+      home.write("deploy", "m.xml", KernelHome.bean("M", 10, "A"), KernelHome.bean("N", 10));
+      home.write("deploy", "z.xml", KernelHome.bean("Z", 200));
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      if (kernel != null)
+         kernel.shutdown();
+
+      home.delete();
+   }
+
+   /**
+    * The descriptors are started in dependency order regardless of their deployment
+    * order, and stopped in the reverse order
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testParallel() throws Throwable
+   {
+      kernel = home.createKernel(true);
+      kernel.startup();
+
+      List<String> events = TestBean.getEvents();
+      assertEquals(events.toString(), 4, events.size());
+      assertTrue(events.toString(), events.indexOf("start:Z") < events.indexOf("start:A"));
+      assertTrue(events.toString(), events.indexOf("start:A") < events.indexOf("start:M"));
+
+      // N doesn't depend on the slow Z, so it isn't held back by its descriptor order
+      assertTrue(events.toString(), events.indexOf("start:N") < events.indexOf("start:Z"));
+
+      TestBean.clearEvents();
+      kernel.shutdown();
+      kernel = null;
+
+      events = TestBean.getEvents();
+      assertEquals(events.toString(), 4, events.size());
+      assertTrue(events.toString(), events.indexOf("stop:M") < events.indexOf("stop:A"));
+      assertTrue(events.toString(), events.indexOf("stop:A") < events.indexOf("stop:Z"));
+   }
+
+   /**
+    * A descriptor of system/ which depends on a descriptor of deploy/ is started
+    * once its dependency has started
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testAcrossDirectories() throws Throwable
+   {
+      home.write("system", "s.xml", KernelHome.bean("S", 10, "M"));
+
+      kernel = home.createKernel(true);
+      kernel.startup();
+
+      List<String> events = TestBean.getEvents();
+      assertEquals(events.toString(), 5, events.size());
+      assertTrue(events.toString(), events.indexOf("start:M") < events.indexOf("start:S"));
+
+      TestBean.clearEvents();
+      kernel.shutdown();
+      kernel = null;
+
+      events = TestBean.getEvents();
+      assertTrue(events.toString(), events.indexOf("stop:S") < events.indexOf("stop:M"));
+   }
+}
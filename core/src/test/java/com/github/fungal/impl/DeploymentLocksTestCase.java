@@ -0,0 +1,216 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The locks of the deployment URLs
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class DeploymentLocksTestCase
+{
+   /** The locks */
+   private DeploymentLocks locks;
+
+   /** A URL */
+   private URL first;
+
+   /** Another URL */
+   private URL second;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      locks = new DeploymentLocks();
+      first = new URL("file:/deploy/first.xml");
+      second = new URL("file:/deploy/second.xml");
+   }
+
+   /**
+    * The lock of a URL is reentrant, and is removed with the last unlock
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(expected = IllegalMonitorStateException.class)
+   public void testReentrant() throws Throwable
+   {
+      locks.lock(first);
+      locks.lock(first);
+
+      locks.unlock(first);
+      locks.unlock(first);
+
+      // The lock has been removed
+      locks.unlock(first);
+   }
+
+   /**
+    * A URL is locked by one thread at a time, and the lock is kept while
+    * another thread waits for it
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 10000)
+   public void testSameUrl() throws Throwable
+   {
+      locks.lock(first);
+
+      final CountDownLatch locked = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      Thread thread = new Thread(new Runnable()
+      {
+         public void run()
+         {
+            locks.lock(first);
+            locked.countDown();
+            try
+            {
+               release.await();
+            }
+            catch (InterruptedException ie)
+            {
+               Thread.currentThread().interrupt();
+            }
+            finally
+            {
+               locks.unlock(first);
+            }
+         }
+      });
+      thread.start();
+
+      assertFalse(locked.await(200, TimeUnit.MILLISECONDS));
+
+      locks.unlock(first);
+
+      assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+      release.countDown();
+      thread.join();
+
+      // All references have been released
+      try
+      {
+         locks.unlock(first);
+         fail("The lock must have been removed");
+      }
+      catch (IllegalMonitorStateException imse)
+      {
+         // Expected
+      }
+   }
+
+   /**
+    * Different URLs are locked concurrently
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 10000)
+   public void testDifferentUrls() throws Throwable
+   {
+      locks.lock(first);
+
+      final CountDownLatch locked = new CountDownLatch(1);
+      Thread thread = new Thread(new Runnable()
+      {
+         public void run()
+         {
+            locks.lock(second);
+            locked.countDown();
+            locks.unlock(second);
+         }
+      });
+      thread.start();
+
+      assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+      thread.join();
+      locks.unlock(first);
+   }
+
+   /**
+    * Many threads which lock and unlock the same URL keep each other out, and
+    * leave no lock behind
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testContention() throws Throwable
+   {
+      final AtomicBoolean inside = new AtomicBoolean(false);
+      final AtomicBoolean overlap = new AtomicBoolean(false);
+      Thread[] threads = new Thread[8];
+
+      for (int i = 0; i < threads.length; i++)
+      {
+         threads[i] = new Thread(new Runnable()
+         {
+            public void run()
+            {
+               for (int j = 0; j < 1000; j++)
+               {
+                  locks.lock(first);
+                  try
+                  {
+                     if (!inside.compareAndSet(false, true))
+                        overlap.set(true);
+
+                     inside.set(false);
+                  }
+                  finally
+                  {
+                     locks.unlock(first);
+                  }
+               }
+            }
+         });
+         threads[i].start();
+      }
+
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      assertFalse(overlap.get());
+
+      try
+      {
+         locks.unlock(first);
+         fail("The lock must have been removed");
+      }
+      catch (IllegalMonitorStateException imse)
+      {
+         // Expected
+      }
+   }
+}
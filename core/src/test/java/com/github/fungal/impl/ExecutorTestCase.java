@@ -0,0 +1,241 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.api.KernelFactory;
+import com.github.fungal.api.configuration.KernelConfiguration;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.TestBean;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The modes of the kernel executor
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class ExecutorTestCase
+{
+   /** The number of beans waiting for the root bean */
+   private static final int WAITERS = 40;
+
+   /** The home */
+   private KernelHome home;
+
+   /** The kernel */
+   private Kernel kernel;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("executor");
+      kernel = null;
+      TestBean.clearEvents();
+
+      String[] beans = new String[WAITERS + 1];
+
+      for (int i = 0; i < WAITERS; i++)
+      {
+         beans[i] = KernelHome.bean("Waiter" + i, 5, "Root");
+      }
+
+      beans[WAITERS] = KernelHome.bean("Root", 50);
+
+      home.write("deploy", "waiters.xml", beans);
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      if (kernel != null)
+         kernel.shutdown();
+
+      home.delete();
+   }
+
+   /**
+    * A bounded pool with a bounded queue installs all beans
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testBounded() throws Throwable
+   {
+      startup(home.configuration(true)
+              .executorCorePoolSize(2)
+              .executorMaxPoolSize(2)
+              .executorQueue(KernelConfiguration.QUEUE_ARRAY)
+              .executorQueueSize(4)
+              .executorRejectionPolicy(KernelConfiguration.REJECTION_CALLER_RUNS));
+
+      ExecutorService es = ((KernelImpl)kernel).getExecutorService();
+      assertTrue(es.getClass().getName(), es instanceof ThreadPoolExecutor);
+
+      ThreadPoolExecutor tpe = (ThreadPoolExecutor)es;
+      assertEquals(2, tpe.getMaximumPoolSize());
+      assertTrue(tpe.getQueue() instanceof ArrayBlockingQueue);
+
+      assertInstalled();
+   }
+
+   /**
+    * A pool with a single thread and no queue, which rejects the tasks it can't run,
+    * installs all beans since the waiting thread runs the rejected tasks
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testRejected() throws Throwable
+   {
+      startup(home.configuration(true)
+              .executorCorePoolSize(1)
+              .executorMaxPoolSize(1)
+              .executorQueue(KernelConfiguration.QUEUE_SYNCHRONOUS)
+              .executorRejectionPolicy(KernelConfiguration.REJECTION_ABORT));
+
+      assertInstalled();
+   }
+
+   /**
+    * A work-stealing pool installs all beans
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testWorkStealing() throws Throwable
+   {
+      startup(home.configuration(true)
+              .executorCorePoolSize(2)
+              .executorMaxPoolSize(4)
+              .executorWorkStealing(true));
+
+      ExecutorService es = ((KernelImpl)kernel).getExecutorService();
+      assertTrue(es.getClass().getName(), es instanceof ForkJoinPool);
+      assertEquals(2, ((ForkJoinPool)es).getParallelism());
+
+      assertInstalled();
+   }
+
+   /**
+    * The virtual thread mode installs all beans; a platform without virtual threads
+    * uses the configured thread pool instead
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testVirtualThreads() throws Throwable
+   {
+      startup(home.configuration(true)
+              .executorCorePoolSize(1)
+              .executorMaxPoolSize(1)
+              .virtualThreads(true));
+
+      ExecutorService es = ((KernelImpl)kernel).getExecutorService();
+
+      if (isVirtualThreadsSupported())
+      {
+         assertFalse(es.getClass().getName(), es instanceof ThreadPoolExecutor);
+      }
+      else
+      {
+         assertTrue(es.getClass().getName(), es instanceof ThreadPoolExecutor);
+         assertEquals(1, ((ThreadPoolExecutor)es).getMaximumPoolSize());
+      }
+
+      assertInstalled();
+   }
+
+   /**
+    * A max pool size below the core pool size is rejected
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testInvalidPoolSize() throws Throwable
+   {
+      Kernel k = KernelFactory.create(home.configuration(true).executorCorePoolSize(4).executorMaxPoolSize(2));
+
+      try
+      {
+         k.startup();
+         fail("Invalid pool size");
+      }
+      catch (IllegalArgumentException iae)
+      {
+         // Expected
+      }
+
+      assertTrue(TestBean.getEvents().isEmpty());
+   }
+
+   /**
+    * Start a kernel
+    * @param kc The configuration
+    * @exception Throwable Thrown if an error occurs
+    */
+   private void startup(KernelConfiguration kc) throws Throwable
+   {
+      kernel = KernelFactory.create(kc);
+      kernel.startup();
+   }
+
+   /**
+    * Does the platform support virtual threads
+    * @return True if supported; otherwise false
+    */
+   private static boolean isVirtualThreadsSupported()
+   {
+      try
+      {
+         Thread.class.getMethod("ofVirtual");
+         return true;
+      }
+      catch (NoSuchMethodException nsme)
+      {
+         return false;
+      }
+   }
+
+   /**
+    * Assert that all beans have been installed, the root bean first
+    */
+   private void assertInstalled()
+   {
+      assertEquals(WAITERS + 1, TestBean.getEvents().size());
+      assertEquals("start:Root", TestBean.getEvents().get(0));
+      assertEquals(WAITERS + 1, kernel.getBeansOfType(TestBean.class).size());
+   }
+}
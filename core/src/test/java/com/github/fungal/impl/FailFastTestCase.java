@@ -0,0 +1,172 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.TestBean;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The cancellation of the rest of a deployment once one of its beans fails
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class FailFastTestCase
+{
+   /** The home */
+   private KernelHome home;
+
+   /** The kernel */
+   private Kernel kernel;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("fail-fast");
+      kernel = home.createKernel(true);
+      kernel.startup();
+      TestBean.clearEvents();
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      if (kernel != null)
+         kernel.shutdown();
+
+      home.delete();
+   }
+
+   /**
+    * The beans waiting on a running bean are cancelled, and the started beans
+    * are rolled back in reverse dependency order
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testCancel() throws Throwable
+   {
+      URL url = home.write("deploy", "beans.xml",
+                           KernelHome.bean("First", 0),
+                           KernelHome.bean("Second", 0, "First"),
+                           broken("Broken", 200, "Second"),
+                           KernelHome.bean("Slow", 1000),
+                           KernelHome.bean("AfterSlow", 0, "Slow"),
+                           KernelHome.bean("AfterBroken", 0, "Broken"));
+
+      try
+      {
+         kernel.getMainDeployer().deploy(url);
+         fail("Broken bean");
+      }
+      catch (Throwable t)
+      {
+         Throwable cause = t;
+         while (cause.getCause() != null)
+         {
+            cause = cause.getCause();
+         }
+
+         assertTrue(String.valueOf(cause), String.valueOf(cause).contains("Broken failed"));
+      }
+
+      List<String> events = TestBean.getEvents();
+
+      assertFalse(events.toString(), events.contains("start:AfterSlow"));
+      assertFalse(events.toString(), events.contains("start:AfterBroken"));
+
+      assertTrue(events.toString(), events.indexOf("stop:Second") >= 0);
+      assertTrue(events.toString(), events.indexOf("stop:Second") < events.indexOf("stop:First"));
+      assertTrue(events.toString(), events.contains("start:Slow") == events.contains("stop:Slow"));
+
+      assertTrue(kernel.getBeansOfType(TestBean.class).isEmpty());
+   }
+
+   /**
+    * A deployment which failed can be deployed again once its bean is fixed
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testRedeploy() throws Throwable
+   {
+      URL url = home.write("deploy", "beans.xml",
+                           KernelHome.bean("First", 0),
+                           broken("Broken", 100, "First"));
+
+      try
+      {
+         kernel.getMainDeployer().deploy(url);
+         fail("Broken bean");
+      }
+      catch (Throwable t)
+      {
+         // Expected
+      }
+
+      List<String> events = TestBean.getEvents();
+
+      assertTrue(events.toString(), events.contains("stop:First"));
+      assertTrue(kernel.getBeansOfType(TestBean.class).isEmpty());
+
+      url = home.write("deploy", "beans.xml",
+                       KernelHome.bean("First", 0),
+                       KernelHome.bean("Broken", 0, "First"));
+      kernel.getMainDeployer().deploy(url);
+
+      assertNotNull(kernel.getBean("Broken", TestBean.class));
+      assertEquals(Collections.singleton("First"), kernel.getBeanDependencies("Broken"));
+      assertEquals(Collections.singleton("Broken"), kernel.getBeanDependants("First"));
+   }
+
+   /**
+    * A bean whose start fails
+    * @param name The name
+    * @param delay The delay before it fails
+    * @param depends The dependencies
+    * @return The definition
+    */
+   private static String broken(String name, long delay, String... depends)
+   {
+      String bean = KernelHome.bean(name, delay, depends);
+
+      return bean.replace("</bean>", "<property name=\"fail\">true</property></bean>");
+   }
+}
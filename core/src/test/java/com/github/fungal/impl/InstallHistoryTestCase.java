@@ -0,0 +1,162 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.TestBean;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The install history, which puts the beans on the critical path first
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class InstallHistoryTestCase
+{
+   /** The home */
+   private KernelHome home;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("install-history");
+      TestBean.clearEvents();
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      home.delete();
+   }
+
+   /**
+    * The priority of a bean is the length of the longest dependency path starting with it
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testPriority() throws Throwable
+   {
+      Map<String, Set<String>> dependencies = new HashMap<String, Set<String>>();
+      dependencies.put("A", Collections.<String>emptySet());
+      dependencies.put("B", Collections.singleton("A"));
+      dependencies.put("C", Collections.singleton("A"));
+      dependencies.put("D", Collections.<String>emptySet());
+
+      InstallHistory history = new InstallHistory();
+      history.record("A", TimeUnit.MILLISECONDS.toNanos(1));
+      history.record("B", TimeUnit.MILLISECONDS.toNanos(5));
+      history.record("C", TimeUnit.MILLISECONDS.toNanos(1));
+      history.record("D", TimeUnit.MILLISECONDS.toNanos(4));
+
+      File file = home.getFile(InstallHistory.FILE_NAME);
+      history.save(file, dependencies);
+
+      InstallHistory loaded = new InstallHistory();
+      loaded.load(file);
+
+      assertEquals(6000L, loaded.getPriority("A"));
+      assertEquals(5000L, loaded.getPriority("B"));
+      assertEquals(1000L, loaded.getPriority("C"));
+      assertEquals(4000L, loaded.getPriority("D"));
+      assertEquals(0L, loaded.getPriority("Unknown"));
+
+      // The bean of the longest path runs first
+      DependencyScheduler.Task a = new DependencyScheduler.Task(null, loaded.getPriority("A"), 1);
+      DependencyScheduler.Task d = new DependencyScheduler.Task(null, loaded.getPriority("D"), 0);
+      assertTrue(a.compareTo(d) < 0);
+   }
+
+   /**
+    * The install times are smoothed over the startups, and a cycle doesn't prevent the
+    * history from being saved
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testSmoothing() throws Throwable
+   {
+      Map<String, Set<String>> dependencies = new HashMap<String, Set<String>>();
+      dependencies.put("A", Collections.singleton("B"));
+      dependencies.put("B", Collections.singleton("A"));
+
+      File file = home.getFile(InstallHistory.FILE_NAME);
+
+      InstallHistory first = new InstallHistory();
+      first.record("A", TimeUnit.MILLISECONDS.toNanos(2));
+      first.record("B", TimeUnit.MILLISECONDS.toNanos(2));
+      first.save(file, dependencies);
+
+      InstallHistory second = new InstallHistory();
+      second.load(file);
+      second.record("A", TimeUnit.MILLISECONDS.toNanos(4));
+      second.save(file, dependencies);
+
+      InstallHistory third = new InstallHistory();
+      third.load(file);
+
+      assertTrue(third.getPriority("A") >= 3000L);
+      assertTrue(third.getPriority("B") >= 2000L);
+   }
+
+   /**
+    * The kernel saves the history of the beans installed during startup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testKernel() throws Throwable
+   {
+      home.write("deploy", "beans.xml", KernelHome.bean("A", 20), KernelHome.bean("B", 0, "A"));
+
+      Kernel kernel = home.createKernel(true);
+      kernel.startup();
+      kernel.shutdown();
+
+      File file = home.getFile(InstallHistory.FILE_NAME);
+      assertTrue(file.exists());
+
+      InstallHistory history = new InstallHistory();
+      history.load(file);
+
+      assertTrue(history.getPriority("A") >= TimeUnit.MILLISECONDS.toMicros(20));
+      assertTrue(history.getPriority("A") > history.getPriority("B"));
+      assertTrue(history.getPriority("B") > 0L);
+   }
+}
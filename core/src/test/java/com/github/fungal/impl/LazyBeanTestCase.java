@@ -0,0 +1,228 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.PlainBean;
+import com.github.fungal.impl.support.TestBean;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The lazy beans, which are created on first use
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class LazyBeanTestCase
+{
+   /** The home */
+   private KernelHome home;
+
+   /** The kernel */
+   private Kernel kernel;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("lazy");
+      kernel = home.createKernel(true);
+      kernel.startup();
+      TestBean.clearEvents();
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      if (kernel != null)
+         kernel.shutdown();
+
+      home.delete();
+   }
+
+   /**
+    * A lazy bean is created once, by the first lookup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testFirstLookup() throws Throwable
+   {
+      kernel.getMainDeployer().deploy(home.write("deploy", "lazy.xml", lazy("Lazy", false)));
+
+      assertTrue(TestBean.getEvents().isEmpty());
+
+      TestBean bean = kernel.getBean("Lazy", TestBean.class);
+
+      assertSame(bean, kernel.getBean("Lazy", TestBean.class));
+      assertEquals(Arrays.asList("start:Lazy"), TestBean.getEvents());
+   }
+
+   /**
+    * Concurrent lookups create the lazy bean once
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testConcurrentLookups() throws Throwable
+   {
+      kernel.getMainDeployer().deploy(home.write("deploy", "lazy.xml", lazy("Lazy", false)));
+
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      try
+      {
+         List<Callable<TestBean>> lookups = new ArrayList<Callable<TestBean>>();
+         for (int i = 0; i < 8; i++)
+         {
+            lookups.add(new Callable<TestBean>()
+            {
+               public TestBean call() throws Exception
+               {
+                  try
+                  {
+                     return kernel.getBean("Lazy", TestBean.class);
+                  }
+                  catch (Throwable t)
+                  {
+                     throw new Exception(t);
+                  }
+               }
+            });
+         }
+
+         TestBean bean = null;
+         for (Future<TestBean> f : executor.invokeAll(lookups))
+         {
+            if (bean == null)
+               bean = f.get();
+
+            assertSame(bean, f.get());
+         }
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+
+      assertEquals(Arrays.asList("start:Lazy"), TestBean.getEvents());
+   }
+
+   /**
+    * A bean which depends on a lazy bean, or injects it, creates it first
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testDependants() throws Throwable
+   {
+      String inject = "<bean name=\"Plain\" class=\"" + PlainBean.class.getName() + "\">" +
+         "<constructor><parameter>p</parameter><parameter>1</parameter></constructor>" +
+         "<property name=\"value\"><inject bean=\"Injected\" property=\"name\"/></property></bean>";
+
+      kernel.getMainDeployer().deploy(home.write("deploy", "beans.xml",
+                                                lazy("Lazy", false),
+                                                lazy("Injected", false),
+                                                KernelHome.bean("Dependant", 0, "Lazy"),
+                                                inject));
+
+      List<String> events = TestBean.getEvents();
+
+      assertTrue(events.toString(), events.indexOf("start:Lazy") >= 0);
+      assertTrue(events.toString(), events.indexOf("start:Lazy") < events.indexOf("start:Dependant"));
+      assertTrue(events.toString(), events.contains("start:Injected"));
+      assertEquals("Injected", kernel.getBean("Plain", PlainBean.class).getValue());
+   }
+
+   /**
+    * A bean which depends on a lazy bean fails when the lazy bean can't be created
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testFailedDependency() throws Throwable
+   {
+      kernel.getMainDeployer().deploy(home.write("deploy", "lazy.xml", lazy("Lazy", true)));
+
+      try
+      {
+         kernel.getMainDeployer().deploy(home.write("deploy", "dependant.xml",
+                                                   KernelHome.bean("Dependant", 0, "Lazy")));
+         fail("Lazy dependency failed");
+      }
+      catch (Throwable t)
+      {
+         // Expected
+      }
+
+      assertFalse(TestBean.getEvents().contains("start:Dependant"));
+   }
+
+   /**
+    * A lazy bean which was never created is removed without being stopped
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testUndeployNotCreated() throws Throwable
+   {
+      URL url = home.write("deploy", "lazy.xml", lazy("Lazy", false));
+      kernel.getMainDeployer().deploy(url);
+      kernel.getMainDeployer().undeploy(url);
+
+      assertEquals(Collections.<String>emptyList(), TestBean.getEvents());
+      assertNull(((KernelImpl)kernel).findBeanEntry("Lazy"));
+      assertTrue(kernel.getBeansOfType(TestBean.class).isEmpty());
+   }
+
+   /**
+    * A lazy bean definition
+    * @param name The name
+    * @param fail Whether the start of the bean fails
+    * @return The definition
+    */
+   private static String lazy(String name, boolean fail)
+   {
+      return "<bean name=\"" + name + "\" class=\"" + TestBean.class.getName() + "\" lazy=\"true\">" +
+         "<property name=\"name\">" + name + "</property>" +
+         "<property name=\"fail\">" + fail + "</property></bean>";
+   }
+}
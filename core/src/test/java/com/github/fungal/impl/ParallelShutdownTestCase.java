@@ -0,0 +1,162 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.TestBean;
+
+import java.net.URL;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The beans are stopped in parallel in reverse dependency order
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class ParallelShutdownTestCase
+{
+   /** The number of beans in the middle layer */
+   private static final int MIDDLE = 6;
+
+   /** The home */
+   private KernelHome home;
+
+   /** The kernel */
+   private Kernel kernel;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("parallel-shutdown");
+      kernel = null;
+      TestBean.clearEvents();
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      if (kernel != null)
+         kernel.shutdown();
+
+      home.delete();
+   }
+
+   /**
+    * The beans of a deployment are stopped after the beans which depend on them
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testUndeploy() throws Throwable
+   {
+      URL url = home.write("deploy", "layers.xml", getLayers());
+
+      kernel = home.createKernel(true);
+      kernel.startup();
+
+      TestBean.clearEvents();
+
+      kernel.getMainDeployer().undeploy(url);
+
+      verifyLayers(TestBean.getEvents());
+   }
+
+   /**
+    * The beans of all deployments are stopped in reverse dependency order when the
+    * kernel is shutdown, also across deployments
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testShutdown() throws Throwable
+   {
+      home.write("deploy", "layers.xml", getLayers());
+      home.write("deploy", "above.xml", KernelHome.bean("Above", 20, "Top"));
+
+      kernel = home.createKernel(true);
+      kernel.startup();
+
+      TestBean.clearEvents();
+
+      Kernel k = kernel;
+      kernel = null;
+      k.shutdown();
+
+      List<String> events = TestBean.getEvents();
+
+      assertEquals("stop:Above", events.get(0));
+      verifyLayers(events.subList(1, events.size()));
+   }
+
+   /**
+    * Get the beans of three layers; the top depends on all beans of the middle,
+    * which depend on the bottom
+    * @return The bean definitions
+    */
+   private static String[] getLayers()
+   {
+      String[] beans = new String[MIDDLE + 2];
+      String[] middle = new String[MIDDLE];
+
+      beans[0] = KernelHome.bean("Bottom", 20);
+
+      for (int i = 0; i < MIDDLE; i++)
+      {
+         middle[i] = "Middle" + i;
+         beans[i + 1] = KernelHome.bean(middle[i], 50, "Bottom");
+      }
+
+      beans[MIDDLE + 1] = KernelHome.bean("Top", 20, middle);
+
+      return beans;
+   }
+
+   /**
+    * Verify the stop order of the layers
+    * @param events The events
+    */
+   private static void verifyLayers(List<String> events)
+   {
+      assertEquals(events.toString(), MIDDLE + 2, events.size());
+      assertEquals("stop:Top", events.get(0));
+      assertEquals("stop:Bottom", events.get(MIDDLE + 1));
+
+      for (int i = 0; i < MIDDLE; i++)
+      {
+         int index = events.indexOf("stop:Middle" + i);
+
+         assertTrue(events.toString(), index > 0 && index <= MIDDLE);
+      }
+   }
+}
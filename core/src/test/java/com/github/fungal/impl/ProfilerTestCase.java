@@ -0,0 +1,137 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.TestBean;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The startup profile of the beans and the deployments
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class ProfilerTestCase
+{
+   /** The home */
+   private KernelHome home;
+
+   /** The kernel */
+   private Kernel kernel;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("profiler");
+      kernel = null;
+      TestBean.clearEvents();
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      if (kernel != null)
+         kernel.shutdown();
+
+      home.delete();
+   }
+
+   /**
+    * The report is sorted by the requested column, and the total excludes the wait
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test
+   public void testReport() throws Throwable
+   {
+      Profiler profiler = new Profiler();
+
+      long[] slowStart = new long[Profiler.PHASES];
+      slowStart[Profiler.WAIT] = TimeUnit.MILLISECONDS.toNanos(100);
+      slowStart[Profiler.START] = TimeUnit.MILLISECONDS.toNanos(5);
+
+      long[] slowCreate = new long[Profiler.PHASES];
+      slowCreate[Profiler.CREATE] = TimeUnit.MILLISECONDS.toNanos(7);
+
+      profiler.recordBean("SlowStart", slowStart);
+      profiler.recordBean("SlowCreate", slowCreate);
+      profiler.recordDeployment(new URL("file:/deploy/beans.xml"), TimeUnit.MILLISECONDS.toNanos(12));
+
+      String report = profiler.report(null);
+      assertTrue(report, report.indexOf("SlowCreate") < report.indexOf("SlowStart"));
+      assertTrue(report, report.contains("  SlowStart, 100.000, 0.000, 0.000, 0.000, 0.000, 5.000, 0.000, 5.000"));
+      assertTrue(report, report.contains("file:/deploy/beans.xml, 12.000"));
+
+      report = profiler.report("start");
+      assertTrue(report, report.indexOf("SlowStart") < report.indexOf("SlowCreate"));
+
+      report = profiler.report("wait");
+      assertTrue(report, report.indexOf("SlowStart") < report.indexOf("SlowCreate"));
+
+      profiler.removeBean("SlowStart");
+      assertFalse(profiler.report(null).contains("SlowStart"));
+
+      try
+      {
+         profiler.report("unknown");
+         fail("Unknown column");
+      }
+      catch (IllegalArgumentException iae)
+      {
+         // Expected
+      }
+   }
+
+   /**
+    * The kernel profiles the beans and the deployments of the startup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testKernel() throws Throwable
+   {
+      URL url = home.write("deploy", "beans.xml", KernelHome.bean("Slow", 100), KernelHome.bean("Fast", 0));
+
+      kernel = home.createKernel(true);
+      kernel.startup();
+
+      String report = ((KernelImpl)kernel).profile("start");
+      assertTrue(report, report.contains("  Slow, "));
+      assertTrue(report, report.indexOf("  Slow, ") < report.indexOf("  Fast, "));
+      assertTrue(report, report.contains(url.toExternalForm() + ", "));
+   }
+}
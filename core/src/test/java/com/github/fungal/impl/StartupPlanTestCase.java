@@ -0,0 +1,189 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.api.KernelFactory;
+import com.github.fungal.api.configuration.KernelConfiguration;
+import com.github.fungal.api.events.Event;
+import com.github.fungal.api.events.EventListener;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.TestBean;
+
+import java.net.URL;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The descriptors of system/ and deploy/ which are parsed ahead of their deployment
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class StartupPlanTestCase
+{
+   /** The home */
+   private KernelHome home;
+
+   /** The kernel */
+   private Kernel kernel;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("startup-plan");
+      TestBean.clearEvents();
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      if (kernel != null)
+         kernel.shutdown();
+
+      home.delete();
+   }
+
+   /**
+    * The planned descriptors are deployed in parallel
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testParallel() throws Throwable
+   {
+      startup(true);
+   }
+
+   /**
+    * The planned descriptors are deployed one at a time
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testSerial() throws Throwable
+   {
+      startup(false);
+   }
+
+   /**
+    * A descriptor which can't be parsed doesn't stop the other descriptors
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testBrokenDescriptor() throws Throwable
+   {
+      home.writeContent("deploy", "broken.xml", "<deployment><bean name=");
+      home.write("deploy", "c.xml", KernelHome.bean("C", 0));
+
+      kernel = KernelFactory.create(home.configuration(true));
+      kernel.startup();
+
+      assertNotNull(kernel.getBean("C", TestBean.class));
+   }
+
+   /**
+    * A descriptor which is changed while the kernel is set up is parsed again
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testChangedDuringStartup() throws Throwable
+   {
+      home.write("deploy", "a.xml", KernelHome.bean("A", 0));
+
+      KernelConfiguration kc = home.configuration(true).eventListener(new EventListener()
+      {
+         public void event(Kernel k, Event event)
+         {
+            if (event == Event.POST_CLASSLOADER)
+            {
+               try
+               {
+                  home.write("deploy", "a.xml", KernelHome.bean("Changed", 0));
+               }
+               catch (Exception e)
+               {
+                  throw new IllegalStateException(e);
+               }
+            }
+         }
+      });
+
+      kernel = KernelFactory.create(kc);
+      kernel.startup();
+
+      List<String> events = TestBean.getEvents();
+
+      assertTrue(events.toString(), events.contains("start:Changed"));
+      assertFalse(events.toString(), events.contains("start:A"));
+   }
+
+   /**
+    * A descriptor deployed after the startup is parsed again
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testAfterStartup() throws Throwable
+   {
+      URL url = home.write("deploy", "a.xml", KernelHome.bean("A", 0));
+
+      kernel = KernelFactory.create(home.configuration(true));
+      kernel.startup();
+
+      kernel.getMainDeployer().undeploy(url);
+      home.write("deploy", "a.xml", KernelHome.bean("Later", 0));
+      kernel.getMainDeployer().deploy(url);
+
+      assertNotNull(kernel.getBean("Later", TestBean.class));
+   }
+
+   /**
+    * Start a kernel with descriptors in system/ and deploy/ which depend on each other
+    * @param parallel Parallel deployment
+    * @exception Throwable Thrown if an error occurs
+    */
+   private void startup(boolean parallel) throws Throwable
+   {
+      home.write("system", "a.xml", KernelHome.bean("A", 0));
+      home.write("deploy", "b.xml", KernelHome.bean("B", 0, "A"));
+      home.write("deploy", "c.xml", KernelHome.bean("C", 0, "A", "B"));
+
+      kernel = KernelFactory.create(home.configuration(parallel));
+      kernel.startup();
+
+      List<String> events = TestBean.getEvents();
+
+      assertTrue(events.toString(), events.indexOf("start:A") >= 0);
+      assertTrue(events.toString(), events.indexOf("start:A") < events.indexOf("start:B"));
+      assertTrue(events.toString(), events.indexOf("start:B") < events.indexOf("start:C"));
+   }
+}
@@ -0,0 +1,203 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.TestBean;
+import com.github.fungal.spi.deployers.DeployException;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Deployments whose beans are scheduled while the descriptor is being read
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class StreamedDeployTestCase
+{
+   /** The home */
+   private KernelHome home;
+
+   /** The kernel */
+   private Kernel kernel;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("streamed-deploy");
+      kernel = home.createKernel(true);
+      kernel.startup();
+      TestBean.clearEvents();
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      if (kernel != null)
+         kernel.shutdown();
+
+      home.delete();
+   }
+
+   /**
+    * A descriptor is deployed while it is being read
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testStreamed() throws Throwable
+   {
+      URL url = home.write("deploy", "streamed.xml",
+                           KernelHome.bean("A", 0), KernelHome.bean("B", 0, "A"), KernelHome.bean("C", 0, "B"));
+
+      kernel.getMainDeployer().deploy(url);
+
+      assertEquals(Arrays.asList("start:A", "start:B", "start:C"), TestBean.getEvents());
+      assertEquals(3, kernel.getBeansOfType(TestBean.class).size());
+   }
+
+   /**
+    * A bean which is read before its dependencies waits for them
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testForwardDependencies() throws Throwable
+   {
+      URL url = home.write("deploy", "forward.xml",
+                           KernelHome.bean("C", 0, "B"), KernelHome.bean("B", 0, "A"), KernelHome.bean("A", 0));
+
+      kernel.getMainDeployer().deploy(url);
+
+      assertEquals(Arrays.asList("start:A", "start:B", "start:C"), TestBean.getEvents());
+   }
+
+   /**
+    * The unknown dependencies and the dependency cycles are found once the last bean has been read
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testCheckedAfterLastBean() throws Throwable
+   {
+      URL unknown = home.write("deploy", "unknown.xml", KernelHome.bean("A", 0), KernelHome.bean("B", 0, "Missing"));
+      URL cycle = home.write("deploy", "cycle.xml", KernelHome.bean("X", 0, "Y"), KernelHome.bean("Y", 0, "X"));
+
+      for (URL url : new URL[] {unknown, cycle})
+      {
+         try
+         {
+            kernel.getMainDeployer().deploy(url);
+            fail("Invalid dependencies: " + url);
+         }
+         catch (DeployException de)
+         {
+            // Expected
+         }
+      }
+
+      List<String> events = TestBean.getEvents();
+      assertFalse(events.toString(), events.contains("start:B"));
+      assertFalse(events.toString(), events.contains("start:X"));
+      assertFalse(events.toString(), events.contains("start:Y"));
+      assertTrue(kernel.getBeansOfType(TestBean.class).isEmpty());
+   }
+
+   /**
+    * A descriptor which is truncated after some beans have been read fails, and the
+    * beans which were installed are rolled back
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testTruncated() throws Throwable
+   {
+      String content = "<deployment>" + KernelHome.bean("A", 0) + KernelHome.bean("B", 0, "A") +
+         "<bean name=\"C\" class=\"" + TestBean.class.getName() + "\"><property na";
+
+      URL url = home.writeContent("deploy", "truncated.xml", content);
+
+      assertFailed(url);
+
+      List<String> events = TestBean.getEvents();
+      assertFalse(events.toString(), events.contains("start:C"));
+      assertEquals(events.toString(), events.contains("start:A"), events.contains("stop:A"));
+      assertEquals(events.toString(), events.contains("start:B"), events.contains("stop:B"));
+      assertTrue(kernel.getBeansOfType(TestBean.class).isEmpty());
+
+      // The names of the rolled back beans can be used again
+      URL other = home.write("deploy", "other.xml", KernelHome.bean("A", 0), KernelHome.bean("B", 0, "A"));
+      kernel.getMainDeployer().deploy(other);
+
+      assertEquals(2, kernel.getBeansOfType(TestBean.class).size());
+   }
+
+   /**
+    * A descriptor which is truncated before any bean has been read fails
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testTruncatedBeforeBeans() throws Throwable
+   {
+      URL url = home.writeContent("deploy", "truncated.xml", "<deployment><bean name=\"A\" cla");
+
+      assertFailed(url);
+
+      assertTrue(TestBean.getEvents().isEmpty());
+      assertTrue(kernel.getBeansOfType(TestBean.class).isEmpty());
+   }
+
+   /**
+    * Assert that the deployment of a descriptor fails once, with the read failure as the cause
+    * @param url The descriptor
+    * @exception Throwable Thrown if an error occurs
+    */
+   private void assertFailed(URL url) throws Throwable
+   {
+      try
+      {
+         kernel.getMainDeployer().deploy(url);
+         fail("Truncated descriptor");
+      }
+      catch (DeployException de)
+      {
+         assertEquals("Deployment " + url + " failed", de.getMessage());
+         assertNotNull(de.getCause());
+         assertFalse(de.getCause().toString(), de.getCause() instanceof DeployException);
+      }
+   }
+}
@@ -0,0 +1,193 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.impl.support.KernelHome;
+import com.github.fungal.impl.support.TestBean;
+
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Lookup of beans by type
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class TypeLookupTestCase
+{
+   /** The home */
+   private KernelHome home;
+
+   /** The kernel */
+   private Kernel kernel;
+
+   /**
+    * Setup
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Before
+   public void setup() throws Throwable
+   {
+      home = new KernelHome("type-lookup");
+      kernel = home.createKernel(true);
+      kernel.startup();
+      TestBean.clearEvents();
+   }
+
+   /**
+    * Tear down
+    * @exception Throwable Thrown if an error occurs
+    */
+   @After
+   public void tearDown() throws Throwable
+   {
+      if (kernel != null)
+         kernel.shutdown();
+
+      home.delete();
+   }
+
+   /**
+    * The beans are found by their class and superclasses
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testByType() throws Throwable
+   {
+      URL url = home.write("deploy", "types.xml", KernelHome.bean("A", 0), KernelHome.bean("B", 0));
+      kernel.getMainDeployer().deploy(url);
+
+      Map<String, TestBean> beans = kernel.getBeansOfType(TestBean.class);
+      assertEquals(Arrays.asList("A", "B"), Arrays.asList(beans.keySet().toArray()));
+      assertEquals("A", beans.get("A").getName());
+
+      assertTrue(kernel.getBeansOfType(Object.class).containsKey("B"));
+      assertTrue(kernel.getBeansOfType(Runnable.class).isEmpty());
+      assertNull(kernel.getBean(Runnable.class));
+
+      try
+      {
+         kernel.getBean(TestBean.class);
+         fail("More than one bean of the type");
+      }
+      catch (IllegalStateException ise)
+      {
+         // Expected
+      }
+   }
+
+   /**
+    * The type of an undeployed bean is removed from the index
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testUndeploy() throws Throwable
+   {
+      URL url = home.write("deploy", "types.xml", KernelHome.bean("A", 0));
+      kernel.getMainDeployer().deploy(url);
+
+      assertNotNull(kernel.getBean(TestBean.class));
+      assertTrue(getBeanTypes().containsKey(TestBean.class));
+
+      kernel.getMainDeployer().undeploy(url);
+
+      assertTrue(kernel.getBeansOfType(TestBean.class).isEmpty());
+      assertFalse(getBeanTypes().containsKey(TestBean.class));
+   }
+
+   /**
+    * A lookup by type creates a lazy bean of the type
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testLazy() throws Throwable
+   {
+      String lazy = "<bean name=\"Lazy\" class=\"" + TestBean.class.getName() + "\" lazy=\"true\">" +
+         "<property name=\"name\">Lazy</property></bean>";
+
+      URL url = home.write("deploy", "lazy.xml", lazy);
+      kernel.getMainDeployer().deploy(url);
+
+      assertFalse(TestBean.getEvents().contains("start:Lazy"));
+
+      TestBean bean = kernel.getBean(TestBean.class);
+
+      assertNotNull(bean);
+      assertEquals("Lazy", bean.getName());
+      assertTrue(TestBean.getEvents().contains("start:Lazy"));
+
+      kernel.getMainDeployer().undeploy(url);
+
+      assertFalse(getBeanTypes().containsKey(TestBean.class));
+   }
+
+   /**
+    * A bean which doesn't implement its declared interface fails its deployment
+    * @exception Throwable Thrown if an error occurs
+    */
+   @Test(timeout = 30000)
+   public void testInterface() throws Throwable
+   {
+      String wrong = "<bean name=\"Wrong\" interface=\"java.lang.Runnable\" class=\"" +
+         TestBean.class.getName() + "\"><property name=\"name\">Wrong</property></bean>";
+
+      URL url = home.write("deploy", "wrong.xml", wrong);
+
+      try
+      {
+         kernel.getMainDeployer().deploy(url);
+         fail("Wrong interface");
+      }
+      catch (Throwable t)
+      {
+         // Expected
+      }
+
+      assertNull(kernel.getBean(Runnable.class));
+      assertTrue(kernel.getBeansOfType(TestBean.class).isEmpty());
+   }
+
+   /**
+    * Get the bean type index of the kernel
+    * @return The index
+    * @exception Throwable Thrown if an error occurs
+    */
+   @SuppressWarnings("unchecked")
+   private Map<Class<?>, ?> getBeanTypes() throws Throwable
+   {
+      Field f = KernelImpl.class.getDeclaredField("beanTypes");
+      f.setAccessible(true);
+      return (Map<Class<?>, ?>)f.get(kernel);
+   }
+}
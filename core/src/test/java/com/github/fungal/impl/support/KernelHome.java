@@ -0,0 +1,205 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl.support;
+
+import com.github.fungal.api.Kernel;
+import com.github.fungal.api.KernelFactory;
+import com.github.fungal.api.configuration.KernelConfiguration;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+
+/**
+ * A kernel home with system/ and deploy/ directories for the test cases
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class KernelHome
+{
+   /** The root directory */
+   private File root;
+
+   /**
+    * Constructor; an existing home of the same name is removed
+    * @param name The name of the home
+    * @exception IOException Thrown if the home can't be created
+    */
+   public KernelHome(String name) throws IOException
+   {
+      if (name == null)
+         throw new IllegalArgumentException("Name is null");
+
+      File base = new File(System.getProperty("test.dir", System.getProperty("java.io.tmpdir")));
+
+      this.root = new File(base, name);
+
+      delete();
+
+      for (String directory : new String[] {"system", "deploy", "lib", "config"})
+      {
+         File f = new File(root, directory);
+
+         if (!f.mkdirs())
+            throw new IOException("Unable to create " + f);
+      }
+   }
+
+   /**
+    * A bean definition of a test bean
+    * @param name The name of the bean
+    * @param delay The delay of start and stop in milliseconds
+    * @param depends The names of the beans it depends on
+    * @return The definition
+    */
+   public static String bean(String name, long delay, String... depends)
+   {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append("<bean name=\"").append(name).append("\" class=\"").append(TestBean.class.getName()).append("\">");
+      sb.append("<property name=\"name\">").append(name).append("</property>");
+      sb.append("<property name=\"delay\">").append(delay).append("</property>");
+
+      for (String dependency : depends)
+      {
+         sb.append("<depends>").append(dependency).append("</depends>");
+      }
+
+      sb.append("</bean>");
+
+      return sb.toString();
+   }
+
+   /**
+    * Write a deployment into a directory of the home
+    * @param directory The directory; e.g. <code>deploy</code>
+    * @param file The file name
+    * @param beans The bean definitions
+    * @return The URL of the deployment
+    * @exception IOException Thrown if the deployment can't be written
+    */
+   public URL write(String directory, String file, String... beans) throws IOException
+   {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append("<deployment>");
+
+      for (String bean : beans)
+      {
+         sb.append(bean);
+      }
+
+      sb.append("</deployment>");
+
+      return writeContent(directory, file, sb.toString());
+   }
+
+   /**
+    * Write a file into a directory of the home
+    * @param directory The directory; e.g. <code>deploy</code>
+    * @param file The file name
+    * @param content The content
+    * @return The URL of the file
+    * @exception IOException Thrown if the file can't be written
+    */
+   public URL writeContent(String directory, String file, String content) throws IOException
+   {
+      File f = new File(new File(root, directory), file);
+      OutputStream os = new FileOutputStream(f);
+      try
+      {
+         os.write(content.getBytes("UTF-8"));
+      }
+      finally
+      {
+         os.close();
+      }
+
+      return f.toURI().toURL();
+   }
+
+   /**
+    * Create a kernel for the home
+    * @param parallelDeploy Deploy the descriptors in parallel
+    * @return The kernel, which hasn't been started
+    * @exception Throwable Thrown if the kernel can't be created
+    */
+   public Kernel createKernel(boolean parallelDeploy) throws Throwable
+   {
+      return KernelFactory.create(configuration(parallelDeploy));
+   }
+
+   /**
+    * Create a kernel configuration for the home, without remote access, hot deployment
+    * and management
+    * @param parallelDeploy Deploy the descriptors in parallel
+    * @return The configuration
+    * @exception IOException Thrown if the home can't be used
+    */
+   public KernelConfiguration configuration(boolean parallelDeploy) throws IOException
+   {
+      return new KernelConfiguration()
+         .name(root.getName())
+         .home(root.toURI().toURL())
+         .parallelDeploy(parallelDeploy)
+         .remoteAccess(false)
+         .hotDeployment(false)
+         .management(false);
+   }
+
+   /**
+    * Get a file of the home
+    * @param path The path relative to the home; e.g. <code>system/install-history.properties</code>
+    * @return The file
+    */
+   public File getFile(String path)
+   {
+      return new File(root, path);
+   }
+
+   /**
+    * Remove the home
+    */
+   public void delete()
+   {
+      delete(root);
+   }
+
+   /**
+    * Remove a file or a directory
+    * @param f The file
+    */
+   private static void delete(File f)
+   {
+      File[] files = f.listFiles();
+
+      if (files != null)
+      {
+         for (File file : files)
+         {
+            delete(file);
+         }
+      }
+
+      f.delete();
+   }
+}
@@ -0,0 +1,183 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A bean with a constructor, properties and install methods
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class PlainBean
+{
+   /** The prefix */
+   private String prefix;
+
+   /** The count */
+   private int count;
+
+   /** The value */
+   private String value;
+
+   /** The number */
+   private int number;
+
+   /** The calls in the order they happened */
+   private List<String> calls;
+
+   /**
+    * Constructor
+    * @param prefix The prefix
+    * @param count The count
+    */
+   public PlainBean(String prefix, int count)
+   {
+      this.prefix = prefix;
+      this.count = count;
+      this.value = null;
+      this.number = 0;
+      this.calls = Collections.synchronizedList(new ArrayList<String>());
+   }
+
+   /**
+    * Get the prefix
+    * @return The value
+    */
+   public String getPrefix()
+   {
+      return prefix;
+   }
+
+   /**
+    * Get the count
+    * @return The value
+    */
+   public int getCount()
+   {
+      return count;
+   }
+
+   /**
+    * Get the value
+    * @return The value
+    */
+   public String getValue()
+   {
+      return value;
+   }
+
+   /**
+    * Set the value
+    * @param v The value
+    */
+   public void setValue(String v)
+   {
+      this.value = v;
+   }
+
+   /**
+    * Get the number
+    * @return The value
+    */
+   public int getNumber()
+   {
+      return number;
+   }
+
+   /**
+    * Set the number
+    * @param v The value
+    */
+   public void setNumber(int v)
+   {
+      this.number = v;
+   }
+
+   /**
+    * Get the calls
+    * @return The calls; e.g. <code>install</code>
+    */
+   public List<String> getCalls()
+   {
+      synchronized (calls)
+      {
+         return new ArrayList<String>(calls);
+      }
+   }
+
+   /**
+    * Create
+    */
+   public void create()
+   {
+      calls.add("create");
+   }
+
+   /**
+    * Start
+    */
+   public void start()
+   {
+      calls.add("start");
+   }
+
+   /**
+    * Install
+    */
+   public void install()
+   {
+      calls.add("install:" + prefix + value + number);
+   }
+
+   /**
+    * Stop
+    */
+   public void stop()
+   {
+      calls.add("stop");
+   }
+
+   /**
+    * Halt
+    */
+   public void halt()
+   {
+      calls.add("halt");
+   }
+
+   /**
+    * Destroy
+    */
+   public void destroy()
+   {
+      calls.add("destroy");
+   }
+
+   /**
+    * Uninstall
+    */
+   public void uninstall()
+   {
+      calls.add("uninstall");
+   }
+}
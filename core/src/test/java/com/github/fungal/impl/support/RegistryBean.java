@@ -0,0 +1,73 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A bean which keeps the test beans passed to its incallback and uncallback methods
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class RegistryBean
+{
+   /** The calls in the order they happened */
+   private List<String> calls;
+
+   /**
+    * Constructor
+    */
+   public RegistryBean()
+   {
+      this.calls = Collections.synchronizedList(new ArrayList<String>());
+   }
+
+   /**
+    * Get the calls
+    * @return The calls; e.g. <code>add:A</code>
+    */
+   public List<String> getCalls()
+   {
+      synchronized (calls)
+      {
+         return new ArrayList<String>(calls);
+      }
+   }
+
+   /**
+    * Add a bean
+    * @param bean The bean
+    */
+   public void add(TestBean bean)
+   {
+      calls.add("add:" + bean.getName());
+   }
+
+   /**
+    * Remove a bean
+    * @param bean The bean
+    */
+   public void remove(TestBean bean)
+   {
+      calls.add("remove:" + bean.getName());
+   }
+}
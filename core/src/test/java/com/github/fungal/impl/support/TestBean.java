@@ -0,0 +1,137 @@
+/*
+ * The Fungal kernel project
+ * Copyright (C) 2012
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.github.fungal.impl.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A bean which records its lifecycle events
+ * @author <a href="mailto:jesper.pedersen@comcast.net">Jesper Pedersen</a>
+ */
+public class TestBean
+{
+   /** The events in the order they happened */
+   private static List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+   /** The name */
+   private String name;
+
+   /** The delay of start and stop in milliseconds */
+   private long delay;
+
+   /** Does start fail */
+   private boolean fail;
+
+   /**
+    * Constructor
+    */
+   public TestBean()
+   {
+      this.name = null;
+      this.delay = 0L;
+      this.fail = false;
+   }
+
+   /**
+    * Get the events
+    * @return The events; e.g. <code>start:A</code>
+    */
+   public static List<String> getEvents()
+   {
+      synchronized (events)
+      {
+         return new ArrayList<String>(events);
+      }
+   }
+
+   /**
+    * Clear the events
+    */
+   public static void clearEvents()
+   {
+      events.clear();
+   }
+
+   /**
+    * Get the name
+    * @return The value
+    */
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    * Set the name
+    * @param value The value
+    */
+   public void setName(String value)
+   {
+      this.name = value;
+   }
+
+   /**
+    * Set the delay of start and stop
+    * @param value The value in milliseconds
+    */
+   public void setDelay(long value)
+   {
+      this.delay = value;
+   }
+
+   /**
+    * Set whether start fails
+    * @param value The value
+    */
+   public void setFail(boolean value)
+   {
+      this.fail = value;
+   }
+
+   /**
+    * Start
+    * @exception Exception Thrown if an error occurs
+    */
+   public void start() throws Exception
+   {
+      if (delay > 0)
+         Thread.sleep(delay);
+
+      if (fail)
+         throw new Exception(name + " failed");
+
+      events.add("start:" + name);
+   }
+
+   /**
+    * Stop
+    * @exception Exception Thrown if an error occurs
+    */
+   public void stop() throws Exception
+   {
+      if (delay > 0)
+         Thread.sleep(delay);
+
+      events.add("stop:" + name);
+   }
+}